@@ -1,7 +1,10 @@
 package com.calendar.api_gateway;
 
+import com.calendar.api_gateway.loadbalancer.LoadBalancerConfiguration;
+import com.calendar.api_gateway.resilience.RouteResilience;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
@@ -10,6 +13,7 @@ import org.springframework.web.cors.reactive.CorsWebFilter;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 
 @SpringBootApplication // Marks this class as a Spring Boot application
+@LoadBalancerClients(defaultConfiguration = LoadBalancerConfiguration.class) // Load balancer of all backend services
 public class GatewayApplication {
     public static void main(String[] args) {
         // Starts the Spring Boot application
@@ -18,26 +22,38 @@ public class GatewayApplication {
 
     /**
      * Configures the API Gateway routes using Spring Cloud Gateway.
-     * Each route maps incoming requests to the corresponding microservice.
+     * Each route maps incoming requests to the corresponding microservice,
+     * guarded by timeouts, a circuit breaker and retries (see RouteResilience).
+     * "lb://" URIs are balanced across the instances configured in application.properties.
      */
     @Bean
-    public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
+    public RouteLocator customRouteLocator(RouteLocatorBuilder builder, RouteResilience resilience) {
         return builder.routes()
             // Route for GraphQL requests, forwarding "/graphql" requests to event-service
-            .route("event-service-graphql", r -> r.path("/graphql")
-                .uri("http://localhost:8081"))
+            .route("event-service-graphql", r -> resilience.apply("event-service-graphql", r.path("/graphql"))
+                .uri("lb://event-service"))
+            // Route for GraphQL subscriptions, upgraded to a WebSocket to event-service;
+            // long-lived connections, so without timeouts, circuit breaker and retries
+            .route("event-service-graphql-ws", r -> r.path("/graphql-ws")
+                .uri("lb:ws://event-service"))
             // Route for event-related API requests
-            .route("event-service", r -> r.path("/api/events/**")
-                .uri("http://localhost:8081"))
+            .route("event-service", r -> resilience.apply("event-service", r.path("/api/events/**"))
+                .uri("lb://event-service"))
             // Route for user-related API requests
-            .route("user-service", r -> r.path("/api/users/**")
-                .uri("http://localhost:8082"))
+            .route("user-service", r -> resilience.apply("user-service", r.path("/api/users/**"))
+                .uri("lb://user-service"))
+            // Routes for batch writes, declared before the general routes; separate IDs, so they get
+            // their own (longer) timeouts and circuit breakers
+            .route("todo-service-batch", r -> resilience.apply("todo-service-batch", r.path("/api/todos/batch/**"))
+                .uri("lb://todo-service"))
+            .route("Category-batch", r -> resilience.apply("Category-batch", r.path("/api/categories/batch"))
+                .uri("lb://category-service"))
             // Route for to-do-related API requests
-            .route("todo-service", r -> r.path("/api/todos/**")
-                .uri("http://localhost:8083"))
+            .route("todo-service", r -> resilience.apply("todo-service", r.path("/api/todos/**"))
+                .uri("lb://todo-service"))
             // Route for category-related API requests
-            .route("Category", r -> r.path("/api/categories/**")
-                .uri("http://localhost:8084"))
+            .route("Category", r -> resilience.apply("Category", r.path("/api/categories/**"))
+                .uri("lb://category-service"))
             .build();
     }
 
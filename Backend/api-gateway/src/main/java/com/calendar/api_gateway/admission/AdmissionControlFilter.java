@@ -0,0 +1,99 @@
+package com.calendar.api_gateway.admission;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounds the requests in flight to each backend service (summed over its instances), so a
+ * burst queues up at the gateway instead of inflating the latency of every request
+ * at the backend. Requests that cannot be admitted within the wait limit get
+ * 503 Service Unavailable with a Retry-After header.
+ *
+ * WebSocket connections (GraphQL subscriptions) are not counted: they stay open for
+ * the whole session and would permanently hold a slot.
+ *
+ * Per backend, the gauges "gateway.admission.in.flight" and "gateway.admission.queued"
+ * and the counter "gateway.admission.rejected" are published.
+ */
+@Component
+public class AdmissionControlFilter implements GlobalFilter, Ordered {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Duration maxWait;
+    // Service of the route ("lb://<service>") -> bulkhead
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxInFlight Concurrent requests per backend service.
+     * @param maxQueued   Requests per backend waiting for admission.
+     * @param maxWaitMs   Longest wait for admission.
+     */
+    public AdmissionControlFilter(MeterRegistry meterRegistry,
+                                  @Value("${gateway.admission.enabled:true}") boolean enabled,
+                                  @Value("${gateway.admission.max-in-flight:64}") int maxInFlight,
+                                  @Value("${gateway.admission.max-queued:128}") int maxQueued,
+                                  @Value("${gateway.admission.max-wait-ms:500}") long maxWaitMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!enabled || route == null || isWebSocketUpgrade(exchange)) {
+            return chain.filter(exchange);
+        }
+        String backend = route.getUri().getAuthority();
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(backend, this::bulkhead);
+
+        return bulkhead.acquire().flatMap(admitted -> {
+            if (!admitted) {
+                meterRegistry.counter("gateway.admission.rejected", "backend", backend).increment();
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                return response.setComplete();
+            }
+            return chain.filter(exchange).doFinally(signal -> bulkhead.release());
+        });
+    }
+
+    private static boolean isWebSocketUpgrade(ServerWebExchange exchange) {
+        return "websocket".equalsIgnoreCase(exchange.getRequest().getHeaders().getUpgrade());
+    }
+
+    private Bulkhead bulkhead(String backend) {
+        Bulkhead bulkhead = new Bulkhead(maxInFlight, maxQueued, maxWait);
+        Gauge.builder("gateway.admission.in.flight", bulkhead, Bulkhead::inFlight).tag("backend", backend).register(meterRegistry);
+        Gauge.builder("gateway.admission.queued", bulkhead, Bulkhead::queued).tag("backend", backend).register(meterRegistry);
+        return bulkhead;
+    }
+
+    // Runs after the response cache, so cache hits do not take a backend slot
+    @Override
+    public int getOrder() {
+        return 0;
+    }
+}
@@ -0,0 +1,113 @@
+package com.calendar.api_gateway.admission;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of requests in flight to one backend. Requests above the cap wait
+ * in a bounded FIFO queue for a limited time; if the queue is full or the wait times
+ * out, the request is rejected instead of piling up at the backend.
+ *
+ * A waiter receives its permit from the releasing request. Every waiter is completed
+ * exactly once, either with a permit (true) or without (false); whoever loses that
+ * race hands the permit on, so no permit is ever lost.
+ */
+final class Bulkhead {
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Sinks.One<Boolean>> waiting = new ConcurrentLinkedQueue<>();
+
+    Bulkhead(int maxInFlight, int maxQueued, Duration maxWait) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Emits true once a permit is held, which must be returned with {@link #release()},
+     * or false if the request is to be rejected.
+     */
+    Mono<Boolean> acquire() {
+        if (tryAcquire()) {
+            return Mono.just(true);
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return Mono.just(false);
+        }
+        Sinks.One<Boolean> waiter = Sinks.one();
+        waiting.add(waiter);
+        // A permit may have been released before the waiter was visible
+        drain();
+        AtomicBoolean delivered = new AtomicBoolean();
+        return waiter.asMono()
+                .timeout(maxWait, Mono.fromSupplier(() -> giveUp(waiter)))
+                .doOnNext(granted -> delivered.set(true))
+                .doOnCancel(() -> {
+                    // Cancelled while waiting: return a permit granted in the meantime
+                    if (!delivered.get() && giveUp(waiter)) {
+                        release();
+                    }
+                });
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // Hands free permits to the waiters in arrival order
+    private void drain() {
+        while (!waiting.isEmpty() && tryAcquire()) {
+            Sinks.One<Boolean> waiter = waiting.poll();
+            if (waiter == null || waiter.tryEmitValue(true).isFailure()) {
+                // Queue emptied concurrently or the waiter already gave up
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Completes a waiter without a permit. Returns true if the permit was already
+     * granted, then the caller holds it.
+     */
+    private boolean giveUp(Sinks.One<Boolean> waiter) {
+        if (waiter.tryEmitValue(false).isSuccess()) {
+            waiting.remove(waiter);
+            queued.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+}
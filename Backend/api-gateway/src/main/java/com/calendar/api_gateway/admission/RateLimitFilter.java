@@ -0,0 +1,108 @@
+package com.calendar.api_gateway.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.calendar.api_gateway.auth.AuthenticationFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the request rate of every client per route with a local token bucket, so a
+ * single client cannot flood a backend. Rejected requests get 429 Too Many Requests
+ * with a Retry-After header.
+ *
+ * Clients are identified by the user ID of their access token (X-User-Id, set by the
+ * AuthenticationFilter after verifying the token), unauthenticated clients by their remote
+ * address only: request parameters are chosen by the client and would let it spread its
+ * requests over any number of buckets. The buckets live in process memory only; idle
+ * buckets are dropped once they would have been refilled completely anyway.
+ * Rejections are counted in "gateway.rate.limit.rejected" per route.
+ */
+@Component
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int capacity;
+    private final int refillPerSecond;
+    // "<route>|<client>" -> bucket
+    private final Cache<String, TokenBucket> buckets;
+
+    /**
+     * @param capacity        Maximum burst of a client on one route.
+     * @param refillPerSecond Sustained requests per second of a client on one route.
+     * @param maxClients      Upper bound for the number of buckets kept at the same time.
+     */
+    public RateLimitFilter(MeterRegistry meterRegistry,
+                           @Value("${gateway.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${gateway.rate-limit.capacity:100}") int capacity,
+                           @Value("${gateway.rate-limit.refill-per-s:50}") int refillPerSecond,
+                           @Value("${gateway.rate-limit.max-clients:100000}") long maxClients) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMillis(Math.max(1000L, 1000L * capacity / refillPerSecond)))
+                .build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : "";
+        String key = routeId + "|" + client(exchange.getRequest());
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(capacity, refillPerSecond, now));
+
+        long waitNanos = bucket.tryConsume(now);
+        ServerHttpResponse response = exchange.getResponse();
+        if (waitNanos > 0) {
+            meterRegistry.counter("gateway.rate.limit.rejected", "routeId", routeId).increment();
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            response.getHeaders().set(REMAINING_HEADER, "0");
+            return response.setComplete();
+        }
+        response.getHeaders().set(REMAINING_HEADER, String.valueOf(bucket.remaining()));
+        return chain.filter(exchange);
+    }
+
+    private static String client(ServerHttpRequest request) {
+        String authenticated = request.getHeaders().getFirst(AuthenticationFilter.USER_ID_HEADER);
+        if (authenticated != null) {
+            return "auth:" + authenticated;
+        }
+        InetSocketAddress address = request.getRemoteAddress();
+        return "ip:" + (address != null ? address.getAddress().getHostAddress() : "unknown");
+    }
+
+    // Runs before the response cache, so cache hits count against the limit as well
+    @Override
+    public int getOrder() {
+        return -100;
+    }
+}
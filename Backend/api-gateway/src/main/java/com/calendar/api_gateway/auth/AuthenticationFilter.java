@@ -0,0 +1,148 @@
+package com.calendar.api_gateway.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Authenticates every routed request with the access token issued by user-service, so
+ * the services behind the gateway only see requests of signed-in users.
+ *
+ * The token is taken from "Authorization: Bearer <token>"; WebSocket handshakes, for
+ * which browsers cannot set headers, may pass it as query parameter "access_token".
+ * It is verified locally by the {@link TokenVerifier} and checked against the
+ * {@link RevocationList}. The user ID of the token is forwarded to the services as
+ * header "X-User-Id"; a header of that name sent by the client is always removed.
+ *
+ * The services use that header to limit a request to the data of its user (403 Forbidden
+ * otherwise): todos, users, categories, the events queried by ID or user and subscriptions.
+ * Categories carry numeric user IDs that user-service does not hand out, so signed-in users
+ * get none of them. Not restricted are the event queries across users (time ranges,
+ * freeBusy). Requests without the header are treated as internal, so the services must only
+ * be reachable through the gateway.
+ *
+ * Requests without a valid token get 401 Unauthorized with a WWW-Authenticate header,
+ * counted in "gateway.auth.rejected" per reason. The token of POST /api/users/logout is
+ * revoked, and a successful DELETE /api/users/{id} revokes all tokens of that user.
+ */
+@Component
+public class AuthenticationFilter implements GlobalFilter, Ordered {
+
+    public static final String USER_ID_HEADER = "X-User-Id";
+
+    private static final String BEARER = "Bearer ";
+    private static final String TOKEN_PARAMETER = "access_token";
+    private static final String LOGOUT_PATH = "/api/users/logout";
+    private static final String USERS_PATH = "/api/users/";
+
+    private final TokenVerifier verifier;
+    private final RevocationList revocations;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Set<String> publicPaths;
+
+    /**
+     * @param publicPaths Paths reachable without a token, e.g. login and registration.
+     */
+    public AuthenticationFilter(TokenVerifier verifier, RevocationList revocations, MeterRegistry meterRegistry,
+                                @Value("${gateway.auth.enabled:true}") boolean enabled,
+                                @Value("${gateway.auth.public-paths:/api/users/login,/api/users/register}")
+                                Set<String> publicPaths) {
+        this.verifier = verifier;
+        this.revocations = revocations;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.publicPaths = publicPaths;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        if (!enabled || publicPaths.contains(path)) {
+            return chain.filter(withoutUserId(exchange));
+        }
+
+        String token = token(request);
+        if (token == null) {
+            return reject(exchange, "missing", "Bearer");
+        }
+        VerifiedToken verified;
+        try {
+            verified = verifier.verify(token);
+        } catch (InvalidTokenException e) {
+            return reject(exchange, e.getReason(), "Bearer error=\"invalid_token\"");
+        }
+        if (revocations.isRevoked(verified)) {
+            return reject(exchange, "revoked", "Bearer error=\"invalid_token\"");
+        }
+
+        ServerWebExchange authenticated = exchange.mutate()
+                .request(request.mutate().headers(headers -> headers.set(USER_ID_HEADER, verified.userId())).build())
+                .build();
+        HttpMethod method = request.getMethod();
+        if (HttpMethod.POST.equals(method) && LOGOUT_PATH.equals(path)) {
+            revocations.revoke(verified);
+        } else if (HttpMethod.DELETE.equals(method) && path.startsWith(USERS_PATH)
+                && path.indexOf('/', USERS_PATH.length()) < 0) {
+            String userId = path.substring(USERS_PATH.length());
+            Instant deletedAt = Instant.now();
+            return chain.filter(authenticated).then(Mono.fromRunnable(() -> {
+                HttpStatusCode status = authenticated.getResponse().getStatusCode();
+                if (status != null && status.is2xxSuccessful()) {
+                    revocations.revokeUser(userId, deletedAt);
+                }
+            }));
+        }
+        return chain.filter(authenticated);
+    }
+
+    private static ServerWebExchange withoutUserId(ServerWebExchange exchange) {
+        if (!exchange.getRequest().getHeaders().containsKey(USER_ID_HEADER)) {
+            return exchange;
+        }
+        return exchange.mutate()
+                .request(exchange.getRequest().mutate().headers(headers -> headers.remove(USER_ID_HEADER)).build())
+                .build();
+    }
+
+    private static String token(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return authorization.substring(BEARER.length()).trim();
+        }
+        if ("websocket".equalsIgnoreCase(request.getHeaders().getUpgrade())) {
+            return request.getQueryParams().getFirst(TOKEN_PARAMETER);
+        }
+        return null;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, String reason, String challenge) {
+        meterRegistry.counter("gateway.auth.rejected", "reason", reason).increment();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        response.getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, challenge);
+        return response.setComplete();
+    }
+
+    // First of the gateway's own filters: rejected requests do not use up rate limits,
+    // and the response cache only answers authenticated requests
+    @Override
+    public int getOrder() {
+        return -200;
+    }
+}
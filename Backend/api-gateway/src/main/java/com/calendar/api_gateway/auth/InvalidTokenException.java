@@ -0,0 +1,20 @@
+package com.calendar.api_gateway.auth;
+
+/**
+ * Thrown for an access token that must not be accepted. Rejections are expected in
+ * normal operation (expired tokens, forged ones under attack), so no stack trace is filled in.
+ */
+class InvalidTokenException extends RuntimeException {
+
+    // Short reason, used as metric tag: malformed, algorithm, signature, claims, lifetime, expired
+    private final String reason;
+
+    InvalidTokenException(String reason) {
+        super("Invalid access token: " + reason, null, false, false);
+        this.reason = reason;
+    }
+
+    String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,75 @@
+package com.calendar.api_gateway.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Access tokens revoked before they expire: single tokens by ID (logout) and all tokens
+ * of a user issued up to a point in time (user deleted).
+ *
+ * An entry is only kept as long as the tokens it covers could still be valid, so the
+ * list stays as small as the number of revocations within one token lifetime. It lives
+ * in the memory of this gateway instance. Its size is published as gauge
+ * "gateway.auth.revocations".
+ */
+@Component
+public class RevocationList {
+
+    // Token ID -> expiry of the token
+    private final Cache<String, Instant> tokens = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Instant>() {
+                @Override
+                public long expireAfterCreate(String tokenId, Instant expiresAt, long currentTime) {
+                    return remainingNanos(expiresAt);
+                }
+
+                @Override
+                public long expireAfterUpdate(String tokenId, Instant expiresAt, long currentTime, long currentDuration) {
+                    return remainingNanos(expiresAt);
+                }
+
+                @Override
+                public long expireAfterRead(String tokenId, Instant expiresAt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    // User ID -> tokens issued up to this time are revoked
+    private final Cache<String, Instant> users;
+
+    public RevocationList(TokenVerifier verifier, MeterRegistry meterRegistry) {
+        this.users = Caffeine.newBuilder()
+                .expireAfterWrite(verifier.maxLifetime())
+                .build();
+        Gauge.builder("gateway.auth.revocations", this, list -> list.tokens.estimatedSize() + list.users.estimatedSize())
+                .description("Revoked access tokens and users that are not expired yet")
+                .register(meterRegistry);
+    }
+
+    void revoke(VerifiedToken token) {
+        tokens.put(token.tokenId(), token.expiresAt());
+    }
+
+    void revokeUser(String userId, Instant issuedUpTo) {
+        users.asMap().merge(userId, issuedUpTo, (previous, next) -> next.isAfter(previous) ? next : previous);
+    }
+
+    boolean isRevoked(VerifiedToken token) {
+        if (tokens.getIfPresent(token.tokenId()) != null) {
+            return true;
+        }
+        Instant issuedUpTo = users.getIfPresent(token.userId());
+        return issuedUpTo != null && !token.issuedAt().isAfter(issuedUpTo);
+    }
+
+    private static long remainingNanos(Instant expiresAt) {
+        return Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+    }
+}
@@ -0,0 +1,141 @@
+package com.calendar.api_gateway.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Verifies the access tokens issued by user-service locally, without a call to it.
+ *
+ * Tokens are JWTs signed with HMAC-SHA256 ("HS256") with the secret shared with
+ * user-service (auth.token.secret). A token is accepted if its signature matches, it
+ * has not expired and its lifetime does not exceed auth.token.ttl-minutes. Verified
+ * tokens are cached until they expire, so further requests with the same token cost a
+ * single lookup; rejected tokens are never cached.
+ */
+@Component
+public class TokenVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec key;
+    private final Duration maxLifetime;
+    // Token -> verified claims
+    private final Cache<String, VerifiedToken> verified;
+
+    /**
+     * @param secret     Shared with user-service; required, at least 32 bytes.
+     * @param ttlMinutes Longest lifetime a token may have, as issued by user-service.
+     * @param cacheSize  Verified tokens kept in memory.
+     */
+    public TokenVerifier(ObjectMapper objectMapper,
+                         @Value("${auth.token.secret:}") String secret,
+                         @Value("${auth.token.ttl-minutes:60}") long ttlMinutes,
+                         @Value("${gateway.auth.token-cache-size:10000}") long cacheSize) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("auth.token.secret is not set: set AUTH_TOKEN_SECRET, "
+                    + "or use the dev profile for local development");
+        }
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("auth.token.secret must be at least " + MIN_SECRET_BYTES + " bytes long");
+        }
+        this.objectMapper = objectMapper;
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.maxLifetime = Duration.ofMinutes(ttlMinutes);
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(maxLifetime)
+                .build();
+    }
+
+    Duration maxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * @return The claims of a valid token.
+     * @throws InvalidTokenException If the token is malformed, forged or expired.
+     */
+    VerifiedToken verify(String token) {
+        VerifiedToken claims = verified.getIfPresent(token);
+        if (claims == null) {
+            claims = decode(token);
+            verified.put(token, claims);
+        }
+        if (!claims.expiresAt().isAfter(Instant.now())) {
+            verified.invalidate(token);
+            throw new InvalidTokenException("expired");
+        }
+        return claims;
+    }
+
+    private VerifiedToken decode(String token) {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = token.indexOf('.', headerEnd + 1);
+        if (headerEnd < 0 || payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            throw new InvalidTokenException("malformed");
+        }
+        JsonNode header = json(token.substring(0, headerEnd));
+        // Only the algorithm user-service signs with; never "none" or one chosen by the client
+        if (!"HS256".equals(header.path("alg").asText())) {
+            throw new InvalidTokenException("algorithm");
+        }
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(payloadEnd + 1));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTokenException("malformed");
+        }
+        if (!MessageDigest.isEqual(sign(token.substring(0, payloadEnd)), signature)) {
+            throw new InvalidTokenException("signature");
+        }
+
+        JsonNode claims = json(token.substring(headerEnd + 1, payloadEnd));
+        String userId = claims.path("sub").asText(null);
+        String tokenId = claims.path("jti").asText(null);
+        if (userId == null || tokenId == null || !claims.path("iat").canConvertToLong()
+                || !claims.path("exp").canConvertToLong()) {
+            throw new InvalidTokenException("claims");
+        }
+        Instant issuedAt = Instant.ofEpochSecond(claims.path("iat").asLong());
+        Instant expiresAt = Instant.ofEpochSecond(claims.path("exp").asLong());
+        if (Duration.between(issuedAt, expiresAt).compareTo(maxLifetime) > 0) {
+            throw new InvalidTokenException("lifetime");
+        }
+        return new VerifiedToken(userId, tokenId, issuedAt, expiresAt);
+    }
+
+    private JsonNode json(String base64) {
+        try {
+            return objectMapper.readTree(Base64.getUrlDecoder().decode(base64));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidTokenException("malformed");
+        }
+    }
+
+    private byte[] sign(String signingInput) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not verify token signature", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.calendar.api_gateway.auth;
+
+import java.time.Instant;
+
+/**
+ * Claims of an access token whose signature has been verified.
+ *
+ * @param userId  User the token was issued to (sub).
+ * @param tokenId Unique ID of the token (jti), used to revoke it.
+ */
+record VerifiedToken(String userId, String tokenId, Instant issuedAt, Instant expiresAt) {
+}
@@ -0,0 +1,16 @@
+package com.calendar.api_gateway.cache;
+
+import org.springframework.http.MediaType;
+
+import java.util.Set;
+
+/**
+ * Backend response kept by the {@link ResponseCache}.
+ *
+ * @param contentType Content type of the body, may be null.
+ * @param body        Complete response body.
+ * @param etag        Strong entity tag of the body, quoted.
+ * @param tags        Invalidation tags of the response.
+ */
+public record CachedResponse(MediaType contentType, byte[] body, String etag, Set<String> tags) {
+}
@@ -0,0 +1,134 @@
+package com.calendar.api_gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory store of backend responses.
+ * Caffeine evicts by size with W-TinyLFU, so rarely requested responses do not push
+ * out the hot ones. Every entry carries tags (resource family, entity IDs, user IDs);
+ * writes invalidate exactly the entries sharing a tag with them.
+ *
+ * The tag index of a key is only changed inside the atomic per-key operations of the
+ * cache (put, invalidation, eviction), so it never loses a key that is still cached.
+ *
+ * Size, hits, misses and evictions are published as cache metrics "gateway.responses".
+ */
+@Component
+public class ResponseCache implements MeterBinder {
+
+    private final Cache<String, CachedResponse> entries;
+    private final ConcurrentMap<String, CachedResponse> map;
+    // Tag -> keys of the entries carrying it
+    private final Map<String, Set<String>> keysByTag = new ConcurrentHashMap<>();
+    // Incremented by every invalidation; a response is only stored if no write
+    // completed while it was being fetched
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * @param maxSizeMb Upper bound for the summed size of all cached bodies.
+     * @param ttlS      Lifetime of an entry, limits staleness after writes that bypass the gateway.
+     */
+    public ResponseCache(@Value("${gateway.cache.max-size-mb:64}") long maxSizeMb,
+                         @Value("${gateway.cache.ttl-s:60}") long ttlS) {
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxSizeMb * 1024 * 1024)
+                .weigher((String key, CachedResponse response) -> key.length() + response.body().length)
+                .expireAfterWrite(Duration.ofSeconds(ttlS))
+                .recordStats()
+                // Runs within the atomic eviction of the entry
+                .evictionListener((String key, CachedResponse response, RemovalCause cause) -> {
+                    if (key != null && response != null) {
+                        untag(key, response.tags());
+                    }
+                })
+                .build();
+        this.map = entries.asMap();
+    }
+
+    public CachedResponse get(String key) {
+        return entries.getIfPresent(key);
+    }
+
+    /**
+     * Current invalidation epoch, to be passed to {@link #put} once the response arrived.
+     */
+    public long epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Stores a response unless an invalidation happened since the given epoch.
+     */
+    public void put(String key, long fetchedAt, CachedResponse response) {
+        map.compute(key, (k, previous) -> {
+            if (epoch.get() != fetchedAt) {
+                return previous;
+            }
+            if (previous != null) {
+                untag(k, previous.tags());
+            }
+            for (String tag : response.tags()) {
+                keysByTag.compute(tag, (t, keys) -> {
+                    Set<String> result = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                    result.add(k);
+                    return result;
+                });
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Drops every entry carrying one of the tags. The epoch is advanced first, so a
+     * response fetched before the write cannot be stored afterwards.
+     */
+    public void invalidate(Collection<String> tags) {
+        epoch.incrementAndGet();
+        for (String tag : tags) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys == null) {
+                continue;
+            }
+            for (String key : new ArrayList<>(keys)) {
+                map.computeIfPresent(key, (k, response) -> {
+                    untag(k, response.tags());
+                    return null;
+                });
+            }
+        }
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "gateway.responses");
+    }
+
+    private void untag(String key, Collection<String> tags) {
+        for (String tag : tags) {
+            keysByTag.computeIfPresent(tag, (t, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
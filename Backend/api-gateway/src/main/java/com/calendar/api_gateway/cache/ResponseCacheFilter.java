@@ -0,0 +1,405 @@
+package com.calendar.api_gateway.cache;
+
+import com.calendar.api_gateway.auth.AuthenticationFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Serves repeated reads from the {@link ResponseCache} and invalidates it on writes.
+ *
+ * Cached are successful GET requests below /api/todos, /api/categories and /api/users
+ * and GraphQL queries (POST /graphql, keyed by the request body). Cached responses keep
+ * the ETag of the service (the version of a single entity, which clients send back in
+ * If-Match) or otherwise get a strong ETag over the body; a matching If-None-Match is
+ * answered with 304 Not Modified. Entries are kept per signed-in user (X-User-Id), since
+ * the services answer the same request differently depending on who makes it.
+ *
+ * Entries are tagged with the entity IDs and user IDs found in their body and request.
+ * A write invalidates the tags of its path, of its response body and, for creations,
+ * the unscoped lists of the family; batch writes invalidate the whole family. GraphQL
+ * mutations invalidate all event entries, since a new or moved event can enter any date range.
+ *
+ * Persisted queries (extensions.persistedQuery) are classified by the query text the
+ * client registered them with. A hash the gateway has not seen yet is answered with
+ * "PersistedQueryNotFound", so the client resends the query text and the gateway learns
+ * whether it is a query or a mutation.
+ */
+@Component
+public class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    private static final String GRAPHQL_PATH = "/graphql";
+    private static final String GRAPHQL_FAMILY = "events";
+    private static final String BATCH = "batch";
+    // REST resource families, served below /api/<family>
+    private static final Set<String> REST_FAMILIES = Set.of("todos", "categories", "users");
+    // Path segments after the family that name an action instead of an entity ID
+    private static final Set<String> ACTIONS = Set.of("login", "logout", "register", "search", "export", "bulk", BATCH);
+    // JSON fields whose content belongs to another family than the surrounding response
+    private static final Map<String, String> FAMILY_BY_FIELD = Map.of(
+            "todoList", "todos",
+            "categoryList", "categories",
+            "category", "categories",
+            "userList", "users");
+    private static final Set<HttpMethod> WRITE_METHODS =
+            Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE);
+    private static final Pattern GRAPHQL_WRITE = Pattern.compile("\\b(mutation|subscription)\\b");
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+    private static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
+
+    private final ResponseCache cache;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxEntryBytes;
+    private final Set<String> readOnlyPosts;
+    // SHA-256 of a persisted query -> whether it is a mutation or subscription
+    private final Cache<String, Boolean> persistedQueries;
+
+    /**
+     * @param readOnlyPosts        POST endpoints that do not change any state, e.g. the login.
+     * @param maxPersistedQueries  Persisted query hashes whose operation type is remembered.
+     */
+    public ResponseCacheFilter(ResponseCache cache, ObjectMapper objectMapper,
+                               @Value("${gateway.cache.enabled:true}") boolean enabled,
+                               @Value("${gateway.cache.max-entry-kb:512}") int maxEntryKb,
+                               @Value("${gateway.cache.read-only-posts:/api/users/login,/api/users/logout}") Set<String> readOnlyPosts,
+                               @Value("${gateway.cache.max-persisted-queries:10000}") long maxPersistedQueries) {
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxEntryBytes = maxEntryKb * 1024;
+        this.readOnlyPosts = readOnlyPosts;
+        this.persistedQueries = Caffeine.newBuilder().maximumSize(maxPersistedQueries).build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        HttpMethod method = request.getMethod();
+
+        if (GRAPHQL_PATH.equals(path) && HttpMethod.POST.equals(method)) {
+            return ServerWebExchangeUtils.cacheRequestBody(exchange, cachedRequest ->
+                    graphql(exchange.mutate().request(cachedRequest).build(), chain));
+        }
+
+        String[] segments = path.split("/");
+        // ["", "api", "<family>", "<id or action>", ...]
+        if (segments.length < 3 || !"api".equals(segments[1]) || !REST_FAMILIES.contains(segments[2])) {
+            return chain.filter(exchange);
+        }
+        String family = segments[2];
+        String entity = segments.length > 3 && !ACTIONS.contains(segments[3]) ? segments[3] : null;
+
+        if (HttpMethod.GET.equals(method)) {
+            Set<String> tags = new LinkedHashSet<>();
+            tags.add(family);
+            MultiValueMap<String, String> params = request.getQueryParams();
+            String userId = params.getFirst("userId");
+            if (userId != null) {
+                tags.add(family + ":user:" + userId);
+            } else if (entity == null) {
+                tags.add(family + ":all");
+            }
+            for (String ids : params.getOrDefault("ids", List.of())) {
+                for (String id : ids.split(",")) {
+                    tags.add(family + ":" + id.trim());
+                }
+            }
+            String key = "GET " + path + (request.getURI().getRawQuery() != null ? "?" + request.getURI().getRawQuery() : "");
+            return read(exchange, chain, key, family, tags);
+        }
+        if (WRITE_METHODS.contains(method) && !readOnlyPosts.contains(path)) {
+            Set<String> tags = new LinkedHashSet<>();
+            if (entity != null) {
+                tags.add(family + ":" + entity);
+            } else if (segments.length > 3 && BATCH.equals(segments[3])) {
+                // Batch writes may touch the lists of any number of users
+                tags.add(family);
+            } else {
+                // A created entity may belong to any unscoped list of the family
+                tags.add(family + ":all");
+            }
+            return write(exchange, chain, family, tags);
+        }
+        return chain.filter(exchange);
+    }
+
+    private Mono<Void> graphql(ServerWebExchange exchange, GatewayFilterChain chain) {
+        DataBuffer body = exchange.getAttribute(ServerWebExchangeUtils.CACHED_REQUEST_BODY_ATTR);
+        if (body == null) {
+            return chain.filter(exchange);
+        }
+        String json = body.toString(body.readPosition(), body.readableByteCount(), StandardCharsets.UTF_8);
+        ObjectNode request;
+        try {
+            if (!(objectMapper.readTree(json) instanceof ObjectNode node)) {
+                return chain.filter(exchange);
+            }
+            request = node;
+        } catch (IOException e) {
+            return chain.filter(exchange);
+        }
+        String query = request.path("query").asText("");
+        String hash = request.path("extensions").path("persistedQuery").path("sha256Hash").asText(null);
+
+        boolean mutation;
+        if (hash == null) {
+            mutation = GRAPHQL_WRITE.matcher(query).find();
+        } else if (!query.isEmpty()) {
+            mutation = GRAPHQL_WRITE.matcher(query).find();
+            if (hash.equals(HexFormat.of().formatHex(digest(query.getBytes(StandardCharsets.UTF_8))))) {
+                persistedQueries.put(hash, mutation);
+            }
+            // Registration and later hash-only requests share the cache entry
+            request.remove("query");
+        } else {
+            Boolean known = persistedQueries.getIfPresent(hash);
+            if (known == null) {
+                return persistedQueryNotFound(exchange, hash);
+            }
+            mutation = known;
+        }
+        if (mutation) {
+            return write(exchange, chain, GRAPHQL_FAMILY, Set.of(GRAPHQL_FAMILY));
+        }
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add(GRAPHQL_FAMILY);
+        tags.add(GRAPHQL_FAMILY + ":all");
+        String key = hash != null ? request.toString() : json;
+        return read(exchange, chain, "POST " + GRAPHQL_PATH + " " + sha256(key.getBytes(StandardCharsets.UTF_8)),
+                GRAPHQL_FAMILY, tags);
+    }
+
+    // Same error as the event service reports for an unknown hash
+    private Mono<Void> persistedQueryNotFound(ServerWebExchange exchange, String hash) {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("message", PERSISTED_QUERY_NOT_FOUND);
+        error.putObject("extensions")
+                .put("persistedQueryId", hash)
+                .put("classification", PERSISTED_QUERY_NOT_FOUND);
+        ObjectNode result = objectMapper.createObjectNode();
+        result.putArray("errors").add(error);
+
+        byte[] bytes = result.toString().getBytes(StandardCharsets.UTF_8);
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(bytes.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+    }
+
+    /**
+     * Answers from the cache or forwards the request and stores a successful response.
+     */
+    private Mono<Void> read(ServerWebExchange exchange, GatewayFilterChain chain, String requestKey, String family,
+                            Set<String> requestTags) {
+        ServerHttpRequest request = exchange.getRequest();
+        String user = request.getHeaders().getFirst(AuthenticationFilter.USER_ID_HEADER);
+        String key = user != null ? user + " " + requestKey : requestKey;
+        String cacheControl = request.getHeaders().getCacheControl();
+        boolean bypass = cacheControl != null && cacheControl.contains("no-cache");
+        CachedResponse cached = bypass ? null : cache.get(key);
+        if (cached != null) {
+            return writeCached(exchange, cached);
+        }
+
+        long epoch = cache.epoch();
+        ServerHttpResponse response = exchange.getResponse();
+        ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(response) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                // Streamed exports are passed through; collecting them would hold the whole export in memory
+                if (!HttpStatus.OK.equals(getStatusCode())
+                        || MediaType.APPLICATION_NDJSON.isCompatibleWith(getHeaders().getContentType())) {
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(body).flatMap(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+
+                    Set<String> tags = bytes.length <= maxEntryBytes ? responseTags(bytes, family) : null;
+                    if (tags != null) {
+                        tags.addAll(requestTags);
+                        String etag = getHeaders().getETag() != null
+                                ? getHeaders().getETag() : "\"" + sha256(bytes) + "\"";
+                        cache.put(key, epoch, new CachedResponse(getHeaders().getContentType(), bytes, etag, tags));
+                        getHeaders().setETag(etag);
+                    }
+                    getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().response(decorated).build());
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(cached.etag());
+        headers.set(CACHE_STATUS_HEADER, "HIT");
+        if (matches(exchange.getRequest().getHeaders().getIfNoneMatch(), cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType() != null) {
+            headers.setContentType(cached.contentType());
+        }
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    /**
+     * Forwards a write and invalidates the affected entries before the client sees the
+     * response, so its next read cannot be served from a stale entry.
+     */
+    private Mono<Void> write(ServerWebExchange exchange, GatewayFilterChain chain, String family,
+                             Set<String> requestTags) {
+        Set<String> tags = new LinkedHashSet<>(requestTags);
+        AtomicBoolean invalidated = new AtomicBoolean();
+        Runnable invalidate = () -> {
+            if (invalidated.compareAndSet(false, true)) {
+                cache.invalidate(tags.isEmpty() ? Set.of(family) : tags);
+            }
+        };
+
+        ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return DataBufferUtils.join(body).flatMap(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    Set<String> bodyTags = getStatusCode() != null && getStatusCode().is2xxSuccessful()
+                            ? responseTags(bytes, family) : null;
+                    if (bodyTags != null) {
+                        bodyTags.remove(family);
+                        tags.addAll(bodyTags);
+                    }
+                    invalidate.run();
+                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+
+            @Override
+            public Mono<Void> setComplete() {
+                invalidate.run();
+                return super.setComplete();
+            }
+        };
+        return chain.filter(exchange.mutate().response(decorated).build())
+                .doFinally(signal -> invalidate.run());
+    }
+
+    /**
+     * Tags of a JSON response body: the family itself plus IDs and user IDs of all
+     * contained entities. Returns null if the body must not be cached.
+     */
+    private Set<String> responseTags(byte[] body, String family) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(body);
+        } catch (IOException e) {
+            return null;
+        }
+        if (root == null || root.has("errors")) { // GraphQL reports errors with status 200
+            return null;
+        }
+        Set<String> tags = new HashSet<>();
+        tags.add(family);
+        collectTags(root, family, tags::add);
+        return tags;
+    }
+
+    private static void collectTags(JsonNode node, String family, Consumer<String> tags) {
+        if (node.isArray()) {
+            node.forEach(child -> collectTags(child, family, tags));
+        } else if (node.isObject()) {
+            addTag(tags, family + ":", node.get("id"));
+            addTag(tags, family + ":user:", node.get("userId"));
+            addTag(tags, "categories:", node.get("categoryId"));
+            node.fields().forEachRemaining(field -> {
+                if (!"_links".equals(field.getKey())) {
+                    collectTags(field.getValue(), FAMILY_BY_FIELD.getOrDefault(field.getKey(), family), tags);
+                }
+            });
+        }
+    }
+
+    private static void addTag(Consumer<String> tags, String prefix, JsonNode value) {
+        if (value != null && value.isValueNode() && !value.isNull()) {
+            tags.accept(prefix + value.asText());
+        }
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch) {
+            String tag = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sha256(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest(bytes));
+    }
+
+    private static byte[] digest(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Decorates the response before NettyWriteResponseFilter writes the backend body into it
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+}
@@ -0,0 +1,149 @@
+package com.calendar.api_gateway.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Chooses between the healthy instances of a service by "power of two choices":
+ * two random instances are compared and the one with fewer requests in flight wins.
+ * This avoids the herd behaviour of always taking the global minimum, since
+ * concurrent decisions see the same counts.
+ *
+ * With sticky routing, requests carrying a userId go to the instance the user hashes
+ * to (rendezvous hashing, so only the users of a removed instance move), which keeps
+ * per-user caches of the instances warm. An instance that is clearly busier than the
+ * average is skipped in favour of the regular choice.
+ *
+ * A retry never goes to the instance that served the failed attempt, so requests do
+ * not keep hitting a dead instance until its next health check.
+ */
+public class LeastOutstandingLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    // Sticky choice is given up above this multiple of the average load
+    private static final double STICKY_LOAD_FACTOR = 2.0;
+
+    private final ObjectProvider<ServiceInstanceListSupplier> suppliers;
+    private final String serviceId;
+    private final OutstandingRequests outstanding;
+    private final boolean sticky;
+
+    public LeastOutstandingLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> suppliers, String serviceId,
+                                        OutstandingRequests outstanding, boolean sticky) {
+        this.suppliers = suppliers;
+        this.serviceId = serviceId;
+        this.outstanding = outstanding;
+        this.sticky = sticky;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = suppliers.getIfAvailable();
+        if (supplier == null) {
+            return Mono.just(new EmptyResponse());
+        }
+        String userId = sticky ? userId(request) : null;
+        ServiceInstance previous = previousAttempt(request);
+        return supplier.get(request).next().map(instances -> choose(without(instances, previous), userId));
+    }
+
+    private static List<ServiceInstance> without(List<ServiceInstance> instances, ServiceInstance excluded) {
+        if (excluded == null || instances.size() < 2) {
+            return instances;
+        }
+        List<ServiceInstance> result = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!(instance.getHost().equals(excluded.getHost()) && instance.getPort() == excluded.getPort())) {
+                result.add(instance);
+            }
+        }
+        return result.isEmpty() ? instances : result;
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances, String userId) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        if (instances.size() == 1) {
+            return new DefaultResponse(instances.get(0));
+        }
+        if (userId != null) {
+            ServiceInstance preferred = rendezvous(instances, userId);
+            if (outstanding.of(preferred) <= STICKY_LOAD_FACTOR * averageLoad(instances) + 1) {
+                return new DefaultResponse(preferred);
+            }
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.size());
+        int second = random.nextInt(instances.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return new DefaultResponse(outstanding.of(a) <= outstanding.of(b) ? a : b);
+    }
+
+    private double averageLoad(List<ServiceInstance> instances) {
+        long total = 0;
+        for (ServiceInstance instance : instances) {
+            total += outstanding.of(instance);
+        }
+        return (double) total / instances.size();
+    }
+
+    // Instance with the highest hash of (user, instance)
+    private static ServiceInstance rendezvous(List<ServiceInstance> instances, String userId) {
+        ServiceInstance best = null;
+        long bestHash = -1;
+        for (ServiceInstance instance : instances) {
+            CRC32 crc = new CRC32();
+            crc.update((userId + "@" + instance.getHost() + ":" + instance.getPort()).getBytes(StandardCharsets.UTF_8));
+            if (crc.getValue() > bestHash) {
+                bestHash = crc.getValue();
+                best = instance;
+            }
+        }
+        return best;
+    }
+
+    // Instance chosen for the previous attempt of this exchange, if this is a retry
+    private static ServiceInstance previousAttempt(Request request) {
+        if (!(request.getContext() instanceof RequestDataContext context) || context.getClientRequest() == null
+                || context.getClientRequest().getAttributes() == null) {
+            return null;
+        }
+        Object previous = context.getClientRequest().getAttributes().get(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        return previous instanceof Response<?> response && response.getServer() instanceof ServiceInstance instance
+                ? instance : null;
+    }
+
+    private static String userId(Request request) {
+        if (!(request.getContext() instanceof RequestDataContext context) || context.getClientRequest() == null) {
+            return null;
+        }
+        URI url = context.getClientRequest().getUrl();
+        return url != null ? UriComponentsBuilder.fromUri(url).build().getQueryParams().getFirst("userId") : null;
+    }
+
+    @Override
+    public String toString() {
+        return "LeastOutstandingLoadBalancer[" + serviceId + "]";
+    }
+}
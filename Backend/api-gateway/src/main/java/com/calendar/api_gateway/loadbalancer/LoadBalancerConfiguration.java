@@ -0,0 +1,38 @@
+package com.calendar.api_gateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer of every service, created in the service's own child context.
+ * Not annotated with @Configuration on purpose: it must not be picked up by the
+ * component scan of the gateway itself.
+ *
+ * The instances come from spring.cloud.discovery.client.simple.instances.<service>
+ * and are filtered by periodic health checks.
+ */
+public class LoadBalancerConfiguration {
+
+    @Bean
+    public ServiceInstanceListSupplier serviceInstanceListSupplier(ConfigurableApplicationContext context) {
+        return ServiceInstanceListSupplier.builder()
+                .withDiscoveryClient()
+                .withHealthChecks()
+                .build(context);
+    }
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> leastOutstandingLoadBalancer(
+            Environment environment, LoadBalancerClientFactory clientFactory, OutstandingRequests outstanding,
+            @Value("${gateway.load-balancer.sticky-by-user:false}") boolean sticky) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new LeastOutstandingLoadBalancer(
+                clientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class), serviceId, outstanding, sticky);
+    }
+}
@@ -0,0 +1,63 @@
+package com.calendar.api_gateway.loadbalancer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests in flight per backend instance, as input for the
+ * {@link LeastOutstandingLoadBalancer}. Runs right after the instance was chosen and
+ * counts until the response is written, failed or cancelled. The counts are published
+ * as gauge "gateway.lb.outstanding" per instance.
+ */
+@Component
+public class OutstandingRequests implements GlobalFilter, Ordered {
+
+    private final MeterRegistry meterRegistry;
+    // "<host>:<port>" -> requests in flight
+    private final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+
+    public OutstandingRequests(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        if (url == null) {
+            return chain.filter(exchange);
+        }
+        AtomicInteger counter = outstanding.computeIfAbsent(url.getHost() + ":" + url.getPort(), this::counter);
+        counter.incrementAndGet();
+        return chain.filter(exchange).doFinally(signal -> counter.decrementAndGet());
+    }
+
+    private AtomicInteger counter(String instance) {
+        AtomicInteger counter = new AtomicInteger();
+        Gauge.builder("gateway.lb.outstanding", counter, AtomicInteger::get).tag("instance", instance).register(meterRegistry);
+        return counter;
+    }
+
+    public int of(ServiceInstance instance) {
+        AtomicInteger counter = outstanding.get(instance.getHost() + ":" + instance.getPort());
+        return counter != null ? counter.get() : 0;
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
@@ -0,0 +1,44 @@
+package com.calendar.api_gateway.resilience;
+
+/**
+ * Limits retries to a fraction of the regular traffic of a route, so retries cannot
+ * multiply the load on a backend that is already failing. Every request deposits
+ * 'ratio' tokens, every retry withdraws one. A small constant refill keeps retries
+ * possible at low traffic.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double maxBalance;
+    private final double minRefillPerNano;
+    private double balance;
+    private long updatedAt;
+
+    RetryBudget(double ratio, double minRetriesPerSecond, long now) {
+        this.ratio = ratio;
+        this.minRefillPerNano = minRetriesPerSecond / 1_000_000_000d;
+        // Saved up retries of at most ten seconds at the minimum rate
+        this.maxBalance = Math.max(1, minRetriesPerSecond * 10);
+        this.balance = maxBalance;
+        this.updatedAt = now;
+    }
+
+    synchronized void deposit(long now) {
+        refill(now);
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw(long now) {
+        refill(now);
+        if (balance >= 1) {
+            balance -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refill(long now) {
+        balance = Math.min(maxBalance, balance + (now - updatedAt) * minRefillPerNano);
+        updatedAt = now;
+    }
+}
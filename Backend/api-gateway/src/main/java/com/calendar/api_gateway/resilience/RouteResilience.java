@@ -0,0 +1,179 @@
+package com.calendar.api_gateway.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.builder.BooleanSpec;
+import org.springframework.cloud.gateway.route.builder.UriSpec;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Isolates the gateway from slow or failing backends. Every route gets
+ * - connect and response timeouts per attempt,
+ * - a circuit breaker that answers from /fallback while the backend keeps failing,
+ * - retries of idempotent requests after connection errors, timeouts and 502/503/504,
+ *   limited by a {@link RetryBudget} per route.
+ *
+ * Timeouts can be overridden per route, e.g. gateway.resilience.todo-service.response-timeout-ms.
+ */
+@Component
+public class RouteResilience implements Customizer<ReactiveResilience4JCircuitBreakerFactory> {
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+    // Statuses of an unavailable backend; other errors are answers of the application
+    private static final Set<String> FAILURE_STATUSES = Set.of("502", "503", "504");
+    private static final Duration FIRST_BACKOFF = Duration.ofMillis(50);
+    private static final Duration MAX_BACKOFF = Duration.ofMillis(500);
+
+    private final Environment environment;
+    private final long connectTimeoutMs;
+    private final long responseTimeoutMs;
+    private final int retries;
+    private final double retryRatio;
+    private final double minRetriesPerSecond;
+    private final float failureRateThreshold;
+    private final Duration openStateDuration;
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * @param retryRatio          Retries allowed per regular request of a route.
+     * @param minRetriesPerSecond Retries per route that are allowed regardless of the traffic.
+     */
+    public RouteResilience(Environment environment,
+                           @Value("${gateway.resilience.connect-timeout-ms:1000}") long connectTimeoutMs,
+                           @Value("${gateway.resilience.response-timeout-ms:3000}") long responseTimeoutMs,
+                           @Value("${gateway.resilience.retries:2}") int retries,
+                           @Value("${gateway.resilience.retry-budget-ratio:0.2}") double retryRatio,
+                           @Value("${gateway.resilience.retry-budget-min-per-s:5}") double minRetriesPerSecond,
+                           @Value("${gateway.resilience.failure-rate-threshold:50}") float failureRateThreshold,
+                           @Value("${gateway.resilience.open-state-s:10}") long openStateS) {
+        this.environment = environment;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.responseTimeoutMs = responseTimeoutMs;
+        this.retries = retries;
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openStateDuration = Duration.ofSeconds(openStateS);
+    }
+
+    /**
+     * Adds timeouts, circuit breaker and retries to a route.
+     */
+    public UriSpec apply(String routeId, BooleanSpec route) {
+        return route
+                .filters(f -> f
+                        .circuitBreaker(c -> c.setName(routeId)
+                                .setFallbackUri("forward:/fallback")
+                                .setStatusCodes(FAILURE_STATUSES))
+                        .filter(retry(routeId)))
+                .metadata(Map.of(
+                        RouteMetadataUtils.CONNECT_TIMEOUT_ATTR, timeout(routeId, "connect-timeout-ms", connectTimeoutMs),
+                        RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR, timeout(routeId, "response-timeout-ms", responseTimeoutMs)));
+    }
+
+    /**
+     * Circuit breaker per route. Its time limit covers all attempts including the
+     * backoff, the single attempts are bounded by the response timeout of the route.
+     */
+    @Override
+    public void customize(ReactiveResilience4JCircuitBreakerFactory factory) {
+        factory.configureDefault(routeId -> {
+            long attemptMs = connectTimeoutMs + timeout(routeId, "response-timeout-ms", responseTimeoutMs);
+            Duration limit = Duration.ofMillis(attemptMs * (retries + 1) + MAX_BACKOFF.toMillis() * retries);
+            return new Resilience4JConfigBuilder(routeId)
+                    .circuitBreakerConfig(CircuitBreakerConfig.custom()
+                            .slidingWindowSize(20)
+                            .minimumNumberOfCalls(10)
+                            .failureRateThreshold(failureRateThreshold)
+                            .waitDurationInOpenState(openStateDuration)
+                            .permittedNumberOfCallsInHalfOpenState(3)
+                            .build())
+                    .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(limit).build())
+                    .build();
+        });
+    }
+
+    private GatewayFilter retry(String routeId) {
+        RetryBudget budget = budgets.computeIfAbsent(routeId,
+                id -> new RetryBudget(retryRatio, minRetriesPerSecond, System.nanoTime()));
+        return (exchange, chain) -> {
+            budget.deposit(System.nanoTime());
+            if (!idempotent(exchange)) {
+                return chain.filter(exchange);
+            }
+            // A failure status becomes an error for the duration of the retries, so both kinds of failure share them
+            return chain.filter(exchange)
+                    .then(Mono.defer(() -> failed(exchange)
+                            ? Mono.<Void>error(UnavailableResponse.INSTANCE)
+                            : Mono.<Void>empty()))
+                    .retryWhen(Retry.backoff(retries, FIRST_BACKOFF)
+                            .maxBackoff(MAX_BACKOFF)
+                            .filter(error -> (error == UnavailableResponse.INSTANCE || unavailable(error))
+                                    && budget.tryWithdraw(System.nanoTime()))
+                            .doBeforeRetry(signal -> reset(exchange))
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    // The response of the last attempt carries its failure status to the circuit breaker
+                    .onErrorResume(error -> error == UnavailableResponse.INSTANCE, error -> Mono.empty());
+        };
+    }
+
+    private static boolean failed(ServerWebExchange exchange) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status != null && FAILURE_STATUSES.contains(String.valueOf(status.value()));
+    }
+
+    // Releases the connection of the failed attempt and allows the exchange to be routed again
+    private static void reset(ServerWebExchange exchange) {
+        if (exchange.getAttributes().remove(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR) instanceof Connection connection) {
+            connection.dispose();
+        }
+        ServerWebExchangeUtils.reset(exchange);
+    }
+
+    private long timeout(String routeId, String name, long defaultMs) {
+        return environment.getProperty("gateway.resilience." + routeId + "." + name, Long.class, defaultMs);
+    }
+
+    private static boolean idempotent(ServerWebExchange exchange) {
+        return IDEMPOTENT_METHODS.contains(exchange.getRequest().getMethod());
+    }
+
+    // Connection errors and timeouts, also when wrapped
+    private static boolean unavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || FallbackController.isTimeout(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Signals a failure status of the backend to the retries; never leaves this class
+    private static final class UnavailableResponse extends RuntimeException {
+        static final UnavailableResponse INSTANCE = new UnavailableResponse();
+
+        private UnavailableResponse() {
+            super("Backend unavailable", null, false, false);
+        }
+    }
+}
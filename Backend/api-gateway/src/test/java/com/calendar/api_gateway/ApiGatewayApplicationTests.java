@@ -3,7 +3,8 @@ package com.calendar.api_gateway;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest // Indicates that this is a Spring Boot test, which loads the full application context
+// Indicates that this is a Spring Boot test, which loads the full application context; the token secret is required
+@SpringBootTest(properties = "auth.token.secret=test-only-calendar-token-secret-0123456789")
 class ApiGatewayApplicationTests {
 
     @Test // Marks this method as a test case
@@ -0,0 +1,70 @@
+package com.calendar.api_gateway.admission;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkheadTest {
+
+    @Test
+    void grantsPermitsUpToTheCapAndRejectsWhenTheQueueIsFull() {
+        Bulkhead bulkhead = new Bulkhead(2, 0, Duration.ofSeconds(1));
+
+        assertThat(bulkhead.acquire().block()).isTrue();
+        assertThat(bulkhead.acquire().block()).isTrue();
+        assertThat(bulkhead.acquire().block()).isFalse();
+        assertThat(bulkhead.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void releaseHandsThePermitToTheOldestWaiter() {
+        Bulkhead bulkhead = new Bulkhead(1, 2, Duration.ofSeconds(10));
+        bulkhead.acquire().block();
+
+        AtomicReference<Boolean> first = new AtomicReference<>();
+        AtomicReference<Boolean> second = new AtomicReference<>();
+        bulkhead.acquire().subscribe(first::set);
+        bulkhead.acquire().subscribe(second::set);
+        assertThat(bulkhead.queued()).isEqualTo(2);
+
+        bulkhead.release();
+        assertThat(first.get()).isTrue();
+        assertThat(second.get()).isNull();
+        assertThat(bulkhead.inFlight()).isEqualTo(1);
+        assertThat(bulkhead.queued()).isEqualTo(1);
+
+        bulkhead.release();
+        assertThat(second.get()).isTrue();
+        assertThat(bulkhead.queued()).isZero();
+    }
+
+    @Test
+    void waiterThatTimesOutIsRejectedAndLeavesTheQueue() {
+        Bulkhead bulkhead = new Bulkhead(1, 1, Duration.ofMillis(50));
+        bulkhead.acquire().block();
+
+        assertThat(bulkhead.acquire().block()).isFalse();
+        assertThat(bulkhead.queued()).isZero();
+
+        bulkhead.release();
+        assertThat(bulkhead.inFlight()).isZero();
+    }
+
+    @Test
+    void cancelledWaiterDoesNotKeepAPermit() {
+        Bulkhead bulkhead = new Bulkhead(1, 1, Duration.ofSeconds(10));
+        bulkhead.acquire().block();
+
+        Disposable waiter = bulkhead.acquire().subscribe();
+        waiter.dispose();
+        bulkhead.release();
+
+        assertThat(bulkhead.inFlight()).isZero();
+        assertThat(bulkhead.queued()).isZero();
+        assertThat(bulkhead.acquire().block()).isTrue();
+    }
+}
@@ -0,0 +1,56 @@
+package com.calendar.api_gateway.admission;
+
+import com.calendar.api_gateway.auth.AuthenticationFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private static final GatewayFilterChain CHAIN = exchange -> Mono.empty();
+
+    // One request per client until the bucket refills
+    private final RateLimitFilter filter = new RateLimitFilter(new SimpleMeterRegistry(), true, 1, 1, 100);
+
+    private static MockServerWebExchange request(String address, String uri, String userId) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(uri)
+                .remoteAddress(new InetSocketAddress(address, 40000));
+        if (userId != null) {
+            request.header(AuthenticationFilter.USER_ID_HEADER, userId);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    private HttpStatus status(MockServerWebExchange exchange) {
+        filter.filter(exchange, CHAIN).block();
+        return exchange.getResponse().getStatusCode() != null
+                ? HttpStatus.valueOf(exchange.getResponse().getStatusCode().value())
+                : HttpStatus.OK;
+    }
+
+    @Test
+    void queryParametersDoNotChangeTheBucketOfAnAnonymousClient() {
+        assertThat(status(request("10.0.0.1", "/api/todos?userId=a", null))).isEqualTo(HttpStatus.OK);
+
+        MockServerWebExchange rejected = request("10.0.0.1", "/api/todos?userId=b", null);
+        assertThat(status(rejected)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(rejected.getResponse().getHeaders().getFirst("Retry-After")).isEqualTo("1");
+    }
+
+    @Test
+    void clientsAreLimitedSeparately() {
+        assertThat(status(request("10.0.0.1", "/api/todos", null))).isEqualTo(HttpStatus.OK);
+        assertThat(status(request("10.0.0.2", "/api/todos", null))).isEqualTo(HttpStatus.OK);
+        // Authenticated users have their own bucket, wherever they connect from
+        assertThat(status(request("10.0.0.1", "/api/todos", "u1"))).isEqualTo(HttpStatus.OK);
+        assertThat(status(request("10.0.0.3", "/api/todos", "u1"))).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+}
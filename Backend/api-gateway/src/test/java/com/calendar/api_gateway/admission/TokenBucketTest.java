@@ -0,0 +1,38 @@
+package com.calendar.api_gateway.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 1, 0);
+
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.remaining()).isZero();
+        assertThat(bucket.tryConsume(0)).isEqualTo(SECOND);
+    }
+
+    @Test
+    void refillsContinuouslyUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 4, 0);
+        bucket.tryConsume(0);
+        bucket.tryConsume(0);
+
+        // A quarter of a second refills one token
+        assertThat(bucket.tryConsume(SECOND / 8)).isEqualTo(SECOND / 8);
+        assertThat(bucket.tryConsume(SECOND / 4)).isZero();
+
+        // Long idle periods do not save up more than the capacity
+        assertThat(bucket.tryConsume(100 * SECOND)).isZero();
+        assertThat(bucket.remaining()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,57 @@
+package com.calendar.api_gateway.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevocationListTest {
+
+    private static final Instant NOW = Instant.now();
+
+    private final RevocationList revocations = new RevocationList(
+            new TokenVerifier(new ObjectMapper(), "test-only-calendar-token-secret-0123456789", 60, 100),
+            new SimpleMeterRegistry());
+
+    private static VerifiedToken token(String userId, String tokenId, Instant issuedAt) {
+        return new VerifiedToken(userId, tokenId, issuedAt, issuedAt.plusSeconds(3600));
+    }
+
+    @Test
+    void revokesSingleToken() {
+        VerifiedToken revoked = token("u1", "t1", NOW);
+
+        revocations.revoke(revoked);
+
+        assertThat(revocations.isRevoked(revoked)).isTrue();
+        assertThat(revocations.isRevoked(token("u1", "t2", NOW))).isFalse();
+    }
+
+    @Test
+    void revokesTokensOfUserIssuedUpToThatTime() {
+        revocations.revokeUser("u1", NOW);
+
+        assertThat(revocations.isRevoked(token("u1", "t1", NOW.minusSeconds(60)))).isTrue();
+        assertThat(revocations.isRevoked(token("u1", "t2", NOW))).isTrue();
+        assertThat(revocations.isRevoked(token("u1", "t3", NOW.plusSeconds(1)))).isFalse();
+        assertThat(revocations.isRevoked(token("u2", "t4", NOW.minusSeconds(60)))).isFalse();
+    }
+
+    @Test
+    void earlierRevocationOfUserDoesNotShortenLaterOne() {
+        revocations.revokeUser("u1", NOW);
+        revocations.revokeUser("u1", NOW.minusSeconds(600));
+
+        assertThat(revocations.isRevoked(token("u1", "t1", NOW.minusSeconds(60)))).isTrue();
+    }
+
+    @Test
+    void expiredTokensAreNotKept() {
+        revocations.revoke(new VerifiedToken("u1", "t1", NOW.minusSeconds(7200), NOW.minusSeconds(3600)));
+
+        assertThat(revocations.isRevoked(token("u1", "t1", NOW.minusSeconds(7200)))).isFalse();
+    }
+}
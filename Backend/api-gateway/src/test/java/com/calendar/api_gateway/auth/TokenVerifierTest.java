@@ -0,0 +1,92 @@
+package com.calendar.api_gateway.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenVerifierTest {
+
+    private static final String SECRET = "test-only-calendar-token-secret-0123456789";
+    private static final String HS256 = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
+
+    private final TokenVerifier verifier = new TokenVerifier(new ObjectMapper(), SECRET, 60, 100);
+
+    // A token as user-service issues it, valid from 'issuedAt' for 'minutes'
+    private static String token(String header, Instant issuedAt, long minutes, String secret) throws Exception {
+        String claims = "{\"sub\":\"u1\",\"jti\":\"t1\",\"iat\":" + issuedAt.getEpochSecond()
+                + ",\"exp\":" + issuedAt.plusSeconds(minutes * 60).getEpochSecond() + "}";
+        String signingInput = base64(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + base64(claims.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return signingInput + "." + base64(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String token(Instant issuedAt, long minutes) throws Exception {
+        return token(HS256, issuedAt, minutes, SECRET);
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private void assertRejected(String token, String reason) {
+        assertThatThrownBy(() -> verifier.verify(token))
+                .isInstanceOf(InvalidTokenException.class)
+                .extracting(e -> ((InvalidTokenException) e).getReason())
+                .isEqualTo(reason);
+    }
+
+    @Test
+    void acceptsValidToken() throws Exception {
+        Instant issuedAt = Instant.now().minusSeconds(60);
+
+        VerifiedToken claims = verifier.verify(token(issuedAt, 60));
+
+        assertThat(claims.userId()).isEqualTo("u1");
+        assertThat(claims.tokenId()).isEqualTo("t1");
+        assertThat(claims.issuedAt()).isEqualTo(Instant.ofEpochSecond(issuedAt.getEpochSecond()));
+    }
+
+    @Test
+    void rejectsForgedTokens() throws Exception {
+        String valid = token(Instant.now(), 60);
+        String otherClaims = base64("{\"sub\":\"u2\",\"jti\":\"t1\",\"iat\":0,\"exp\":9999999999}"
+                .getBytes(StandardCharsets.UTF_8));
+        String[] parts = valid.split("\\.");
+
+        assertRejected(parts[0] + "." + otherClaims + "." + parts[2], "signature");
+        assertRejected(token(HS256, Instant.now(), 60, SECRET + "-other"), "signature");
+        assertRejected(base64("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "." + parts[1] + ".", "algorithm");
+        assertRejected("not-a-token", "malformed");
+    }
+
+    @Test
+    void rejectsExpiredTokens() throws Exception {
+        assertRejected(token(Instant.now().minusSeconds(7200), 60), "expired");
+    }
+
+    @Test
+    void rejectsTokensLivingLongerThanIssued() throws Exception {
+        assertRejected(token(Instant.now(), 24 * 60), "lifetime");
+    }
+
+    @Test
+    void requiresLongEnoughSecret() {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertThatThrownBy(() -> new TokenVerifier(objectMapper, " ", 60, 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new TokenVerifier(objectMapper, "too-short", 60, 100))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("32 bytes");
+    }
+}
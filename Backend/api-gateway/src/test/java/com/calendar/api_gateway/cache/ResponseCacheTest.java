@@ -0,0 +1,58 @@
+package com.calendar.api_gateway.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private final ResponseCache cache = new ResponseCache(1, 60);
+
+    private static CachedResponse response(String... tags) {
+        return new CachedResponse(MediaType.APPLICATION_JSON, "{}".getBytes(), "\"1\"", Set.of(tags));
+    }
+
+    @Test
+    void invalidatesExactlyTheEntriesSharingATag() {
+        cache.put("GET /api/todos?userId=a", cache.epoch(), response("todos", "user:a"));
+        cache.put("GET /api/todos?userId=b", cache.epoch(), response("todos", "user:b"));
+        cache.put("GET /api/users/a", cache.epoch(), response("users", "user:a"));
+
+        cache.invalidate(List.of("user:b"));
+
+        assertThat(cache.get("GET /api/todos?userId=a")).isNotNull();
+        assertThat(cache.get("GET /api/todos?userId=b")).isNull();
+        assertThat(cache.get("GET /api/users/a")).isNotNull();
+
+        cache.invalidate(List.of("todos"));
+
+        assertThat(cache.get("GET /api/todos?userId=a")).isNull();
+        assertThat(cache.get("GET /api/users/a")).isNotNull();
+    }
+
+    @Test
+    void responseFetchedBeforeAnInvalidationIsNotStored() {
+        long fetchedAt = cache.epoch();
+        cache.invalidate(List.of("todos"));
+
+        cache.put("GET /api/todos", fetchedAt, response("todos"));
+
+        assertThat(cache.get("GET /api/todos")).isNull();
+    }
+
+    @Test
+    void replacedEntryKeepsOnlyItsNewTags() {
+        cache.put("GET /api/todos/1", cache.epoch(), response("todos", "todo:1", "user:a"));
+        cache.put("GET /api/todos/1", cache.epoch(), response("todos", "todo:1", "user:b"));
+
+        cache.invalidate(List.of("user:a"));
+        assertThat(cache.get("GET /api/todos/1")).isNotNull();
+
+        cache.invalidate(List.of("user:b"));
+        assertThat(cache.get("GET /api/todos/1")).isNull();
+    }
+}
@@ -0,0 +1,51 @@
+package com.calendar.api_gateway.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Spends all available retries and returns how many there were
+    private static int drain(RetryBudget budget, long now) {
+        int retries = 0;
+        while (budget.tryWithdraw(now)) {
+            retries++;
+        }
+        return retries;
+    }
+
+    @Test
+    void startsWithTenSecondsOfMinimumRetries() {
+        RetryBudget budget = new RetryBudget(0.2, 1, 0);
+
+        assertThat(drain(budget, 0)).isEqualTo(10);
+        assertThat(budget.tryWithdraw(0)).isFalse();
+    }
+
+    @Test
+    void requestsEarnRetriesInProportion() {
+        RetryBudget budget = new RetryBudget(0.25, 1, 0);
+        drain(budget, 0);
+
+        for (int i = 0; i < 40; i++) {
+            budget.deposit(0);
+        }
+        assertThat(drain(budget, 0)).isEqualTo(10);
+    }
+
+    @Test
+    void refillsAtTheMinimumRateWithoutTraffic() {
+        RetryBudget budget = new RetryBudget(0.2, 2, 0);
+        drain(budget, 0);
+
+        assertThat(budget.tryWithdraw(SECOND / 4)).isFalse();
+        assertThat(drain(budget, SECOND)).isEqualTo(2);
+        // Never more than ten seconds worth
+        assertThat(drain(budget, 1000 * SECOND)).isEqualTo(20);
+    }
+}
@@ -0,0 +1,61 @@
+#!/usr/bin/env python3
+"""
+Compares two directories of JMH JSON results (see run-benchmarks.sh) and exits
+with status 1 if any benchmark got slower than the allowed threshold.
+
+    ./compare-benchmarks.py results-baseline results [--threshold 10]
+
+Benchmarks are matched by name, parameters and thread count. Throughput scores
+are better when higher, time-based scores (avgt, sample, ss) when lower.
+"""
+import argparse
+import json
+import sys
+from pathlib import Path
+
+
+def load(directory):
+    results = {}
+    for file in sorted(Path(directory).glob("*.json")):
+        for entry in json.loads(file.read_text()):
+            params = ",".join(f"{k}={v}" for k, v in sorted((entry.get("params") or {}).items()))
+            key = (entry["benchmark"], params, entry["threads"])
+            metric = entry["primaryMetric"]
+            results[key] = (entry["mode"], metric["score"], metric["scoreUnit"])
+    return results
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("baseline", help="directory with the baseline results")
+    parser.add_argument("current", help="directory with the results to check")
+    parser.add_argument("--threshold", type=float, default=10.0,
+                        help="allowed slowdown in percent (default: 10)")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+    for key in sorted(current):
+        if key not in baseline:
+            continue
+        mode, score, unit = current[key]
+        _, base_score, _ = baseline[key]
+        if base_score == 0:
+            continue
+        # Positive change means slower, regardless of the mode
+        change = (base_score - score) / base_score if mode == "thrpt" else (score - base_score) / base_score
+        change *= 100
+        status = "REGRESSION" if change > args.threshold else "ok"
+        if status != "ok":
+            regressions += 1
+        name, params, threads = key
+        print(f"{status:10} {name} [{params}] t={threads}: {base_score:.3f} -> {score:.3f} {unit} "
+              f"({change:+.1f}% slower)")
+
+    print(f"{regressions} regression(s) above {args.threshold}%")
+    return 1 if regressions else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
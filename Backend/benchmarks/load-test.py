@@ -0,0 +1,182 @@
+#!/usr/bin/env python3
+"""
+HTTP load test with many concurrent keep-alive connections, used by
+run-load-test.sh to compare platform and virtual request threads.
+
+    ./load-test.py http://localhost:8083/api/todos?userId=load --connections 1000 --duration 30
+    ./load-test.py URL --connections 10000 --slow-clients 400 --slow-path /api/todos --output result.json
+
+Every connection sends GET requests to URL one after another for the given
+duration. Slow clients hold a request open by sending a POST body to
+--slow-path one byte at a time; a blocking server thread waits for that body,
+so they show how the server copes with requests that occupy a thread while
+doing nothing. Only the latencies of the GET requests are reported.
+"""
+import argparse
+import asyncio
+import json
+import resource
+import time
+from urllib.parse import urlsplit
+
+SLOW_BODY = b'{"title":"slow client","userId":"load","completed":false}'
+
+
+def percentile(values, fraction):
+    if not values:
+        return None
+    return values[min(len(values) - 1, int(len(values) * fraction))]
+
+
+async def read_response(reader):
+    """
+    Reads one HTTP/1.1 response with Content-Length or chunked body and returns its
+    status code and whether the server keeps the connection open.
+    """
+    status_line = await reader.readline()
+    if not status_line:
+        raise ConnectionError("connection closed")
+    status = int(status_line.split()[1])
+    length = None
+    chunked = False
+    keep_alive = True
+    while True:
+        line = await reader.readline()
+        if line in (b"\r\n", b"\n", b""):
+            break
+        name, _, value = line.decode("latin-1").partition(":")
+        name = name.strip().lower()
+        if name == "content-length":
+            length = int(value.strip())
+        elif name == "transfer-encoding" and "chunked" in value.lower():
+            chunked = True
+        elif name == "connection" and "close" in value.lower():
+            keep_alive = False
+    if chunked:
+        while True:
+            size = int((await reader.readline()).split(b";")[0], 16)
+            await reader.readexactly(size + 2)
+            if size == 0:
+                break
+    elif length:
+        await reader.readexactly(length)
+    return status, keep_alive
+
+
+async def client(host, port, request, deadline, timeout, stats):
+    """Sends requests over one connection until the deadline; reconnects when the server closes it."""
+    while time.monotonic() < deadline:
+        try:
+            reader, writer = await asyncio.wait_for(asyncio.open_connection(host, port), timeout)
+        except (OSError, asyncio.TimeoutError):
+            stats["connect_errors"] += 1
+            return
+        try:
+            keep_alive = True
+            while keep_alive and time.monotonic() < deadline:
+                started = time.monotonic()
+                writer.write(request)
+                status, keep_alive = await asyncio.wait_for(read_response(reader), timeout)
+                stats["latencies"].append(time.monotonic() - started)
+                if status >= 400:
+                    stats["errors"] += 1
+        except asyncio.TimeoutError:
+            stats["timeouts"] += 1
+            return
+        except (OSError, ConnectionError, asyncio.IncompleteReadError, ValueError, IndexError):
+            stats["errors"] += 1
+            return
+        finally:
+            writer.close()
+
+
+async def slow_client(host, port, path, deadline):
+    """Sends the headers of a POST and then its body one byte per second, reconnecting until the deadline."""
+    while time.monotonic() < deadline:
+        try:
+            reader, writer = await asyncio.open_connection(host, port)
+            writer.write(f"POST {path} HTTP/1.1\r\nHost: {host}\r\nContent-Type: application/json\r\n"
+                         f"Content-Length: {len(SLOW_BODY)}\r\n\r\n".encode())
+            for byte in SLOW_BODY:
+                if time.monotonic() >= deadline:
+                    break
+                writer.write(bytes([byte]))
+                await writer.drain()
+                await asyncio.sleep(1)
+            else:
+                await read_response(reader)
+            writer.close()
+        except (OSError, ConnectionError, asyncio.IncompleteReadError, ValueError, IndexError):
+            await asyncio.sleep(1)
+
+
+async def run(args):
+    url = urlsplit(args.url)
+    host, port = url.hostname, url.port or 80
+    path = url.path + ("?" + url.query if url.query else "")
+    request = f"GET {path} HTTP/1.1\r\nHost: {host}\r\nAccept: application/json\r\n\r\n".encode()
+
+    stats = {"latencies": [], "errors": 0, "timeouts": 0, "connect_errors": 0}
+    started = time.monotonic()
+    deadline = started + args.duration
+    slow = [asyncio.create_task(slow_client(host, port, args.slow_path, deadline))
+            for _ in range(args.slow_clients)]
+    if slow:
+        await asyncio.sleep(args.slow_ramp)  # Let the slow clients occupy the server first
+    clients = []
+    for i in range(args.connections):
+        clients.append(asyncio.create_task(client(host, port, request, deadline, args.timeout, stats)))
+        if i % 500 == 499:
+            await asyncio.sleep(0.05)  # Spread the connects over the accept backlog
+    await asyncio.gather(*clients)
+    for task in slow:
+        task.cancel()
+    await asyncio.gather(*slow, return_exceptions=True)
+    elapsed = time.monotonic() - started
+
+    latencies = sorted(stats["latencies"])
+    millis = lambda value: None if value is None else round(value * 1000, 2)
+    return {
+        "url": args.url,
+        "connections": args.connections,
+        "slow_clients": args.slow_clients,
+        "duration_s": round(elapsed, 1),
+        "requests": len(latencies),
+        "throughput_rps": round(len(latencies) / elapsed, 1),
+        "p50_ms": millis(percentile(latencies, 0.50)),
+        "p90_ms": millis(percentile(latencies, 0.90)),
+        "p99_ms": millis(percentile(latencies, 0.99)),
+        "max_ms": millis(latencies[-1] if latencies else None),
+        "errors": stats["errors"],
+        "timeouts": stats["timeouts"],
+        "connect_errors": stats["connect_errors"],
+    }
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("url", help="URL requested with GET by every connection")
+    parser.add_argument("--connections", type=int, default=1000, help="concurrent connections (default: 1000)")
+    parser.add_argument("--duration", type=float, default=30, help="test duration in seconds (default: 30)")
+    parser.add_argument("--timeout", type=float, default=10, help="timeout per request in seconds (default: 10)")
+    parser.add_argument("--slow-clients", type=int, default=0, help="connections trickling a POST body (default: 0)")
+    parser.add_argument("--slow-path", default="/api/todos", help="path the slow clients post to")
+    parser.add_argument("--slow-ramp", type=float, default=3, help="seconds the slow clients start ahead")
+    parser.add_argument("--output", help="file to write the result to as JSON")
+    args = parser.parse_args()
+
+    # Every connection needs a file descriptor
+    soft, hard = resource.getrlimit(resource.RLIMIT_NOFILE)
+    wanted = args.connections + args.slow_clients + 100
+    if soft < wanted:
+        resource.setrlimit(resource.RLIMIT_NOFILE, (min(wanted, hard), hard))
+
+    result = asyncio.run(run(args))
+    print(json.dumps(result))
+    if args.output:
+        with open(args.output, "w") as file:
+            json.dump(result, file, indent=2)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,39 @@
+#!/usr/bin/env bash
+# Runs the JMH benchmarks of all services (profile "benchmark" of each module) and
+# writes one JSON result per service and thread count to $RESULTS_DIR.
+#
+#   ./run-benchmarks.sh                              all benchmarks, all data sizes, 1 and 4 threads
+#   THREADS="1 2 8" ./run-benchmarks.sh              other thread counts
+#   ./run-benchmarks.sh -p size=1000,100000          further arguments are passed to JMH
+#   SERVICES="todo-service" ./run-benchmarks.sh      only some services
+#
+# Compare two result directories with compare-benchmarks.py to gate regressions.
+set -euo pipefail
+
+BENCHMARK_DIR="$(cd "$(dirname "$0")" && pwd)"
+BACKEND_DIR="$(dirname "$BENCHMARK_DIR")"
+RESULTS_DIR="${RESULTS_DIR:-$BENCHMARK_DIR/results}"
+THREADS="${THREADS:-1 4}"
+SERVICES="${SERVICES:-event-service todo-service user-service category-service/category-service}"
+MVN="${MVN:-./mvnw}"
+
+mkdir -p "$RESULTS_DIR"
+echo "== Installing the shared library"
+(cd "$BACKEND_DIR/common" && $MVN -B -q install -DskipTests)
+
+for service in $SERVICES; do
+    cd "$BACKEND_DIR/$service"
+    echo "== Building benchmarks of $service"
+    $MVN -B -q -Pbenchmark test-compile dependency:build-classpath \
+        -Dmdep.outputFile=target/benchmark/jmh.classpath -Dmdep.includeScope=test
+    classpath="target/benchmark/test-classes:target/benchmark/classes:$(cat target/benchmark/jmh.classpath)"
+    name="$(basename "$service")"
+
+    for threads in $THREADS; do
+        echo "== Running benchmarks of $service with $threads thread(s)"
+        java -cp "$classpath" org.openjdk.jmh.Main -t "$threads" \
+            -rf json -rff "$RESULTS_DIR/$name-t$threads.json" "$@"
+    done
+done
+
+echo "Results written to $RESULTS_DIR"
@@ -0,0 +1,100 @@
+#!/usr/bin/env bash
+# Compares platform and virtual request threads of a servlet-based service under load:
+# for every thread mode and connection count the service is started with an empty
+# data directory, seeded and loaded with load-test.py. Results are written as JSON
+# to $RESULTS_DIR and summarised at the end.
+#
+#   ./run-load-test.sh                                 todo-service, 1000 and 10000 connections
+#   CONNECTIONS="500 5000" DURATION=60 ./run-load-test.sh
+#   SLOW_CLIENTS=400 ./run-load-test.sh                plus clients holding a request thread each
+#   SERVICE=user-service PORT=8082 LOAD_PATH=/api/users SLOW_PATH=/api/users ./run-load-test.sh
+#
+# Virtual threads need Java 21 or newer: set JAVA_HOME accordingly (the build itself targets Java 17).
+set -euo pipefail
+
+BENCHMARK_DIR="$(cd "$(dirname "$0")" && pwd)"
+BACKEND_DIR="$(dirname "$BENCHMARK_DIR")"
+RESULTS_DIR="${RESULTS_DIR:-$BENCHMARK_DIR/results}"
+SERVICE="${SERVICE:-todo-service}"
+PORT="${PORT:-8083}"
+LOAD_PATH="${LOAD_PATH:-/api/todos?userId=load&size=10}"
+SLOW_PATH="${SLOW_PATH:-/api/todos}"
+SEED_PATH="${SEED_PATH:-/api/todos/batch}"
+CONNECTIONS="${CONNECTIONS:-1000 10000}"
+MODES="${MODES:-platform virtual}"
+DURATION="${DURATION:-30}"
+SLOW_CLIENTS="${SLOW_CLIENTS:-0}"
+MVN="${MVN:-./mvnw}"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+# Gateway and user-service refuse to start without a token secret
+export AUTH_TOKEN_SECRET="${AUTH_TOKEN_SECRET:-benchmark-only-calendar-token-secret}"
+
+mkdir -p "$RESULTS_DIR"
+echo "== Installing the shared library"
+(cd "$BACKEND_DIR/common" && $MVN -B -q install -DskipTests)
+cd "$BACKEND_DIR/$SERVICE"
+echo "== Building $SERVICE"
+$MVN -B -q package -DskipTests
+jar="$(ls target/*.jar | grep -v '\.original$' | head -1)"
+name="$(basename "$SERVICE")"
+
+"$JAVA" -version 2>&1 | head -1
+if [[ "$MODES" == *virtual* ]] && ! "$JAVA" -version 2>&1 | grep -qE 'version "(2[1-9]|[3-9][0-9])'; then
+    echo "Virtual threads need Java 21 or newer; set JAVA_HOME" >&2
+    exit 1
+fi
+
+pid=""
+stop_service() {
+    if [ -n "$pid" ]; then
+        kill "$pid" 2>/dev/null || true
+        wait "$pid" 2>/dev/null || true
+        pid=""
+    fi
+}
+trap stop_service EXIT
+
+for mode in $MODES; do
+    for connections in $CONNECTIONS; do
+        data="$(mktemp -d)"
+        virtual=$([ "$mode" = virtual ] && echo true || echo false)
+        echo "== $name: $mode threads, $connections connections, $SLOW_CLIENTS slow clients"
+        # Tomcat accepts at most max-connections at once; the rest would wait in the backlog
+        "$JAVA" -jar "$jar" --server.port="$PORT" --storage.directory="$data" \
+            --spring.threads.virtual.enabled="$virtual" \
+            --server.tomcat.max-connections=$((connections + SLOW_CLIENTS + 100)) \
+            > "$RESULTS_DIR/load-$name-$mode-c$connections.log" 2>&1 &
+        pid=$!
+        until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do
+            kill -0 "$pid" 2>/dev/null || { echo "$name did not start, see the log" >&2; exit 1; }
+            sleep 1
+        done
+
+        # A few todos for the list endpoint, then a short warm-up
+        if [ -n "$SEED_PATH" ]; then
+            python3 -c 'import json; print(json.dumps([{"title": f"todo {i}", "userId": "load"} for i in range(100)]))' \
+                | curl -sf -o /dev/null -H 'Content-Type: application/json' --data @- "http://localhost:$PORT$SEED_PATH"
+        fi
+        python3 "$BENCHMARK_DIR/load-test.py" "http://localhost:$PORT$LOAD_PATH" \
+            --connections 50 --duration 5 > /dev/null
+
+        python3 "$BENCHMARK_DIR/load-test.py" "http://localhost:$PORT$LOAD_PATH" \
+            --connections "$connections" --duration "$DURATION" \
+            --slow-clients "$SLOW_CLIENTS" --slow-path "$SLOW_PATH" \
+            --output "$RESULTS_DIR/load-$name-$mode-c$connections.json"
+        stop_service
+        rm -rf "$data"
+    done
+done
+
+echo "== Summary ($RESULTS_DIR)"
+python3 - "$RESULTS_DIR" "$name" <<'EOF'
+import json, sys
+from pathlib import Path
+
+print(f"{'run':<40} {'req/s':>9} {'p50 ms':>9} {'p99 ms':>9} {'max ms':>9} {'errors':>7} {'timeouts':>9}")
+for file in sorted(Path(sys.argv[1]).glob(f"load-{sys.argv[2]}-*.json")):
+    r = json.loads(file.read_text())
+    print(f"{file.stem:<40} {r['throughput_rps']:>9} {r['p50_ms']!s:>9} {r['p99_ms']!s:>9} {r['max_ms']!s:>9} "
+          f"{r['errors'] + r['connect_errors']:>7} {r['timeouts']:>9}")
+EOF
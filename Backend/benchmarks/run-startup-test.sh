@@ -0,0 +1,128 @@
+#!/usr/bin/env bash
+# Compares the start-up of the services built normally, with Spring AOT and a CDS archive
+# (profile cds) and as GraalVM native image (profile native): every service is started RUNS
+# times per mode with in-memory storage. A run is timed from the start of the process until
+# /actuator/health answers, and the resident set size (RSS) of the process is read from /proc
+# at that moment. Results are written to $RESULTS_DIR/startup.csv and summarised at the end.
+#
+#   ./run-startup-test.sh                                  all services, modes jar, aot and cds
+#   SERVICES="todo-service user-service" RUNS=10 ./run-startup-test.sh
+#   MODES="jar cds native" ./run-startup-test.sh           native needs GraalVM as JAVA_HOME
+#
+# Modes:
+#   jar      java -jar on the executable jar
+#   aot      the extracted jar with -Dspring.aot.enabled=true
+#   cds      like aot, plus the class data sharing archive of the training run (-Xshare:on,
+#            so a run fails instead of silently starting without the archive)
+#   native   the native executable
+#
+# The first WARMUP runs of every mode are not counted, so all modes start with the files in
+# the page cache. JAVA_OPTS is passed to every JVM, e.g. JAVA_OPTS=-Xmx256m. Linux only (/proc).
+set -euo pipefail
+
+BENCHMARK_DIR="$(cd "$(dirname "$0")" && pwd)"
+BACKEND_DIR="$(dirname "$BENCHMARK_DIR")"
+RESULTS_DIR="${RESULTS_DIR:-$BENCHMARK_DIR/results}"
+SERVICES="${SERVICES:-api-gateway event-service user-service todo-service category-service}"
+MODES="${MODES:-jar aot cds}"
+RUNS="${RUNS:-5}"
+WARMUP="${WARMUP:-1}"
+JAVA_OPTS="${JAVA_OPTS:-}"
+MVN="${MVN:-./mvnw}"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+# Gateway and user-service refuse to start without a token secret
+export AUTH_TOKEN_SECRET="${AUTH_TOKEN_SECRET:-benchmark-only-calendar-token-secret}"
+
+# Project directory and port of every service
+declare -A DIRECTORIES=(
+    [api-gateway]=api-gateway [event-service]=event-service [user-service]=user-service
+    [todo-service]=todo-service [category-service]=category-service/category-service
+)
+declare -A PORTS=(
+    [api-gateway]=8080 [event-service]=8081 [user-service]=8082 [todo-service]=8083 [category-service]=8084
+)
+
+mkdir -p "$RESULTS_DIR"
+echo "== Installing the shared library"
+(cd "$BACKEND_DIR/common" && $MVN -B -q install -DskipTests)
+csv="$RESULTS_DIR/startup.csv"
+echo "service,mode,run,ready_ms,rss_mb" > "$csv"
+"$JAVA" -version 2>&1 | head -1
+
+pid=""
+stop_service() {
+    if [ -n "$pid" ]; then
+        kill "$pid" 2>/dev/null || true
+        wait "$pid" 2>/dev/null || true
+        pid=""
+    fi
+}
+trap stop_service EXIT
+
+for service in $SERVICES; do
+    port="${PORTS[$service]}"
+    cd "$BACKEND_DIR/${DIRECTORIES[$service]}"
+    if curl -s -o /dev/null "http://localhost:$port"; then
+        echo "Port $port of $service is in use, stop the running service first" >&2
+        exit 1
+    fi
+
+    # The native build replaces the jar, so it comes first; the cds build also yields the jar of mode jar
+    if [[ " $MODES " == *" native "* ]]; then
+        echo "== Building $service (native)"
+        $MVN -B -q -Pnative native:compile -DskipTests
+    fi
+    echo "== Building $service (cds)"
+    $MVN -B -q -Pcds package -DskipTests > /dev/null
+    jar="$(ls target/*.jar | grep -v '\.original$' | head -1)"
+    # The native executable is named after the artifact, the jar after artifact and version
+    executable="target/$(basename "$jar" .jar | sed -E 's/-[0-9][^-]*(-SNAPSHOT)?$//')"
+
+    for mode in $MODES; do
+        # The CDS archive only matches the class path of the training run, started in target/application
+        directory=target/application
+        case "$mode" in
+            jar)    command=("$JAVA" $JAVA_OPTS -jar "../$(basename "$jar")") ;;
+            aot)    command=("$JAVA" $JAVA_OPTS -Dspring.aot.enabled=true -jar "$(basename "$jar")") ;;
+            cds)    command=("$JAVA" $JAVA_OPTS -XX:SharedArchiveFile=application.jsa -Xshare:on
+                             -Dspring.aot.enabled=true -jar "$(basename "$jar")") ;;
+            native) command=("../$(basename "$executable")") ;;
+            *)      echo "Unknown mode $mode" >&2; exit 1 ;;
+        esac
+
+        echo "== $service: $mode"
+        for run in $(seq $((1 - WARMUP)) "$RUNS"); do
+            started=$(date +%s%N)
+            (cd "$directory" && exec "${command[@]}" --storage.type=memory) \
+                > "$RESULTS_DIR/startup-$service-$mode.log" 2>&1 &
+            pid=$!
+            until curl -sf -o /dev/null "http://localhost:$port/actuator/health"; do
+                kill -0 "$pid" 2>/dev/null || { echo "$service did not start, see the log" >&2; exit 1; }
+                sleep 0.02
+            done
+            ready_ms=$(( ($(date +%s%N) - started) / 1000000 ))
+            rss_mb=$(awk '/^VmRSS:/ { printf "%.1f", $2 / 1024 }' "/proc/$pid/status")
+            stop_service
+            if [ "$run" -ge 1 ]; then
+                echo "   run $run: ${ready_ms} ms, ${rss_mb} MB"
+                echo "$service,$mode,$run,$ready_ms,$rss_mb" >> "$csv"
+            fi
+        done
+    done
+done
+
+echo "== Summary ($csv)"
+python3 - "$csv" <<'EOF'
+import csv, statistics, sys
+from collections import defaultdict
+
+runs = defaultdict(list)
+for row in csv.DictReader(open(sys.argv[1])):
+    runs[(row["service"], row["mode"])].append((int(row["ready_ms"]), float(row["rss_mb"])))
+
+print(f"{'service':<18} {'mode':<8} {'runs':>5} {'ready ms':>9} {'min ms':>8} {'max ms':>8} {'RSS MB':>8}")
+for (service, mode), values in runs.items():
+    ready = [r for r, _ in values]
+    print(f"{service:<18} {mode:<8} {len(values):>5} {statistics.median(ready):>9.0f} {min(ready):>8} "
+          f"{max(ready):>8} {statistics.median(m for _, m in values):>8.1f}")
+EOF
@@ -0,0 +1,96 @@
+package com.example.Category;
+
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CategoryController.saveCategory on in-memory storage with 'size' stored categories.
+ * Only updates are measured, creating would grow the store during the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SaveCategoryBenchmark {
+
+    private static final int USERS = 1000;
+
+    // Number of stored categories
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private CategoryController controller;
+
+    @Setup
+    public void setUp() {
+        RepositoryFactory repositories = new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true);
+        controller = new CategoryController(repositories, new CategoryModelAssembler(), new ObjectMapper(), 50, 500, 100000);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        for (int i = 0; i < size; i++) {
+            controller.saveCategory(new Category(0, "Category " + i, "#3366ff", i % USERS), null);
+        }
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    // Update that keeps the owner of the category
+    @Benchmark
+    public ResponseEntity<EntityModel<Category>> update(RequestContext context) {
+        int id = 1 + ThreadLocalRandom.current().nextInt(size);
+        return controller.saveCategory(new Category(0, "Renamed", "#ff6633", (id - 1) % USERS), id);
+    }
+
+    // Update that moves the category to another user and re-indexes it
+    @Benchmark
+    public ResponseEntity<EntityModel<Category>> updateMovingOwner(RequestContext context) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = 1 + random.nextInt(size);
+        return controller.saveCategory(new Category(0, "Moved", "#ff6633", random.nextInt(USERS)), id);
+    }
+
+    /**
+     * Current request of a benchmark thread, the links are resolved against it.
+     */
+    @State(Scope.Thread)
+    public static class RequestContext {
+
+        @Setup
+        public void setUp() {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        }
+
+        @TearDown
+        public void tearDown() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/categories");
+        request.setServerName("localhost");
+        request.setServerPort(8084);
+        return request;
+    }
+}
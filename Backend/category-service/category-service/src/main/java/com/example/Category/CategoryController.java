@@ -1,28 +1,83 @@
 package com.example.Category;
 
+import com.calendar.common.storage.EntityRepository;
+import com.calendar.common.storage.RepositoryFactory;
+import com.calendar.common.web.KeysetPage;
+import com.calendar.common.web.NdjsonStream;
+import com.calendar.common.web.RequestingUser;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
-
+/**
+ * REST controller for categories.
+ *
+ * Requests the gateway made for a signed-in user (X-User-Id, see RequestingUser) only reach
+ * the categories whose userId is that user's ID; others are answered with 403 Forbidden.
+ * Categories carry numeric user IDs, so as long as user-service hands out other IDs, signed-in
+ * users cannot access any category and only internal requests can.
+ */
 @RestController
 @RequestMapping("/api/categories")
 public class CategoryController {
 
-    private final Map<Integer, Category> categories = new ConcurrentHashMap<>();
-    private final AtomicInteger idGenerator = new AtomicInteger(1); // ID-Generator
+    // Storage for categories (in-memory or write-ahead logged, see RepositoryFactory)
+    private final EntityRepository<Integer, Category> categories;
+    private final AtomicInteger idGenerator; // ID-Generator
+    // Secondary index: userId -> IDs of that user's categories
+    private final Map<Integer, NavigableSet<Integer>> categoryIdsByUser = new ConcurrentHashMap<>();
+    // Page size limits of the list endpoint
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    // Largest number of items in one batch request
+    private final int maxBatchSize;
+    // Builds the HATEOAS representations
+    private final CategoryModelAssembler assembler;
+    // Serializes the categories of an export
+    private final ObjectMapper objectMapper;
+
+    public CategoryController(RepositoryFactory repositories, CategoryModelAssembler assembler, ObjectMapper objectMapper,
+                              @Value("${pagination.default-size:50}") int defaultPageSize,
+                              @Value("${pagination.max-size:500}") int maxPageSize,
+                              @Value("${batch.max-size:100000}") int maxBatchSize) {
+        this.assembler = assembler;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
+        this.categories = repositories.create("categories", Integer.class, Category.class);
+        categories.addChangeListener(this::reindex);
+        // Rebuilds the index and continues the IDs after the highest restored one
+        int maxId = 0;
+        for (Category category : categories.findAll()) {
+            indexUser(category.getUserId(), category.getId());
+            maxId = Math.max(maxId, category.getId());
+        }
+        this.idGenerator = new AtomicInteger(maxId + 1);
+    }
 
     @GetMapping("/{id}")
-    public ResponseEntity<EntityModel<Category>> getCategory(@PathVariable int id) {
+    public ResponseEntity<EntityModel<Category>> getCategory(@PathVariable int id, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
         // Gets the category out of the list/map based on the ID
         Category category = categories.get(id);
 
@@ -30,55 +85,144 @@ public class CategoryController {
         if (category == null) {
             throw new CategoryNotFoundException(id);
         }
+        checkAccess(requestingUser, category.getUserId());
 
-        // Creates an EntityModel instance with the category and adds hypermedia links
-        return ResponseEntity.ok(EntityModel.of(category,
-                // Adds a link to the current category (self-link)
-                linkTo(methodOn(CategoryController.class).getCategory(id)).withSelfRel(),
-                // Adds a link to all categories of the user
-                linkTo(methodOn(CategoryController.class).getAllCategories(category.getUserId()))
-                        .withRel("user-categories")));
+        // Creates an EntityModel instance with the category, a self-link
+        // and a link to all categories of the user
+        return ResponseEntity.ok(assembler.toModel(category));
     }
 
     @GetMapping
-    public CollectionModel<EntityModel<Category>> getAllCategories(@RequestParam int userId) {
-        // Creates a list of EntityModels for categories of the specified user
-        List<EntityModel<Category>> categoryEntities = categories.values().stream()
-                // Filters the categories based on the userId
-                .filter(category -> category.getUserId() == userId)
-                // Creates an EntityModel for each category with a self-link
-                .map(category -> EntityModel.of(category,
-                        linkTo(methodOn(CategoryController.class).getCategory(category.getId())).withSelfRel()))
-                // Collecting the EntityModels in a list
+    public CollectionModel<EntityModel<Category>> getAllCategories(@RequestParam int userId,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer size,
+                                                                  @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        checkAccess(requestingUser, userId);
+        // Selects one page of the user's category IDs; the cursor is taken from a "next"/"prev" link
+        int pageSize = KeysetPage.pageSize(size, defaultPageSize, maxPageSize);
+        KeysetPage<Integer> page = KeysetPage.of(
+                categoryIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet()), cursor, pageSize,
+                Integer::valueOf);
+
+        // Looks up only the categories of the page
+        List<Category> pageCategories = page.getKeys().stream()
+                .map(categories::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        // Creates a CollectionModel that contains the page with a self-link per category,
+        // a self-link of the page and links to the neighbouring pages
+        return assembler.toPageModel(pageCategories, page, userId, cursor, size);
+    }
+
+    @GetMapping("/bulk")
+    public CollectionModel<EntityModel<Category>> getCategories(@RequestParam List<Integer> ids,
+                                                                @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        // Resolves several categories in one call (used by the event-service to batch lookups);
+        // unknown IDs and categories of other users are skipped instead of failing the whole request
+        List<Category> found = ids.stream()
+                .distinct()
+                .map(categories::get)
+                .filter(Objects::nonNull)
+                .filter(category -> RequestingUser.mayAccess(requestingUser, String.valueOf(category.getUserId())))
                 .collect(Collectors.toList());
 
-        // Creates a CollectionModel that contains the filtered categories and
-        // adds a self-link
-        return CollectionModel.of(categoryEntities,
-                linkTo(methodOn(CategoryController.class).getAllCategories(userId)).withSelfRel());
+        return assembler.toBulkModel(found, ids);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCategories(@RequestParam(required = false) Integer userId,
+                                                                  @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        // All categories only for internal requests, not for a signed-in user
+        RequestingUser.checkAccess(requestingUser, userId != null ? String.valueOf(userId) : null);
+        // Streams all categories, or those of one user, as newline-delimited JSON without links;
+        // they are written while the store is iterated, so memory use does not grow with their number
+        Iterable<Category> export = userId == null ? categories.findAll() : () ->
+                categoryIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet()).stream()
+                        .map(categories::get)
+                        .filter(Objects::nonNull)
+                        .iterator();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(new NdjsonStream(objectMapper, export));
     }
 
     @PostMapping
-    public ResponseEntity<EntityModel<Category>> createCategory(@RequestBody Category category) {
+    public ResponseEntity<EntityModel<Category>> createCategory(@RequestBody Category category, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        checkAccess(requestingUser, category.getUserId());
         return saveCategory(category, null); // If no ID is available -> create new category
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchResult>> createCategories(@RequestBody List<Category> batch, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        // Creates several categories as one unit: if any of them is invalid or cannot be stored, none is created
+        if (batch.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "A batch may contain at most " + maxBatchSize + " items");
+        }
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        boolean valid = true;
+        for (int i = 0; i < batch.size(); i++) {
+            Category category = batch.get(i);
+            String error = category == null ? "Category is required" : validate(category);
+            if (category != null) {
+                checkAccess(requestingUser, category.getUserId());
+            }
+            valid &= error == null;
+            results.add(new BatchResult(i, null, error == null ? BatchResult.Status.NOT_APPLIED : BatchResult.Status.INVALID, error));
+        }
+        if (!valid) {
+            return ResponseEntity.badRequest().body(results);
+        }
+
+        // Written as one batch, so durable storage waits for the disk only once
+        categories.batch(() -> {
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    store(batch.get(i));
+                    results.set(i, new BatchResult(i, batch.get(i).getId(), BatchResult.Status.CREATED, null));
+                }
+            } catch (RuntimeException e) {
+                // A failed write (e.g. the log cannot be written) must not leave part of the batch behind
+                for (BatchResult result : results) {
+                    if (result.id() != null) {
+                        try {
+                            categories.remove(result.id());
+                        } catch (RuntimeException removal) {
+                            e.addSuppressed(removal);
+                        }
+                    }
+                }
+                throw e;
+            }
+            return null;
+        });
+        return ResponseEntity.status(HttpStatus.CREATED).body(results);
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<EntityModel<Category>> updateCategory(@PathVariable int id, @RequestBody Category category) {
-        return saveCategory(category, id); // If ID available -> Update
+    public ResponseEntity<EntityModel<Category>> updateCategory(@PathVariable int id, @RequestBody Category category,
+                                                                @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        // A category may neither be taken over from nor be handed over to another user
+        checkAccess(requestingUser, category.getUserId());
+        return saveCategory(category, id, requestingUser); // If ID available -> Update
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteCategory(@PathVariable int id) {
-        // Checks if the category with the given ID exists
-        if (!categories.containsKey(id)) {
-            // If the category is not found, a custom exception is thrown
+    public ResponseEntity<Void> deleteCategory(@PathVariable int id, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        // Removes the category from the map; the owner is checked under the lock of the ID
+        Category[] removed = new Category[1];
+        categories.computeIfPresent(id, (key, existing) -> {
+            checkAccess(requestingUser, existing.getUserId());
+            removed[0] = existing;
+            return null;
+        });
+
+        // If the category is not found, a custom exception is thrown
+        if (removed[0] == null) {
             throw new CategoryNotFoundException(id);
         }
 
-        // Removes the category from the map
-        categories.remove(id);
-
         // Returns an HTTP 204 No Content response,
         // which means that the request was successful but no content needs to be
         // returned
@@ -91,27 +235,111 @@ public class CategoryController {
      * If id is set → Existing category is updated.
      */
     public ResponseEntity<EntityModel<Category>> saveCategory(Category category, Integer id) {
+        return saveCategory(category, id, null);
+    }
+
+    /**
+     * Like saveCategory(category, id); an update is only applied if the stored category
+     * belongs to the requesting user (null: internal request, any category).
+     */
+    private ResponseEntity<EntityModel<Category>> saveCategory(Category category, Integer id, String requestingUser) {
+        String error = validate(category);
+        if (error != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, error);
+        }
         if (id == null) { // Create new category
-            category.setId(idGenerator.getAndIncrement());
+            store(category);
         } else { // Update existing category
-            if (!categories.containsKey(id)) {
-                throw new CategoryNotFoundException(id);
-            }
             category.setId(id);
+            // compute() serialises updates per ID; a move to another user is re-indexed by reindex
+            categories.compute(id, (key, existing) -> {
+                if (existing == null) {
+                    throw new CategoryNotFoundException(id);
+                }
+                checkAccess(requestingUser, existing.getUserId());
+                return category; // Update
+            });
         }
-        categories.put(category.getId(), category); // Save/Update
 
-        EntityModel<Category> resource = EntityModel.of(category,
-                linkTo(methodOn(CategoryController.class).getCategory(category.getId())).withSelfRel(),
-                linkTo(methodOn(CategoryController.class).getAllCategories(category.getUserId()))
-                        .withRel("user-categories"));
+        EntityModel<Category> resource = assembler.toModel(category);
 
         return id == null
                 ? ResponseEntity
-                        .created(linkTo(methodOn(CategoryController.class).getCategory(category.getId())).toUri())
+                        .created(resource.getRequiredLink(IanaLinkRelations.SELF).toUri())
                         .body(resource)
                 : ResponseEntity.ok(resource);
     }
+
+    /**
+     * The reason why a category cannot be stored, or null if it is valid.
+     * Checked the same way for single requests and batches.
+     */
+    private static String validate(Category category) {
+        return category.getName() == null || category.getName().isBlank() ? "Name is required" : null;
+    }
+
+    /**
+     * @throws ResponseStatusException 403 Forbidden if the request is made for another user than the owner.
+     */
+    private static void checkAccess(String requestingUser, int userId) {
+        RequestingUser.checkAccess(requestingUser, String.valueOf(userId));
+    }
+
+    /**
+     * Stores a category under a new ID.
+     */
+    private void store(Category category) {
+        category.setId(idGenerator.getAndIncrement());
+        categories.put(category.getId(), category); // Save
+    }
+
+    /**
+     * Keeps the user index in line with the storage. Called for every stored change while its
+     * key is locked, so the changes of one category are indexed in order and a failed write never is.
+     */
+    private void reindex(Integer id, Category previous, Category current) {
+        if (previous != null && (current == null || previous.getUserId() != current.getUserId())) {
+            unindexUser(previous.getUserId(), id);
+        }
+        if (current != null && (previous == null || previous.getUserId() != current.getUserId())) {
+            indexUser(current.getUserId(), id);
+        }
+    }
+
+    /**
+     * Adds a category ID to the user's index entry.
+     * compute() keeps this atomic with concurrent removals for the same user.
+     */
+    private void indexUser(int userId, int id) {
+        categoryIdsByUser.compute(userId, (key, ids) -> {
+            NavigableSet<Integer> result = ids != null ? ids : new ConcurrentSkipListSet<>();
+            result.add(id);
+            return result;
+        });
+    }
+
+    /**
+     * Removes a category ID from the user's index entry and drops the entry once it is empty.
+     */
+    private void unindexUser(int userId, int id) {
+        categoryIdsByUser.computeIfPresent(userId, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
+
+/**
+ * Result of one item of a batch request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record BatchResult(int index, Integer id, Status status, String error) {
+
+    enum Status {
+        CREATED,     // Created with the given ID
+        INVALID,     // Rejected, see error; the whole batch was not applied
+        NOT_APPLIED  // Valid, but not applied because other items of the batch are invalid
+    }
 }
 
 /**
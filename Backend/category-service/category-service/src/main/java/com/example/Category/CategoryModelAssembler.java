@@ -0,0 +1,121 @@
+package com.example.Category;
+
+import com.calendar.common.web.KeysetPage;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.RepresentationModelAssembler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+/**
+ * Builds the HATEOAS representations of categories.
+ * linkTo(methodOn(...)) records a proxy invocation and expands the URI template of
+ * the mapping for every single link. Here the base URI of the controller is resolved
+ * once per response and the links of each category only append the ID to it.
+ */
+@Component
+public class CategoryModelAssembler implements RepresentationModelAssembler<Category, EntityModel<Category>> {
+
+    /**
+     * A single category with links to itself and to all categories of its user.
+     */
+    @Override
+    public EntityModel<Category> toModel(Category category) {
+        String base = baseUri();
+        return EntityModel.of(category,
+                selfLink(base, category.getId()),
+                userCategoriesLink(base, category.getUserId(), null, null).withRel("user-categories"));
+    }
+
+    /**
+     * Categories of a list response, each with its self-link.
+     */
+    @Override
+    public CollectionModel<EntityModel<Category>> toCollectionModel(Iterable<? extends Category> categories) {
+        return CollectionModel.of(toItems(baseUri(), categories));
+    }
+
+    /**
+     * One page of the categories of a user with links to the page itself and its neighbours.
+     *
+     * @param cursor Cursor the page was requested with, or null for the first page.
+     * @param size   Page size the page was requested with, or null for the default.
+     */
+    CollectionModel<EntityModel<Category>> toPageModel(Iterable<? extends Category> categories,
+                                                       KeysetPage<?> page, int userId,
+                                                       String cursor, Integer size) {
+        String base = baseUri();
+        CollectionModel<EntityModel<Category>> result = CollectionModel.of(toItems(base, categories),
+                userCategoriesLink(base, userId, cursor, size).withSelfRel());
+        if (page.getNextCursor() != null) {
+            result.add(userCategoriesLink(base, userId, page.getNextCursor(), size)
+                    .withRel(IanaLinkRelations.NEXT));
+        }
+        if (page.getPreviousCursor() != null) {
+            result.add(userCategoriesLink(base, userId, page.getPreviousCursor(), size)
+                    .withRel(IanaLinkRelations.PREV));
+        }
+        return result;
+    }
+
+    /**
+     * Result of a bulk lookup with a self-link repeating the requested IDs.
+     */
+    public CollectionModel<EntityModel<Category>> toBulkModel(Iterable<? extends Category> categories,
+                                                              List<Integer> ids) {
+        String base = baseUri();
+        StringBuilder href = new StringBuilder(base).append("/bulk");
+        for (int i = 0; i < ids.size(); i++) {
+            href.append(i == 0 ? "?ids=" : "&ids=").append(ids.get(i));
+        }
+        return CollectionModel.of(toItems(base, categories), Link.of(href.toString()));
+    }
+
+    private static List<EntityModel<Category>> toItems(String base, Iterable<? extends Category> categories) {
+        List<EntityModel<Category>> items = new ArrayList<>();
+        for (Category category : categories) {
+            items.add(EntityModel.of(category, selfLink(base, category.getId())));
+        }
+        return items;
+    }
+
+    // Absolute URI of the controller for the current request, e.g. http://host:8084/api/categories
+    private static String baseUri() {
+        return linkTo(CategoryController.class).toUri().toString();
+    }
+
+    private static Link selfLink(String base, int id) {
+        return Link.of(base + "/" + id);
+    }
+
+    /**
+     * Link to the category list of a user. Parameters that are not given stay template
+     * variables, as WebMvcLinkBuilder renders optional request parameters.
+     */
+    private static Link userCategoriesLink(String base, int userId, String cursor, Integer size) {
+        StringBuilder href = new StringBuilder(base).append("?userId=").append(userId);
+        List<String> missing = new ArrayList<>(2);
+        if (cursor != null) {
+            href.append("&cursor=").append(UriUtils.encodeQueryParam(cursor, StandardCharsets.UTF_8));
+        } else {
+            missing.add("cursor");
+        }
+        if (size != null) {
+            href.append("&size=").append(size);
+        } else {
+            missing.add("size");
+        }
+        if (!missing.isEmpty()) {
+            href.append("{&").append(String.join(",", missing)).append('}');
+        }
+        return Link.of(href.toString());
+    }
+}
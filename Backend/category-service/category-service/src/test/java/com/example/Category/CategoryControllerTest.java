@@ -0,0 +1,119 @@
+package com.example.Category;
+
+import com.calendar.common.web.RequestingUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"storage.type=memory", "batch.max-size=3"})
+@AutoConfigureMockMvc
+class CategoryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    private static String category(String name, int userId) {
+        return "{\"name\":\"" + name + "\",\"color\":\"#3366ff\",\"userId\":" + userId + "}";
+    }
+
+    // Creates a category, for the given user or as internal request (null)
+    private ResultActions create(String body, String requestingUser) throws Exception {
+        MockHttpServletRequestBuilder request = post("/api/categories")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body);
+        return mvc.perform(requestingUser != null ? request.header(RequestingUser.HEADER, requestingUser) : request);
+    }
+
+    @Test
+    void categoriesOfOtherUsersAreForbidden() throws Exception {
+        String location = create(category("Work", 1), "1").andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        mvc.perform(get(location).header(RequestingUser.HEADER, "2")).andExpect(status().isForbidden());
+        mvc.perform(get("/api/categories").param("userId", "1").header(RequestingUser.HEADER, "2"))
+                .andExpect(status().isForbidden());
+        mvc.perform(get("/api/categories/export").header(RequestingUser.HEADER, "2"))
+                .andExpect(status().isForbidden());
+        create(category("Not mine", 1), "2").andExpect(status().isForbidden());
+        mvc.perform(put(location)
+                        .header(RequestingUser.HEADER, "2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(category("Taken over", 2)))
+                .andExpect(status().isForbidden());
+        mvc.perform(delete(location).header(RequestingUser.HEADER, "2")).andExpect(status().isForbidden());
+
+        // Nor may the owner hand the category over to another user
+        mvc.perform(put(location)
+                        .header(RequestingUser.HEADER, "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(category("Given away", 2)))
+                .andExpect(status().isForbidden());
+
+        // The bulk lookup skips categories of other users
+        String id = location.substring(location.lastIndexOf('/') + 1);
+        String bulk = mvc.perform(get("/api/categories/bulk").param("ids", id).header(RequestingUser.HEADER, "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(bulk).doesNotContain("Work");
+
+        String own = mvc.perform(get(location).header(RequestingUser.HEADER, "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(own).contains("\"name\":\"Work\"").contains("\"userId\":1");
+        mvc.perform(delete(location).header(RequestingUser.HEADER, "1")).andExpect(status().isNoContent());
+    }
+
+    @Test
+    void blankNamesAreRejectedOnEveryPath() throws Exception {
+        String location = create(category("Kept", 5), null).andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        create(category(" ", 5), null).andExpect(status().isBadRequest());
+        mvc.perform(put(location).contentType(MediaType.APPLICATION_JSON).content(category("", 5)))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/categories/batch").contentType(MediaType.APPLICATION_JSON).content("[" + category(" ", 5) + "]"))
+                .andExpect(status().isBadRequest());
+
+        String kept = mvc.perform(get(location)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(kept).contains("\"name\":\"Kept\"");
+    }
+
+    @Test
+    void batchWithAnInvalidItemCreatesNothing() throws Exception {
+        String batch = "[" + category("Valid", 6) + "," + category("", 6) + "," + category("Also valid", 6) + "]";
+
+        String results = mvc.perform(post("/api/categories/batch").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(results).contains("\"status\":\"NOT_APPLIED\"").contains("\"error\":\"Name is required\"");
+        String list = mvc.perform(get("/api/categories").param("userId", "6")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(list).doesNotContain("Valid");
+    }
+
+    @Test
+    void batchLargerThanTheMaximumIsRejected() throws Exception {
+        String batch = "[" + String.join(",", category("A", 8), category("B", 8), category("C", 8), category("D", 8)) + "]";
+
+        mvc.perform(post("/api/categories/batch").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(status().isPayloadTooLarge());
+        String list = mvc.perform(get("/api/categories").param("userId", "8")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(list).doesNotContain("\"name\"");
+    }
+}
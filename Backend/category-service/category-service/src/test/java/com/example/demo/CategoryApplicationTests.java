@@ -1,9 +1,11 @@
 package com.example.demo;
 
+import com.example.Category.CategoryServiceApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// The test lives outside the application package, so the configuration is named explicitly
+@SpringBootTest(classes = CategoryServiceApplication.class, properties = "storage.type=memory")
 class CategoryApplicationTests {
 
 	@Test
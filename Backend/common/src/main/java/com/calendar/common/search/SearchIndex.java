@@ -0,0 +1,348 @@
+package com.calendar.common.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index for full-text search over the documents of one user.
+ *
+ * Texts are split into terms at every character that is not a letter or digit, lower-cased
+ * and stripped of diacritics ("Bäckerei" -> "backerei"). The terms are kept in a sorted map,
+ * so a query term also matches every term starting with it. All query terms have to match.
+ *
+ * Ranking: every query term adds weight * idf of the best term it matches in a document,
+ * where the weight depends on the fields the term occurs in and
+ * idf = ln(1 + documents / documents with the term). Prefix matches count half as much as
+ * exact ones. Hits with the same score are ordered by ID; if the limit falls among hits of
+ * equal score, which of them are returned depends on the order they are read in.
+ *
+ * The postings of a term are grouped by weight, so the documents matching a query term can be
+ * read best first. A search reads these streams in turns and scores every new document
+ * completely (threshold algorithm); it stops once the worst of the best 'limit' hits scores at
+ * least as high as any document not read yet could, or once one stream ends. A query whose
+ * words occur in thousands of documents therefore reads little more than 'limit' of them.
+ */
+public class SearchIndex {
+
+    // Marks left after splitting letters from their diacritics
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final double PREFIX_MATCH = 0.5;
+
+    // Ranked order: highest score first, ties by ID
+    private static final Comparator<Hit> RANKING = Comparator
+            .comparingDouble(Hit::score).reversed()
+            .thenComparing(Hit::id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Term -> documents containing it
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+    // Document ID -> its terms, needed to remove it and to score it
+    private final Map<String, Terms> documents = new HashMap<>();
+    // Shorter query terms only match exactly, so "a" does not expand to half the vocabulary
+    private final int minPrefixLength;
+
+    public SearchIndex(int minPrefixLength) {
+        this.minPrefixLength = minPrefixLength;
+    }
+
+    /**
+     * Splits a text into its normalized terms, in order and with repetitions.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Adds a document, replacing an earlier version with the same ID.
+     *
+     * @param fields Texts of the document by decreasing importance: a term of the first of
+     *               n fields has weight n, of the last one weight 1.
+     */
+    public void add(String id, String... fields) {
+        Map<String, Integer> weights = new TreeMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            int weight = fields.length - i;
+            for (String term : tokenize(fields[i])) {
+                weights.merge(term, weight, Integer::sum);
+            }
+        }
+        Terms terms = new Terms(weights);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            documents.put(id, terms);
+            for (int i = 0; i < terms.terms.length; i++) {
+                postings.computeIfAbsent(terms.terms[i], key -> new Postings()).add(id, terms.weights[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Removes the document with the given ID; false if it is not indexed
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * IDs of the documents matching all terms of the query, best match first.
+     *
+     * @param limit Largest number of IDs returned.
+     * @return An empty list if the query contains no terms.
+     */
+    public List<String> search(String query, int limit) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            double documentCount = documents.size();
+            List<TermStream> streams = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                streams.add(new TermStream(term, documentCount));
+            }
+
+            // Min-heap of the best 'limit' hits, the worst one on top
+            PriorityQueue<Hit> best = new PriorityQueue<>(RANKING.reversed());
+            Set<String> scored = new HashSet<>();
+            while (true) {
+                for (TermStream stream : streams) {
+                    String id = stream.next();
+                    if (id == null) {
+                        // Every hit contains all query terms, so it was in this stream and is scored
+                        return ranked(best);
+                    }
+                    if (scored.add(id)) {
+                        double score = score(documents.get(id), queryTerms, documentCount);
+                        if (score > 0) {
+                            best.add(new Hit(id, score));
+                            if (best.size() > limit) {
+                                best.poll();
+                            }
+                        }
+                    }
+                }
+                if (best.size() == limit) {
+                    // Highest score a document not read from any stream yet could reach
+                    double bound = 0;
+                    for (TermStream stream : streams) {
+                        bound += stream.bound();
+                    }
+                    if (best.peek().score() >= bound) {
+                        return ranked(best);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<String> ranked(PriorityQueue<Hit> best) {
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(RANKING);
+        return hits.stream().map(Hit::id).toList();
+    }
+
+    private boolean removeLocked(String id) {
+        Terms terms = documents.remove(id);
+        if (terms == null) {
+            return false;
+        }
+        for (int i = 0; i < terms.terms.length; i++) {
+            Postings ids = postings.get(terms.terms[i]);
+            ids.remove(id, terms.weights[i]);
+            if (ids.size == 0) {
+                postings.remove(terms.terms[i]);
+            }
+        }
+        return true;
+    }
+
+    // Score of a document for all query terms, 0 if one of them does not match
+    private double score(Terms terms, List<String> queryTerms, double documentCount) {
+        double score = 0;
+        for (String term : queryTerms) {
+            double termScore = score(terms, term, documentCount);
+            if (termScore == 0) {
+                return 0;
+            }
+            score += termScore;
+        }
+        return score;
+    }
+
+    // Best contribution of one query term to the score of a document, 0 if it does not match
+    private double score(Terms terms, String term, double documentCount) {
+        int index = Arrays.binarySearch(terms.terms, term);
+        if (index >= 0) {
+            return terms.weights[index] * idf(term, documentCount);
+        }
+        if (term.length() < minPrefixLength) {
+            return 0;
+        }
+        double best = 0;
+        for (int i = -index - 1; i < terms.terms.length && terms.terms[i].startsWith(term); i++) {
+            best = Math.max(best, terms.weights[i] * idf(terms.terms[i], documentCount) * PREFIX_MATCH);
+        }
+        return best;
+    }
+
+    private double idf(String term, double documentCount) {
+        return Math.log(1 + documentCount / postings.get(term).size);
+    }
+
+    // Documents containing a term, grouped by the weight of the term in them, highest first
+    private static final class Postings {
+        final NavigableMap<Integer, Set<String>> byWeight = new TreeMap<>(Collections.reverseOrder());
+        int size;
+
+        public void add(String id, int weight) {
+            byWeight.computeIfAbsent(weight, key -> new HashSet<>()).add(id);
+            size++;
+        }
+
+        void remove(String id, int weight) {
+            Set<String> ids = byWeight.get(weight);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                byWeight.remove(weight);
+            }
+            size--;
+        }
+    }
+
+    // Documents matching one query term in decreasing order of their score for it;
+    // a document matching several terms with the prefix may be returned more than once
+    private final class TermStream {
+        // Max-heap of one cursor per matching term, by the score of its current document
+        private final PriorityQueue<Cursor> cursors =
+                new PriorityQueue<>(Comparator.comparingDouble(Cursor::score).reversed());
+
+        TermStream(String term, double documentCount) {
+            Map<String, Postings> matching = term.length() < minPrefixLength
+                    ? postings.subMap(term, true, term, true)
+                    : postings.subMap(term, true, term + Character.MAX_VALUE, false);
+            for (Map.Entry<String, Postings> entry : matching.entrySet()) {
+                double factor = entry.getKey().equals(term) ? 1 : PREFIX_MATCH;
+                Cursor cursor = new Cursor(entry.getValue(), idf(entry.getKey(), documentCount) * factor);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+
+        // Next document, null once all are returned
+        String next() {
+            Cursor cursor = cursors.poll();
+            if (cursor == null) {
+                return null;
+            }
+            String id = cursor.id;
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            return id;
+        }
+
+        // Highest score of a document not returned yet
+        double bound() {
+            Cursor cursor = cursors.peek();
+            return cursor != null ? cursor.score() : 0;
+        }
+    }
+
+    // Position in the postings of one term, documents with the highest weight first
+    private static final class Cursor {
+        private final Iterator<Map.Entry<Integer, Set<String>>> groups;
+        private final double idf;
+        private Iterator<String> ids = Collections.emptyIterator();
+        private int weight;
+        private String id;
+
+        Cursor(Postings postings, double idf) {
+            this.groups = postings.byWeight.entrySet().iterator();
+            this.idf = idf;
+        }
+
+        boolean advance() {
+            while (!ids.hasNext()) {
+                if (!groups.hasNext()) {
+                    return false;
+                }
+                Map.Entry<Integer, Set<String>> group = groups.next();
+                weight = group.getKey();
+                ids = group.getValue().iterator();
+            }
+            id = ids.next();
+            return true;
+        }
+
+        double score() {
+            return weight * idf;
+        }
+    }
+
+    // Distinct terms of a document in sorted order with their summed weights
+    private static final class Terms {
+        final String[] terms;
+        final int[] weights;
+
+        Terms(Map<String, Integer> sortedWeights) {
+            terms = sortedWeights.keySet().toArray(new String[0]);
+            weights = sortedWeights.values().stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private record Hit(String id, double score) {
+    }
+}
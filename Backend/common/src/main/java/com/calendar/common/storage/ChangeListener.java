@@ -0,0 +1,21 @@
+package com.calendar.common.storage;
+
+/**
+ * Receives the changes of an {@link EntityRepository}, e.g. to maintain secondary indexes.
+ *
+ * @param <K> The ID type of the entity.
+ * @param <V> The entity type.
+ */
+@FunctionalInterface
+public interface ChangeListener<K, V> {
+
+    /**
+     * Called once a change is stored and visible, while the lock of its key is still held:
+     * the changes of one key arrive in order, and a failed write is never reported.
+     * Should be quick, as it delays other writes to the same key; must not throw.
+     *
+     * @param previous The entity before the change, null if it was created.
+     * @param current  The entity after the change, null if it was removed.
+     */
+    void changed(K id, V previous, V current);
+}
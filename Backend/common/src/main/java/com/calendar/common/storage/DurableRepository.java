@@ -0,0 +1,143 @@
+package com.calendar.common.storage;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Repository whose changes are recorded in a {@link WriteAheadLog}.
+ * Reads are served from memory; every mutation appends the new state of the
+ * key (or a tombstone) under the per-key lock before it is published in the
+ * map, so the log order per key matches the map and a change that could not
+ * be logged is never visible. Snapshots are taken with {@link #checkpoint()}.
+ */
+public class DurableRepository<K, V> extends InMemoryRepository<K, V> implements Closeable {
+
+    private final WriteAheadLog log;
+    private final ObjectMapper objectMapper;
+    private final JavaType recordType;
+    private final boolean syncWrites;
+
+    // Mutations hold the read lock; a checkpoint rolls the log under the write lock,
+    // so every record of an older segment is already visible in the map.
+    private final ReadWriteLock checkpointBarrier = new ReentrantReadWriteLock();
+    // Highest ticket written by the running batch of a thread, unset outside of batches
+    private final ThreadLocal<long[]> batchTicket = new ThreadLocal<>();
+
+    /**
+     * @param syncWrites Whether a mutation returns only after its record is on disk.
+     */
+    public DurableRepository(WriteAheadLog log, ObjectMapper objectMapper, Class<K> keyType, Class<V> valueType,
+                             boolean syncWrites) throws IOException {
+        this.log = log;
+        this.objectMapper = objectMapper;
+        this.recordType = objectMapper.getTypeFactory().constructParametricType(LogRecord.class, keyType, valueType);
+        this.syncWrites = syncWrites;
+        log.open(this::replay);
+    }
+
+    @Override
+    protected V mutate(K id, BiFunction<? super K, ? super V, ? extends V> remapping, boolean onlyIfPresent) {
+        // A single mutation is a batch of one: it waits for the disk after the key lock is released
+        return batch(() -> {
+            checkpointBarrier.readLock().lock();
+            try {
+                return super.mutate(id, remapping, onlyIfPresent);
+            } finally {
+                checkpointBarrier.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    protected void record(K id, V value) {
+        long ticket = log.append(encode(id, value));
+        long[] batch = batchTicket.get();
+        batch[0] = Math.max(batch[0], ticket);
+    }
+
+    @Override
+    public <T> T batch(Supplier<T> operations) {
+        if (batchTicket.get() != null) {
+            return operations.get(); // Nested: the outer batch waits
+        }
+        long[] ticket = new long[1];
+        batchTicket.set(ticket);
+        try {
+            return operations.get();
+        } finally {
+            batchTicket.remove();
+            // Also after a failure, the writes done so far are visible and must be durable
+            if (syncWrites && ticket[0] > 0) {
+                log.awaitDurable(ticket[0]);
+            }
+        }
+    }
+
+    /**
+     * Writes a compacted snapshot of the current state if anything changed since the
+     * last one, and drops the log segments it replaces.
+     */
+    public void checkpoint() throws IOException {
+        if (!log.hasChangesSinceCheckpoint()) {
+            return;
+        }
+        long segment;
+        checkpointBarrier.writeLock().lock();
+        try {
+            segment = log.roll();
+        } finally {
+            checkpointBarrier.writeLock().unlock();
+        }
+        log.writeSnapshot(segment, sink -> entities.forEach((key, value) -> sink.accept(encode(key, value))));
+    }
+
+    /**
+     * Takes a final snapshot, so the next start does not need to replay the log.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            log.close();
+        }
+    }
+
+    private void replay(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        try {
+            LogRecord<K, V> record = objectMapper.readValue(bytes, recordType);
+            if (record.value() == null) {
+                entities.remove(record.key());
+            } else {
+                entities.put(record.key(), record.value());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable record in write-ahead log", e);
+        }
+    }
+
+    private byte[] encode(K key, V value) {
+        try {
+            return objectMapper.writeValueAsBytes(new LogRecord<>(key, value));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize entity " + key, e);
+        }
+    }
+
+    /**
+     * Log entry: the new state of a key, or a removal when value is null.
+     */
+    record LogRecord<K, V>(K key, V value) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.calendar.common.storage;
+
+import java.util.Collection;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Key/value store for the entities of a service.
+ * Mirrors the ConcurrentHashMap operations the controllers rely on, so the
+ * storage behind them can be swapped (in-memory only or write-ahead logged).
+ * All operations are thread-safe; compute-style operations are atomic per key.
+ *
+ * @param <K> The ID type of the entity.
+ * @param <V> The entity type.
+ */
+public interface EntityRepository<K, V> {
+
+    /**
+     * @return The entity with the given ID or null if it does not exist.
+     */
+    V get(K id);
+
+    /**
+     * @return A live, weakly consistent view of all stored entities.
+     */
+    Collection<V> findAll();
+
+    /**
+     * @return The number of stored entities.
+     */
+    int size();
+
+    /**
+     * Stores an entity under the given ID.
+     *
+     * @return The previous entity or null.
+     */
+    V put(K id, V entity);
+
+    /**
+     * Replaces the entity only if the ID is already present.
+     *
+     * @return The previous entity or null if nothing was replaced.
+     */
+    V replace(K id, V entity);
+
+    /**
+     * Removes the entity with the given ID.
+     *
+     * @return The removed entity or null.
+     */
+    V remove(K id);
+
+    /**
+     * Atomically computes the new entity for an ID, see {@link java.util.Map#compute}.
+     * Returning null removes the entity.
+     */
+    V compute(K id, BiFunction<? super K, ? super V, ? extends V> remapping);
+
+    /**
+     * Atomically updates an existing entity, see {@link java.util.Map#computeIfPresent}.
+     * Returning null removes the entity.
+     */
+    V computeIfPresent(K id, BiFunction<? super K, ? super V, ? extends V> remapping);
+
+    /**
+     * Registers a listener for all following changes. Entities stored before, including
+     * those restored at startup, are not reported; they can be read with {@link #findAll()}.
+     */
+    void addChangeListener(ChangeListener<K, V> listener);
+
+    /**
+     * Runs several operations of the calling thread as one write batch: durable storage
+     * waits for the disk only once, after the last of them, instead of after every write.
+     * Other threads may see the writes of a batch before it has finished.
+     *
+     * @return The result of the operations.
+     */
+    default <T> T batch(Supplier<T> operations) {
+        return operations.get();
+    }
+}
@@ -0,0 +1,143 @@
+package com.calendar.common.storage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Repository that keeps entities only in a ConcurrentHashMap.
+ * Every mutation runs through {@link #mutate}: under a per-key lock it computes
+ * the new entity, passes it to {@link #record} and only then publishes it in the
+ * map and to the change listeners. A subclass that fails to record a change
+ * (e.g. to a log) leaves the map unchanged.
+ *
+ * The per-key lock is a striped ReentrantLock rather than the monitor of the
+ * map bin, so recording may block (wait for the disk, roll a file) without
+ * holding up other keys of the bin or pinning the carrier of a virtual thread.
+ */
+public class InMemoryRepository<K, V> implements EntityRepository<K, V> {
+
+    private static final int KEY_LOCK_STRIPES = 256;
+
+    protected final Map<K, V> entities = new ConcurrentHashMap<>();
+
+    // Serialises the changes of a key; keys with the same hash share a lock
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCK_STRIPES];
+    private final List<ChangeListener<K, V>> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryRepository() {
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public V get(K id) {
+        return entities.get(id);
+    }
+
+    @Override
+    public Collection<V> findAll() {
+        return entities.values();
+    }
+
+    @Override
+    public int size() {
+        return entities.size();
+    }
+
+    @Override
+    public V put(K id, V entity) {
+        Object[] previous = new Object[1];
+        mutate(id, (key, old) -> {
+            previous[0] = old;
+            return entity;
+        }, false);
+        return cast(previous[0]);
+    }
+
+    @Override
+    public V replace(K id, V entity) {
+        Object[] previous = new Object[1];
+        mutate(id, (key, old) -> {
+            previous[0] = old;
+            return entity;
+        }, true);
+        return cast(previous[0]);
+    }
+
+    @Override
+    public V remove(K id) {
+        Object[] previous = new Object[1];
+        mutate(id, (key, old) -> {
+            previous[0] = old;
+            return null;
+        }, true);
+        return cast(previous[0]);
+    }
+
+    @Override
+    public V compute(K id, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return mutate(id, remapping, false);
+    }
+
+    @Override
+    public V computeIfPresent(K id, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return mutate(id, remapping, true);
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener<K, V> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Applies a change to a single key. If the remapping or {@link #record} throws,
+     * the stored entity stays as it was.
+     *
+     * @param onlyIfPresent Whether absent keys are left untouched.
+     * @return The new entity or null if the key is now absent.
+     */
+    protected V mutate(K id, BiFunction<? super K, ? super V, ? extends V> remapping, boolean onlyIfPresent) {
+        ReentrantLock keyLock = keyLocks[Math.floorMod(id.hashCode(), keyLocks.length)];
+        keyLock.lock();
+        try {
+            V previous = entities.get(id);
+            if (previous == null && onlyIfPresent) {
+                return null;
+            }
+            V updated = remapping.apply(id, previous);
+            if (previous == null && updated == null) {
+                return null;
+            }
+            record(id, updated);
+            if (updated == null) {
+                entities.remove(id);
+            } else {
+                entities.put(id, updated);
+            }
+            for (ChangeListener<K, V> listener : listeners) {
+                listener.changed(id, previous, updated);
+            }
+            return updated;
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Called by {@link #mutate} with the new state of a key (null for a removal) before it
+     * becomes visible, while the lock of the key is held. An exception cancels the change.
+     */
+    protected void record(K id, V value) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private V cast(Object value) {
+        return (V) value;
+    }
+}
@@ -0,0 +1,156 @@
+package com.calendar.common.storage;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the repositories of the service according to the storage properties:
+ *
+ * storage.type                  memory or wal; memory if unset, the services set wal
+ * storage.directory             Base directory, one sub-directory per repository
+ * storage.segment-size-mb       Size of a mapped log segment
+ * storage.commit-interval-ms    Longest delay of a background flush
+ * storage.snapshot-interval-s   Interval between compacting snapshots
+ * storage.sync-writes           Whether writes wait until they are on disk
+ *
+ * The size of every repository is published as gauge "storage.entities", tagged with the store name.
+ */
+// Log entries are (de)serialized by Jackson; needed for AOT-processed builds and native images
+@RegisterReflectionForBinding(DurableRepository.LogRecord.class)
+public class RepositoryFactory implements DisposableBean, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryFactory.class);
+
+    private final ObjectMapper objectMapper;
+    private final String type;
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitIntervalMs;
+    private final long snapshotIntervalS;
+    private final boolean syncWrites;
+
+    private final List<DurableRepository<?, ?>> durableRepositories = new CopyOnWriteArrayList<>();
+    private final Map<String, EntityRepository<?, ?>> repositories = new ConcurrentHashMap<>();
+    private volatile MeterRegistry meterRegistry;
+    private ScheduledExecutorService snapshotScheduler;
+
+    public RepositoryFactory(ObjectMapper objectMapper,
+                             @Value("${storage.type:memory}") String type,
+                             @Value("${storage.directory:data}") String directory,
+                             @Value("${storage.segment-size-mb:64}") int segmentSizeMb,
+                             @Value("${storage.commit-interval-ms:2}") long commitIntervalMs,
+                             @Value("${storage.snapshot-interval-s:300}") long snapshotIntervalS,
+                             @Value("${storage.sync-writes:true}") boolean syncWrites) {
+        // Keep the stored offsets of date-times instead of normalizing them to UTC
+        this.objectMapper = objectMapper.copy().disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
+        this.type = type;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.commitIntervalMs = commitIntervalMs;
+        this.snapshotIntervalS = snapshotIntervalS;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Creates a repository and, for durable storage, restores its previous state.
+     *
+     * @param name Name of the store, used as directory name.
+     */
+    public <K, V> EntityRepository<K, V> create(String name, Class<K> keyType, Class<V> valueType) {
+        if ("memory".equals(type)) {
+            return register(name, new InMemoryRepository<>());
+        }
+        if (!"wal".equals(type)) {
+            throw new IllegalArgumentException("Unknown storage.type '" + type + "', expected 'memory' or 'wal'");
+        }
+
+        long started = System.nanoTime();
+        DurableRepository<K, V> repository;
+        try {
+            WriteAheadLog wal = new WriteAheadLog(directory.resolve(name), segmentSize, commitIntervalMs);
+            repository = new DurableRepository<>(wal, objectMapper, keyType, valueType, syncWrites);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open storage for " + name, e);
+        }
+        log.info("Restored {} {} in {} ms", repository.size(), name,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        durableRepositories.add(repository);
+        scheduleSnapshots(name, repository);
+        return register(name, repository);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meterRegistry = registry;
+        repositories.forEach((name, repository) -> gauge(registry, name, repository));
+    }
+
+    private <K, V> EntityRepository<K, V> register(String name, EntityRepository<K, V> repository) {
+        repositories.put(name, repository);
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            gauge(registry, name, repository);
+        }
+        return repository;
+    }
+
+    private static void gauge(MeterRegistry registry, String name, EntityRepository<?, ?> repository) {
+        Gauge.builder("storage.entities", repository, EntityRepository::size)
+                .tag("store", name)
+                .description("Number of stored entities")
+                .register(registry);
+    }
+
+    private synchronized void scheduleSnapshots(String name, DurableRepository<?, ?> repository) {
+        if (snapshotScheduler == null) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "storage-snapshots");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                repository.checkpoint();
+            } catch (IOException | RuntimeException e) {
+                log.error("Snapshot of {} failed", name, e);
+            }
+        }, snapshotIntervalS, snapshotIntervalS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (snapshotScheduler != null) {
+            // No interrupt: a running snapshot would be aborted by its interruptible channel
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (DurableRepository<?, ?> repository : durableRepositories) {
+            repository.close();
+        }
+    }
+}
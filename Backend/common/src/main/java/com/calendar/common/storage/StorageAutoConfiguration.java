@@ -0,0 +1,13 @@
+package com.calendar.common.storage;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Provides the {@link RepositoryFactory} to every service with this library on its class path;
+ * the services scan only their own packages.
+ */
+@AutoConfiguration
+@Import(RepositoryFactory.class)
+public class StorageAutoConfiguration {
+}
@@ -0,0 +1,406 @@
+package com.calendar.common.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped write-ahead log with snapshot compaction.
+ *
+ * Records are framed as [length][crc32][payload] and appended to fixed-size
+ * segment files ("wal-N.log") that are mapped into memory. A background
+ * committer thread forces the mapped segment to disk and releases every
+ * writer waiting for a record up to that point, so concurrent writes share
+ * one flush (group commit).
+ *
+ * A snapshot ("snapshot-N.dat") contains the full state at the start of
+ * segment N; on open the newest snapshot is loaded and only the segments
+ * from N onwards are replayed. Older files are deleted after each snapshot.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final int HEADER_SIZE = 8; // length + crc32
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitIntervalNanos;
+
+    // Guards the current segment and the append counter
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Guards the durable counter; writers wait on 'committed', the committer on 'commitRequested'
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition committed = commitLock.newCondition();
+    private final Condition commitRequested = commitLock.newCondition();
+
+    private FileChannel lockChannel;
+    private FileLock directoryLock;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segment;
+
+    private volatile long appended;
+    private volatile long durable;
+    private volatile long checkpointed;
+    private volatile boolean closed;
+    private Thread committer;
+
+    /**
+     * @param directory        Directory holding the segments and snapshots of one store.
+     * @param segmentSize      Size of a mapped segment file in bytes.
+     * @param commitIntervalMs Longest time a record stays unflushed when nobody waits for it.
+     */
+    public WriteAheadLog(Path directory, int segmentSize, long commitIntervalMs) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMs);
+    }
+
+    /**
+     * Loads the newest snapshot, replays the following segments and starts a fresh segment.
+     *
+     * @param handler Receives the payload of every recovered record in log order.
+     */
+    public void open(Consumer<ByteBuffer> handler) throws IOException {
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve("LOCK"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        directoryLock = lockChannel.tryLock();
+        if (directoryLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Storage directory " + directory + " is used by another process");
+        }
+
+        long snapshot = latest(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long records = 0;
+        if (snapshot >= 0) {
+            readRecords(file(SNAPSHOT_PREFIX, snapshot, SNAPSHOT_SUFFIX), handler);
+        }
+        long last = Math.max(snapshot, 0);
+        for (long number : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number >= snapshot) {
+                records += readRecords(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), handler);
+            }
+            last = Math.max(last, number);
+        }
+        // Replayed segments are compacted into a snapshot at the next checkpoint
+        checkpointed = records > 0 ? -1 : 0;
+
+        openSegment(last + 1, segmentSize);
+        committer = new Thread(this::commitLoop, "wal-committer-" + directory.getFileName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Appends a record to the current segment. The record is not durable before
+     * {@link #awaitDurable} returns for the returned ticket.
+     *
+     * @return Ticket identifying the record.
+     */
+    public long append(byte[] payload) {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Empty records are not supported");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log " + directory + " is closed");
+            }
+            if (buffer.remaining() < HEADER_SIZE + payload.length) {
+                rollSegment(HEADER_SIZE + payload.length);
+            }
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+            return ++appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given ticket has been forced to disk.
+     */
+    public void awaitDurable(long ticket) {
+        if (durable >= ticket) {
+            return;
+        }
+        commitLock.lock();
+        try {
+            commitRequested.signal();
+            while (durable < ticket) {
+                if (closed) {
+                    throw new IllegalStateException("Write-ahead log " + directory + " was closed before the write was durable");
+                }
+                committed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether records were appended or replayed since the last snapshot.
+     */
+    public boolean hasChangesSinceCheckpoint() {
+        return appended > checkpointed;
+    }
+
+    /**
+     * Starts a new segment. A snapshot written for the returned segment number has
+     * to contain every record appended before this call.
+     *
+     * @return The number of the new segment.
+     */
+    public long roll() {
+        appendLock.lock();
+        try {
+            checkpointed = appended;
+            rollSegment(0);
+            return segment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot for the given segment and deletes the files it supersedes.
+     *
+     * @param contents Receives a sink and writes every current record into it.
+     */
+    public void writeSnapshot(long snapshotSegment, Consumer<Consumer<byte[]>> contents) throws IOException {
+        Path target = file(SNAPSHOT_PREFIX, snapshotSegment, SNAPSHOT_SUFFIX);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16));
+            CRC32 crc = new CRC32();
+            contents.accept(payload -> {
+                try {
+                    crc.reset();
+                    crc.update(payload);
+                    stream.writeInt(payload.length);
+                    stream.writeInt((int) crc.getValue());
+                    stream.write(payload);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            stream.flush();
+            out.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (long number : numbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (number < snapshotSegment) {
+                delete(file(SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+            }
+        }
+        for (long number : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number < snapshotSegment) {
+                delete(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * Flushes outstanding records, stops the committer and releases the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+        commitLock.lock();
+        try {
+            durable = appended;
+            committed.signalAll();
+            commitRequested.signal();
+        } finally {
+            commitLock.unlock();
+        }
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        directoryLock.release();
+        lockChannel.close();
+    }
+
+    private void commitLoop() {
+        while (!closed) {
+            commitLock.lock();
+            try {
+                if (durable >= appended && !closed) {
+                    commitRequested.awaitNanos(commitIntervalNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                commitLock.unlock();
+            }
+            try {
+                commit();
+            } catch (RuntimeException e) {
+                log.error("Flushing write-ahead log {} failed", directory, e);
+            }
+        }
+    }
+
+    // Forces the current segment and publishes everything appended so far as durable
+    private void commit() {
+        MappedByteBuffer target;
+        long upTo;
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            target = buffer;
+            upTo = appended;
+        } finally {
+            appendLock.unlock();
+        }
+        if (upTo <= durable) {
+            return;
+        }
+        try {
+            target.force();
+        } catch (UncheckedIOException e) {
+            // A segment rolled in the meantime was already forced by the roll itself
+            appendLock.lock();
+            try {
+                if (target == buffer && !closed) {
+                    throw e;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        }
+        commitLock.lock();
+        try {
+            if (upTo > durable) {
+                durable = upTo;
+            }
+            committed.signalAll();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Must be called with appendLock held
+    private void rollSegment(int minimumSize) throws UncheckedIOException {
+        try {
+            buffer.force();
+            channel.close();
+            openSegment(segment + 1, Math.max(segmentSize, minimumSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long number, int size) throws IOException {
+        channel = FileChannel.open(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment = number;
+    }
+
+    // Reads framed records until the end marker or the first damaged record
+    private long readRecords(Path path, Consumer<ByteBuffer> handler) throws IOException {
+        long count = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            CRC32 crc = new CRC32();
+            while (data.remaining() >= HEADER_SIZE) {
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length <= 0 || length > data.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = data.slice(data.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Ignoring damaged tail of {} after {} records", path, count);
+                    break;
+                }
+                handler.accept(payload);
+                data.position(data.position() + length);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Still mapped on some platforms; retried after the next snapshot
+            log.debug("Could not delete {}", path, e);
+        }
+    }
+
+    private Path file(String prefix, long number, String suffix) {
+        return directory.resolve(prefix + String.format("%020d", number) + suffix);
+    }
+
+    private long latest(String prefix, String suffix) throws IOException {
+        List<Long> all = numbers(prefix, suffix);
+        return all.isEmpty() ? -1 : all.get(all.size() - 1);
+    }
+
+    private List<Long> numbers(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
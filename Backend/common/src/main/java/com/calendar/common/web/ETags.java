@@ -0,0 +1,41 @@
+package com.calendar.common.web;
+
+/**
+ * Versions of entities as HTTP entity tags for optimistic concurrency control.
+ *
+ * An entity is sent with its version as strong ETag, e.g. "3". A client that sends this value
+ * back in If-Match only changes the entity if nobody else has changed it in the meantime.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * @return The ETag of the given version.
+     */
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Evaluates an If-Match header (RFC 9110): "*" or a list of ETags, of which one has to be the
+     * ETag of the current version. Weak ETags (W/"3") never match, as If-Match compares strongly.
+     *
+     * @param ifMatch The header value, null if the request has none.
+     * @return Whether a change of an entity in the given version may be applied.
+     */
+    public static boolean matches(String ifMatch, long version) {
+        if (ifMatch == null) {
+            return true;
+        }
+        String current = of(version);
+        for (String tag : ifMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
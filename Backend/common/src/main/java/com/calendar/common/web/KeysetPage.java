@@ -0,0 +1,130 @@
+package com.calendar.common.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing over a sorted set of IDs.
+ * Cursors are opaque to clients: URL-safe Base64 of "a:<id>" (IDs after id)
+ * or "b:<id>" (IDs before id). Only the IDs of the page are materialized.
+ */
+public final class KeysetPage<K> {
+
+    private final List<K> keys;
+    private final String nextCursor;
+    private final String previousCursor;
+
+    private KeysetPage(List<K> keys, String nextCursor, String previousCursor) {
+        this.keys = keys;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    /**
+     * Selects the page described by the cursor.
+     *
+     * @param ids    Sorted IDs to paginate over.
+     * @param cursor Cursor of a previous response or null for the first page.
+     * @param size   Maximum number of IDs on the page.
+     * @param parser Converts the ID stored in a cursor back into a key.
+     */
+    public static <K> KeysetPage<K> of(NavigableSet<K> ids, String cursor, int size, Function<String, K> parser) {
+        boolean backwards = false;
+        NavigableSet<K> range = ids;
+        if (cursor != null) {
+            String decoded = decode(cursor);
+            K boundary;
+            try {
+                boundary = parser.apply(decoded.substring(2));
+            } catch (RuntimeException e) {
+                throw invalidCursor();
+            }
+            if (decoded.startsWith("a:")) {
+                range = ids.tailSet(boundary, false);
+            } else if (decoded.startsWith("b:")) {
+                range = ids.headSet(boundary, false).descendingSet();
+                backwards = true;
+            } else {
+                throw invalidCursor();
+            }
+        }
+
+        List<K> keys = new ArrayList<>(Math.min(size, 64));
+        Iterator<K> iterator = range.iterator();
+        while (keys.size() < size && iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        if (backwards) {
+            Collections.reverse(keys);
+        }
+        if (keys.isEmpty()) {
+            return new KeysetPage<>(keys, null, null);
+        }
+
+        K first = keys.get(0);
+        K last = keys.get(keys.size() - 1);
+        String next = ids.higher(last) != null ? encode("a:" + last) : null;
+        String previous = ids.lower(first) != null ? encode("b:" + first) : null;
+        return new KeysetPage<>(keys, next, previous);
+    }
+
+    /**
+     * Validates a requested page size and applies the default and the upper limit.
+     */
+    public static int pageSize(Integer requested, int defaultSize, int maxSize) {
+        if (requested == null) {
+            return Math.min(defaultSize, maxSize);
+        }
+        if (requested < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be at least 1");
+        }
+        return Math.min(requested, maxSize);
+    }
+
+    public List<K> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return Cursor of the following page or null on the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return Cursor of the preceding page or null on the first page.
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.length() < 2) {
+                throw invalidCursor();
+            }
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static ResponseStatusException invalidCursor() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
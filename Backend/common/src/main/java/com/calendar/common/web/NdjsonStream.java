@@ -0,0 +1,47 @@
+package com.calendar.common.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response body of an export: the entities as newline-delimited JSON (application/x-ndjson),
+ * one entity per line.
+ *
+ * Every entity is serialized as soon as the iteration reaches it and goes into the response
+ * buffer of the server, which sends a chunk whenever it is full. So the first entities reach
+ * the client right away and memory use does not depend on the number of entities. The body is
+ * written on an MVC async thread, limited by spring.mvc.async.request-timeout.
+ */
+public final class NdjsonStream implements StreamingResponseBody {
+
+    private final ObjectWriter writer;
+    private final Iterable<?> entities;
+
+    /**
+     * @param entities Iterated once while the response is written; a weakly consistent view
+     *                 of the store, so entities changed meanwhile may be in their old or new state.
+     */
+    public NdjsonStream(ObjectMapper objectMapper, Iterable<?> entities) {
+        // Flushing after every entity would send a chunk per line
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.entities = entities;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try (JsonGenerator generator = writer.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (Object entity : entities) {
+                writer.writeValue(generator, entity);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
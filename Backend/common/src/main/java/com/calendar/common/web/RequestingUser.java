@@ -0,0 +1,39 @@
+package com.calendar.common.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The user on whose behalf a request is made, as forwarded by the API gateway in the
+ * header X-User-Id once it has verified the access token. The gateway removes a header
+ * of that name sent by a client.
+ *
+ * Requests without the header come from inside the deployment (other services, tools,
+ * benchmarks) and may access the data of every user. The services therefore must only
+ * be reachable through the gateway.
+ */
+public final class RequestingUser {
+
+    public static final String HEADER = "X-User-Id";
+
+    private RequestingUser() {
+    }
+
+    /**
+     * @param requestingUser Value of the header, null if the request has none.
+     * @param owner          User the data belongs to.
+     * @return Whether the request may read or change the data.
+     */
+    public static boolean mayAccess(String requestingUser, String owner) {
+        return requestingUser == null || requestingUser.equals(owner);
+    }
+
+    /**
+     * @throws ResponseStatusException 403 Forbidden if the request may not access the data.
+     */
+    public static void checkAccess(String requestingUser, String owner) {
+        if (!mayAccess(requestingUser, owner)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access to the data of another user");
+        }
+    }
+}
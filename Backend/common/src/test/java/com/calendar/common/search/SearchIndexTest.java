@@ -0,0 +1,85 @@
+package com.calendar.common.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTest {
+
+    private final SearchIndex index = new SearchIndex(2);
+
+    @Test
+    void tokenizesCaseAndDiacriticsInsensitively() {
+        assertThat(SearchIndex.tokenize("Bäckerei am Montag, 10:30 (Café)"))
+                .containsExactly("backerei", "am", "montag", "10", "30", "cafe");
+        assertThat(SearchIndex.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    void requiresEveryQueryWord() {
+        index.add("1", "Team meeting", "weekly sync");
+        index.add("2", "Team lunch", "");
+
+        assertThat(index.search("team", 10)).containsExactlyInAnyOrder("1", "2");
+        assertThat(index.search("team sync", 10)).containsExactly("1");
+        assertThat(index.search("team dinner", 10)).isEmpty();
+        assertThat(index.search(" ,; ", 10)).isEmpty();
+    }
+
+    @Test
+    void matchesPrefixesFromMinimumLength() {
+        index.add("1", "Bäckerei");
+        index.add("2", "Bank");
+
+        assertThat(index.search("BÄCK", 10)).containsExactly("1");
+        assertThat(index.search("ba", 10)).containsExactlyInAnyOrder("1", "2");
+        assertThat(index.search("b", 10)).isEmpty();
+    }
+
+    @Test
+    void ranksTitleAboveDescriptionAndExactAbovePrefix() {
+        index.add("description", "Notes", "planning");
+        index.add("title", "Planning", "");
+        index.add("prefix", "Plan", "");
+        index.add("exact", "Plan it", "");
+
+        assertThat(index.search("planning", 10)).containsExactly("title", "description");
+        assertThat(index.search("plan", 10)).startsWith("exact", "prefix");
+    }
+
+    @Test
+    void replacesAndRemovesDocuments() {
+        index.add("1", "Dentist");
+        index.add("1", "Doctor");
+
+        assertThat(index.search("dentist", 10)).isEmpty();
+        assertThat(index.search("doctor", 10)).containsExactly("1");
+        assertThat(index.size()).isEqualTo(1);
+
+        assertThat(index.remove("1")).isTrue();
+        assertThat(index.remove("1")).isFalse();
+        assertThat(index.search("doctor", 10)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void limitedSearchReturnsTheBestHitsOfTheFullRanking() {
+        // Repeated words add up, so every document scores differently and the ranking has no ties
+        Random random = new Random(7);
+        for (int i = 1; i <= 60; i++) {
+            index.add("alpha-" + i, "alpha ".repeat(i), random.nextBoolean() ? "beta" : "");
+        }
+        for (int i = 1; i <= 25; i++) {
+            index.add("alpine-" + i, "alpine ".repeat(i), "beta ".repeat(i));
+        }
+
+        assertThat(index.search("alpha", 3)).containsExactly("alpha-60", "alpha-59", "alpha-58");
+        for (String query : new String[]{"alpha", "alp", "alp beta", "beta"}) {
+            List<String> all = index.search(query, Integer.MAX_VALUE);
+            assertThat(index.search(query, 10)).isEqualTo(all.subList(0, Math.min(10, all.size())));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.calendar.common.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DurableRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private DurableRepository<String, String> open() throws IOException {
+        return new DurableRepository<>(new WriteAheadLog(directory, 64 * 1024, 2), new ObjectMapper(),
+                String.class, String.class, true);
+    }
+
+    @Test
+    void restoresStateAfterRestart() throws IOException {
+        try (DurableRepository<String, String> repository = open()) {
+            repository.put("a", "1");
+            repository.put("b", "1");
+            repository.compute("a", (id, value) -> value + "2");
+            repository.remove("b");
+            repository.batch(() -> {
+                repository.put("c", "1");
+                return repository.put("d", "1");
+            });
+        }
+
+        try (DurableRepository<String, String> repository = open()) {
+            assertThat(repository.get("a")).isEqualTo("12");
+            assertThat(repository.get("b")).isNull();
+            assertThat(repository.findAll()).containsExactlyInAnyOrder("12", "1", "1");
+        }
+    }
+
+    @Test
+    void checkpointCompactsTheLog() throws IOException {
+        try (DurableRepository<String, String> repository = open()) {
+            for (int i = 0; i < 1000; i++) {
+                repository.put("a", Integer.toString(i));
+            }
+            repository.checkpoint();
+            repository.put("b", "1");
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).filter(name -> name.startsWith("snapshot-")))
+                    .hasSize(1);
+        }
+        try (DurableRepository<String, String> repository = open()) {
+            assertThat(repository.get("a")).isEqualTo("999");
+            assertThat(repository.get("b")).isEqualTo("1");
+            assertThat(repository.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void changeThatCannotBeLoggedIsNotVisible() throws IOException {
+        DurableRepository<String, String> repository = open();
+        repository.put("a", "1");
+        repository.close();
+
+        assertThatThrownBy(() -> repository.put("a", "2")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> repository.remove("a")).isInstanceOf(IllegalStateException.class);
+
+        assertThat(repository.get("a")).isEqualTo("1");
+        try (DurableRepository<String, String> reopened = open()) {
+            assertThat(reopened.get("a")).isEqualTo("1");
+        }
+    }
+}
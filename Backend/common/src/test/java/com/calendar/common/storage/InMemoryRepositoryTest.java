@@ -0,0 +1,61 @@
+package com.calendar.common.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryRepositoryTest {
+
+    @Test
+    void reportsStoredChangesToListeners() {
+        InMemoryRepository<String, String> repository = new InMemoryRepository<>();
+        List<String> changes = new ArrayList<>();
+        repository.addChangeListener((id, previous, current) -> changes.add(id + ":" + previous + "->" + current));
+
+        repository.put("a", "1");
+        repository.computeIfPresent("a", (id, value) -> value + "2");
+        repository.remove("a");
+        repository.remove("a");
+        repository.compute("b", (id, value) -> null);
+
+        assertThat(changes).containsExactly("a:null->1", "a:1->12", "a:12->null");
+    }
+
+    @Test
+    void leavesEntityUnchangedWhenRecordingFails() {
+        InMemoryRepository<String, String> repository = new InMemoryRepository<>() {
+            @Override
+            protected void record(String id, String value) {
+                if ("fail".equals(value)) {
+                    throw new IllegalStateException("Log is closed");
+                }
+            }
+        };
+        List<String> changes = new ArrayList<>();
+        repository.put("a", "1");
+        repository.addChangeListener((id, previous, current) -> changes.add(current));
+
+        assertThatThrownBy(() -> repository.put("a", "fail")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> repository.put("b", "fail")).isInstanceOf(IllegalStateException.class);
+
+        assertThat(repository.get("a")).isEqualTo("1");
+        assertThat(repository.get("b")).isNull();
+        assertThat(changes).isEmpty();
+    }
+
+    @Test
+    void leavesEntityUnchangedWhenRemappingFails() {
+        InMemoryRepository<String, String> repository = new InMemoryRepository<>();
+        repository.put("a", "1");
+
+        assertThatThrownBy(() -> repository.computeIfPresent("a", (id, value) -> {
+            throw new IllegalArgumentException("Version conflict");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(repository.get("a")).isEqualTo("1");
+    }
+}
@@ -0,0 +1,129 @@
+package com.calendar.common.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteAheadLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final List<String> replayed = new ArrayList<>();
+
+    private WriteAheadLog open() throws IOException {
+        replayed.clear();
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE, 2);
+        log.open(payload -> replayed.add(StandardCharsets.UTF_8.decode(payload).toString()));
+        return log;
+    }
+
+    private static long append(WriteAheadLog log, String record) {
+        return log.append(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void replaysRecordsInOrder() throws IOException {
+        try (WriteAheadLog log = open()) {
+            append(log, "first");
+            append(log, "second");
+            log.awaitDurable(append(log, "third"));
+        }
+
+        try (WriteAheadLog log = open()) {
+            assertThat(replayed).containsExactly("first", "second", "third");
+            append(log, "fourth");
+        }
+        try (WriteAheadLog ignored = open()) {
+            assertThat(replayed).containsExactly("first", "second", "third", "fourth");
+        }
+    }
+
+    @Test
+    void rollsOverToNewSegmentWhenFull() throws IOException {
+        String record = "x".repeat(1000);
+        try (WriteAheadLog log = open()) {
+            for (int i = 0; i < 10; i++) {
+                append(log, record + i);
+            }
+        }
+
+        assertThat(files("wal-")).hasSizeGreaterThan(1);
+        try (WriteAheadLog ignored = open()) {
+            assertThat(replayed).hasSize(10).last().isEqualTo(record + 9);
+        }
+    }
+
+    @Test
+    void stopsReplayAtDamagedRecord() throws IOException {
+        try (WriteAheadLog log = open()) {
+            append(log, "first");
+            append(log, "second");
+            append(log, "third");
+        }
+        // Flips the first payload byte of "second", behind the 8 byte headers
+        Path segment = files("wal-").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'S'}), 8 + "first".length() + 8);
+        }
+
+        try (WriteAheadLog ignored = open()) {
+            assertThat(replayed).containsExactly("first");
+        }
+    }
+
+    @Test
+    void snapshotReplacesOlderSegments() throws IOException {
+        try (WriteAheadLog log = open()) {
+            append(log, "a=1");
+            append(log, "a=2");
+            assertThat(log.hasChangesSinceCheckpoint()).isTrue();
+
+            long segment = log.roll();
+            log.writeSnapshot(segment, sink -> sink.accept("a=2".getBytes(StandardCharsets.UTF_8)));
+            assertThat(log.hasChangesSinceCheckpoint()).isFalse();
+            append(log, "b=1");
+        }
+
+        List<Path> snapshots = files("snapshot-");
+        assertThat(snapshots).hasSize(1);
+        assertThat(files("wal-")).allSatisfy(path -> assertThat(number(path)).isGreaterThanOrEqualTo(number(snapshots.get(0))));
+        try (WriteAheadLog ignored = open()) {
+            assertThat(replayed).containsExactly("a=2", "b=1");
+        }
+    }
+
+    @Test
+    void rejectsAppendAfterClose() throws IOException {
+        WriteAheadLog log = open();
+        log.close();
+
+        assertThatThrownBy(() -> append(log, "late")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    // Segment number in a file name such as wal-00000000000000000003.log
+    private static long number(Path path) {
+        return Long.parseLong(path.getFileName().toString().replaceAll("\\D", ""));
+    }
+}
@@ -0,0 +1,33 @@
+package com.calendar.common.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTest {
+
+    @Test
+    void formatsVersionAsStrongETag() {
+        assertThat(ETags.of(3)).isEqualTo("\"3\"");
+        assertThat(ETags.of(Long.MAX_VALUE)).isEqualTo("\"" + Long.MAX_VALUE + "\"");
+    }
+
+    @Test
+    void missingHeaderAndWildcardMatchEveryVersion() {
+        assertThat(ETags.matches(null, 7)).isTrue();
+        assertThat(ETags.matches("*", 7)).isTrue();
+    }
+
+    @Test
+    void matchesOneOfSeveralTags() {
+        assertThat(ETags.matches("\"3\"", 3)).isTrue();
+        assertThat(ETags.matches("\"1\", \"3\"", 3)).isTrue();
+        assertThat(ETags.matches("\"1\",\"2\"", 3)).isFalse();
+    }
+
+    @Test
+    void weakAndUnquotedTagsDoNotMatch() {
+        assertThat(ETags.matches("W/\"3\"", 3)).isFalse();
+        assertThat(ETags.matches("3", 3)).isFalse();
+    }
+}
@@ -0,0 +1,84 @@
+package com.calendar.common.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Base64;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetPageTest {
+
+    private final NavigableSet<Integer> ids = IntStream.rangeClosed(1, 10).boxed()
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    @Test
+    void firstPageHasOnlyNextCursor() {
+        KeysetPage<Integer> page = KeysetPage.of(ids, null, 4, Integer::valueOf);
+
+        assertThat(page.getKeys()).containsExactly(1, 2, 3, 4);
+        assertThat(page.getNextCursor()).isNotNull();
+        assertThat(page.getPreviousCursor()).isNull();
+    }
+
+    @Test
+    void cursorsWalkForwardAndBack() {
+        KeysetPage<Integer> second = KeysetPage.of(ids, KeysetPage.of(ids, null, 4, Integer::valueOf).getNextCursor(),
+                4, Integer::valueOf);
+        KeysetPage<Integer> last = KeysetPage.of(ids, second.getNextCursor(), 4, Integer::valueOf);
+        KeysetPage<Integer> back = KeysetPage.of(ids, last.getPreviousCursor(), 4, Integer::valueOf);
+
+        assertThat(second.getKeys()).containsExactly(5, 6, 7, 8);
+        assertThat(last.getKeys()).containsExactly(9, 10);
+        assertThat(last.getNextCursor()).isNull();
+        assertThat(back.getKeys()).containsExactly(5, 6, 7, 8);
+        assertThat(KeysetPage.of(ids, back.getPreviousCursor(), 4, Integer::valueOf).getKeys())
+                .containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void cursorStaysValidWhenItsBoundaryIsRemoved() {
+        String next = KeysetPage.of(ids, null, 4, Integer::valueOf).getNextCursor();
+        ids.remove(4);
+        ids.remove(5);
+
+        assertThat(KeysetPage.of(ids, next, 4, Integer::valueOf).getKeys()).containsExactly(6, 7, 8, 9);
+    }
+
+    @Test
+    void emptySetGivesEmptyPage() {
+        KeysetPage<String> page = KeysetPage.of(new TreeSet<>(), null, 4, Function.identity());
+
+        assertThat(page.getKeys()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getPreviousCursor()).isNull();
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String unknownDirection = Base64.getUrlEncoder().encodeToString("c:3".getBytes());
+        String unparsableId = Base64.getUrlEncoder().encodeToString("a:x".getBytes());
+
+        for (String cursor : new String[]{"%%%", unknownDirection, unparsableId, ""}) {
+            assertThatThrownBy(() -> KeysetPage.of(ids, cursor, 4, Integer::valueOf))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    @Test
+    void pageSizeAppliesDefaultAndLimit() {
+        assertThat(KeysetPage.pageSize(null, 50, 500)).isEqualTo(50);
+        assertThat(KeysetPage.pageSize(null, 50, 20)).isEqualTo(20);
+        assertThat(KeysetPage.pageSize(10, 50, 500)).isEqualTo(10);
+        assertThat(KeysetPage.pageSize(1000, 50, 500)).isEqualTo(500);
+        assertThatThrownBy(() -> KeysetPage.pageSize(0, 50, 500)).isInstanceOf(ResponseStatusException.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.calendar.event_service;
+
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query hot paths of the EventController on in-memory storage.
+ * The events are spread evenly over one year and over 'users' users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class EventQueryBenchmark {
+
+    private static final OffsetDateTime YEAR_START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final int DAYS = 365;
+    private static final int USERS = 1000;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    // Number of stored events
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private EventController controller;
+
+    @Setup
+    public void setUp() {
+        RepositoryFactory repositories = new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true);
+        // Never called: Event.category is not part of the benchmarked queries
+        CategoryClient categoryClient = new CategoryClient(WebClient.builder(), "http://localhost:8084", 2000);
+        // Without subscribers the published changes are dropped right away
+        EventChangePublisher changes = new EventChangePublisher(new SimpleMeterRegistry(), 256);
+        controller = new EventController(repositories, categoryClient, changes, new ObjectMapper(), 50, 500, 100000, 366, 50, 2);
+
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            OffsetDateTime start = YEAR_START.plusMinutes(random.nextInt(DAYS * 24 * 60));
+            controller.createEvent("Event " + i, start, start.plusMinutes(30 + random.nextInt(150)),
+                    "user-" + random.nextInt(USERS), PRIORITIES[random.nextInt(PRIORITIES.length)], null, null, null, null);
+        }
+    }
+
+    // Events lying completely inside a random week
+    @Benchmark
+    public List<Event> eventsByDateRangeWeek() {
+        OffsetDateTime start = randomDay();
+        return controller.eventsByDateRange(start, start.plusDays(7), false);
+    }
+
+    // Events touching a random week
+    @Benchmark
+    public List<Event> eventsByDateRangeWeekOverlapping() {
+        OffsetDateTime start = randomDay();
+        return controller.eventsByDateRange(start, start.plusDays(7), true);
+    }
+
+    // First page of the events touching a random month
+    @Benchmark
+    public EventConnection eventsByDateRangeConnectionMonth() {
+        OffsetDateTime start = randomDay();
+        return controller.eventsByDateRangeConnection(start, start.plusDays(30), true, 50, null);
+    }
+
+    @Benchmark
+    public List<Event> eventsByUser() {
+        return controller.eventsByUser("user-" + ThreadLocalRandom.current().nextInt(USERS), null);
+    }
+
+    private static OffsetDateTime randomDay() {
+        return YEAR_START.plusDays(ThreadLocalRandom.current().nextInt(DAYS - 7));
+    }
+}
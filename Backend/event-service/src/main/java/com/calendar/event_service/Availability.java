@@ -0,0 +1,154 @@
+package com.calendar.event_service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sweep-line computations for the scheduling queries freeBusy and conflicts.
+ * All methods expect events sorted by start time, as returned by the time indexes,
+ * and run in linear time over them.
+ */
+final class Availability {
+
+    private static final Comparator<TimeSpan> BY_START = Comparator.comparing(span -> span.start().toInstant());
+
+    private Availability() {
+    }
+
+    /**
+     * Busy spans of the given events within [from, to]: clipped to the window, widened
+     * to the slot grid starting at 'from' and merged where they overlap or touch.
+     *
+     * @param granularity Slot length, or null for exact spans.
+     */
+    static List<TimeSpan> busy(List<Event> events, OffsetDateTime from, OffsetDateTime to, Duration granularity) {
+        List<TimeSpan> busy = new ArrayList<>();
+        OffsetDateTime currentStart = null;
+        OffsetDateTime currentEnd = null;
+        for (Event event : events) {
+            OffsetDateTime start = floor(max(event.getStart(), from), from, granularity);
+            OffsetDateTime end = min(ceil(min(event.getEnd(), to), from, granularity), to);
+            if (!end.isAfter(start)) {
+                continue; // Ends where the window starts, or takes no time
+            }
+            if (currentEnd != null && !start.isAfter(currentEnd)) {
+                currentEnd = max(currentEnd, end);
+                continue;
+            }
+            if (currentEnd != null) {
+                busy.add(new TimeSpan(currentStart, currentEnd));
+            }
+            currentStart = start;
+            currentEnd = end;
+        }
+        if (currentEnd != null) {
+            busy.add(new TimeSpan(currentStart, currentEnd));
+        }
+        return busy;
+    }
+
+    // Union of the busy spans of several users, merged where they overlap or touch
+    static List<TimeSpan> union(List<List<TimeSpan>> spans) {
+        List<TimeSpan> all = new ArrayList<>();
+        spans.forEach(all::addAll);
+        all.sort(BY_START);
+        List<TimeSpan> merged = new ArrayList<>();
+        for (TimeSpan span : all) {
+            TimeSpan last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && !span.start().isAfter(last.end())) {
+                merged.set(merged.size() - 1, new TimeSpan(last.start(), max(last.end(), span.end())));
+            } else {
+                merged.add(span);
+            }
+        }
+        return merged;
+    }
+
+    // Gaps between sorted, merged busy spans within [from, to]
+    static List<TimeSpan> free(List<TimeSpan> busy, OffsetDateTime from, OffsetDateTime to) {
+        List<TimeSpan> free = new ArrayList<>();
+        OffsetDateTime cursor = from;
+        for (TimeSpan span : busy) {
+            if (span.start().isAfter(cursor)) {
+                free.add(new TimeSpan(cursor, span.start()));
+            }
+            cursor = max(cursor, span.end());
+        }
+        if (to.isAfter(cursor)) {
+            free.add(new TimeSpan(cursor, to));
+        }
+        return free;
+    }
+
+    /**
+     * Groups of events that overlap each other, directly or through a chain of
+     * overlapping events. Events that only touch (one ends when the next starts)
+     * do not conflict.
+     */
+    static List<Conflict> conflicts(List<Event> events) {
+        List<Conflict> conflicts = new ArrayList<>();
+        List<Event> group = new ArrayList<>();
+        OffsetDateTime groupEnd = null;
+        for (Event event : events) {
+            if (groupEnd != null && event.getStart().isBefore(groupEnd)) {
+                group.add(event);
+                groupEnd = max(groupEnd, event.getEnd());
+                continue;
+            }
+            addConflict(conflicts, group, groupEnd);
+            group = new ArrayList<>();
+            group.add(event);
+            groupEnd = event.getEnd();
+        }
+        addConflict(conflicts, group, groupEnd);
+        return conflicts;
+    }
+
+    private static void addConflict(List<Conflict> conflicts, List<Event> group, OffsetDateTime end) {
+        if (group.size() > 1) {
+            conflicts.add(new Conflict(group.get(0).getStart(), end, group));
+        }
+    }
+
+    // Start of the slot containing 'time'
+    private static OffsetDateTime floor(OffsetDateTime time, OffsetDateTime origin, Duration granularity) {
+        if (granularity == null) {
+            return time;
+        }
+        long slots = Duration.between(origin, time).toNanos() / granularity.toNanos();
+        return origin.plus(granularity.multipliedBy(slots));
+    }
+
+    // End of the slot containing 'time', or 'time' itself if it lies on a slot boundary
+    private static OffsetDateTime ceil(OffsetDateTime time, OffsetDateTime origin, Duration granularity) {
+        OffsetDateTime floor = floor(time, origin, granularity);
+        return floor.isEqual(time) ? time : floor.plus(granularity);
+    }
+
+    private static OffsetDateTime min(OffsetDateTime a, OffsetDateTime b) {
+        return a.isAfter(b) ? b : a;
+    }
+
+    private static OffsetDateTime max(OffsetDateTime a, OffsetDateTime b) {
+        return a.isBefore(b) ? b : a;
+    }
+}
+
+// Time span [start, end)
+record TimeSpan(OffsetDateTime start, OffsetDateTime end) {
+}
+
+// Busy spans of one user
+record UserBusy(String userId, List<TimeSpan> busy) {
+}
+
+// Result of freeBusy: busy and free spans of all requested users together, and busy spans per user
+record FreeBusy(List<TimeSpan> busy, List<TimeSpan> free, List<UserBusy> users) {
+}
+
+// Events overlapping each other, from the first start to the last end of the group
+record Conflict(OffsetDateTime start, OffsetDateTime end, List<Event> events) {
+}
@@ -0,0 +1,63 @@
+package com.calendar.event_service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Client for the category-service, resolves many categories with a single bulk request
+@Component
+class CategoryClient {
+    private final WebClient webClient;
+    private final Duration timeout;
+
+    CategoryClient(WebClient.Builder builder,
+                   @Value("${category-service.url:http://localhost:8084}") String baseUrl,
+                   @Value("${category-service.timeout-ms:2000}") long timeoutMs) {
+        this.webClient = builder.baseUrl(baseUrl).build();
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    // Loads the categories with the given IDs via GET /api/categories/bulk; unknown IDs are missing in the result
+    Mono<Map<Integer, Category>> findByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return webClient.get()
+                .uri(uri -> uri.path("/api/categories/bulk").queryParam("ids", ids).build())
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(timeout)
+                .map(CategoryClient::toCategories);
+    }
+
+    // Reads the HAL collection returned by the category-service
+    private static Map<Integer, Category> toCategories(JsonNode body) {
+        Map<Integer, Category> categories = new HashMap<>();
+        for (JsonNode node : body.path("_embedded").path("categoryList")) {
+            Category category = new Category();
+            category.setId(node.path("id").asInt());
+            category.setName(node.path("name").asText(null));
+            category.setColor(node.path("color").asText(null));
+            category.setUserId(node.path("userId").asInt());
+            categories.put(category.getId(), category);
+        }
+        return categories;
+    }
+}
+
+// Category as exposed by the category-service
+@Data
+class Category {
+    private int id;         // ID of the category
+    private String name;    // Name of the category
+    private String color;   // Display color
+    private int userId;     // ID of the owning user
+}
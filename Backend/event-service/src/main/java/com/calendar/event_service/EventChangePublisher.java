@@ -0,0 +1,84 @@
+package com.calendar.event_service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Distributes event changes to the subscribers of Subscription.eventChanged.
+ *
+ * All mutations publish into one multicast sink. Every subscriber filters the changes
+ * by user and time window first and then buffers at most 'subscriptions.buffer-size'
+ * of them; a subscriber that falls further behind gets an overflow error instead of
+ * slowing down the mutations or the other subscribers, and has to reload and
+ * subscribe again. The number of subscribers is published as gauge "graphql.subscriptions".
+ */
+@Component
+class EventChangePublisher {
+    // Emissions from concurrent mutations are serialised by retrying for at most this long
+    private static final Duration EMIT_TIMEOUT = Duration.ofSeconds(1);
+
+    private final Sinks.Many<EventChange> sink = Sinks.many().multicast().directBestEffort();
+    private final int bufferSize;
+
+    EventChangePublisher(MeterRegistry meterRegistry,
+                         @Value("${subscriptions.buffer-size:256}") int bufferSize) {
+        this.bufferSize = bufferSize;
+        Gauge.builder("graphql.subscriptions", sink, Sinks.Many::currentSubscriberCount)
+                .description("Active GraphQL subscriptions")
+                .register(meterRegistry);
+    }
+
+    // Changes of the given user (null: all users) touching [start, end] (null: unbounded)
+    Flux<EventChange> changes(String userId, OffsetDateTime start, OffsetDateTime end) {
+        return sink.asFlux()
+                .filter(change -> userId == null || userId.equals(change.event().getUserId()))
+                .filter(change -> change.touches(start, end))
+                .onBackpressureBuffer(bufferSize);
+    }
+
+    // Events are immutable, so the stored event itself is sent; without subscribers it is dropped
+    void publish(EventChange change) {
+        sink.emitNext(change, Sinks.EmitFailureHandler.busyLooping(EMIT_TIMEOUT));
+    }
+}
+
+// Kind of change sent to subscribers
+enum ChangeType {
+    CREATED, UPDATED, DELETED
+}
+
+// Change of an event as sent to subscribers; the previous time span is only set for updates
+record EventChange(ChangeType type, Event event, OffsetDateTime previousStart, OffsetDateTime previousEnd) {
+
+    static EventChange created(Event event) {
+        return new EventChange(ChangeType.CREATED, event, null, null);
+    }
+
+    // previousStart/previousEnd: time span before the update (of a series: of all occurrences),
+    // so subscribers of the old window see the event leave
+    static EventChange updated(Event event, OffsetDateTime previousStart, OffsetDateTime previousEnd) {
+        return new EventChange(ChangeType.UPDATED, event, previousStart, previousEnd);
+    }
+
+    static EventChange deleted(Event event) {
+        return new EventChange(ChangeType.DELETED, event, null, null);
+    }
+
+    // Whether the event (a series: any of its occurrences) overlaps [start, end] now or did so before the change
+    boolean touches(OffsetDateTime start, OffsetDateTime end) {
+        return overlaps(event.getStart(), EventSeriesIndex.spanEnd(event), start, end)
+                || previousStart != null && overlaps(previousStart, previousEnd, start, end);
+    }
+
+    private static boolean overlaps(OffsetDateTime eventStart, OffsetDateTime eventEnd,
+                                    OffsetDateTime start, OffsetDateTime end) {
+        return (start == null || !eventEnd.isBefore(start)) && (end == null || !eventStart.isAfter(end));
+    }
+}
@@ -0,0 +1,58 @@
+package com.calendar.event_service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+// Relay-style connection of events, returned by the paginated queries
+record EventConnection(List<EventEdge> edges, PageInfo pageInfo) {
+
+    // Builds a page from up to limit + 1 fetched events; the extra event only signals a next page
+    static EventConnection of(List<Event> fetched, int limit, boolean hasPreviousPage) {
+        boolean hasNextPage = fetched.size() > limit;
+        List<EventEdge> edges = (hasNextPage ? fetched.subList(0, limit) : fetched).stream()
+                .map(event -> new EventEdge(EventCursor.of(event).encode(), event))
+                .toList();
+        String startCursor = edges.isEmpty() ? null : edges.get(0).cursor();
+        String endCursor = edges.isEmpty() ? null : edges.get(edges.size() - 1).cursor();
+        return new EventConnection(edges, new PageInfo(hasNextPage, hasPreviousPage, startCursor, endCursor));
+    }
+}
+
+// Edge of an event connection
+record EventEdge(String cursor, Event node) {
+}
+
+// Relay page information
+record PageInfo(boolean hasNextPage, boolean hasPreviousPage, String startCursor, String endCursor) {
+}
+
+// Position of an event in (start, id) order, exchanged with clients as an opaque string
+record EventCursor(Instant start, String id) {
+
+    static EventCursor of(Event event) {
+        return new EventCursor(event.getStart().toInstant(), event.getId());
+    }
+
+    String encode() {
+        String raw = start.getEpochSecond() + "." + start.getNano() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static EventCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            int dot = raw.indexOf('.');
+            if (separator < 0 || dot < 0 || dot > separator) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant start = Instant.ofEpochSecond(Long.parseLong(raw.substring(0, dot)),
+                    Long.parseLong(raw.substring(dot + 1, separator)));
+            return new EventCursor(start, raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
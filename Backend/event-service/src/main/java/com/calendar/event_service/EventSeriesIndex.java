@@ -0,0 +1,157 @@
+package com.calendar.event_service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Index of recurring events (series) whose occurrences are expanded on demand.
+ *
+ * Every series is a single entry of an {@link EventTimeIndex} spanning from its first
+ * start to the end of its last occurrence, so memory grows with the number of series,
+ * not with the number of occurrences. A range query finds the series overlapping the
+ * window and expands only their occurrences inside it.
+ */
+class EventSeriesIndex {
+
+    // Order of query results, the same as for single events from the EventTimeIndex
+    static final Comparator<Event> ORDER = Comparator
+            .comparing((Event event) -> event.getStart().toInstant())
+            .thenComparing(Event::getId);
+
+    // End of the time span of a series without COUNT and UNTIL
+    private static final OffsetDateTime UNBOUNDED = OffsetDateTime.MAX;
+
+    private final EventTimeIndex spans = new EventTimeIndex();
+
+    // End of the time span an event covers: its end, for a series the end of its last occurrence
+    static OffsetDateTime spanEnd(Event event) {
+        if (event.getRecurrence() == null) {
+            return event.getEnd();
+        }
+        return event.getRecurrenceEnd() != null ? event.getRecurrenceEnd() : UNBOUNDED;
+    }
+
+    void add(Event series) {
+        spans.add(series, spanEnd(series));
+    }
+
+    // Removes the series that was indexed with the given id and first start
+    boolean remove(String id, OffsetDateTime start) {
+        return spans.remove(id, start);
+    }
+
+    int size() {
+        return spans.size();
+    }
+
+    /**
+     * Occurrences inside or overlapping [from, to] in (start, id) order, beginning after
+     * the given cursor position and returning at most 'limit' occurrences.
+     * The series are expanded lazily and merged, so only the returned occurrences are created.
+     *
+     * @param after Position of the last event already returned, or null.
+     */
+    List<Event> find(OffsetDateTime from, OffsetDateTime to, boolean contained, EventCursor after, int limit) {
+        PriorityQueue<Expansion> expansions = new PriorityQueue<>();
+        for (Event series : spans.overlapping(from, to)) {
+            Expansion expansion = new Expansion(series, from, to, contained, after);
+            if (expansion.advance()) {
+                expansions.add(expansion);
+            }
+        }
+        List<Event> result = new ArrayList<>();
+        while (result.size() < limit && !expansions.isEmpty()) {
+            Expansion next = expansions.poll();
+            result.add(next.occurrence());
+            if (next.advance()) {
+                expansions.add(next);
+            }
+        }
+        return result;
+    }
+
+    // Occurrences of one series within a query window, ordered by (start, id) against other series
+    private static final class Expansion implements Comparable<Expansion> {
+        private final Event series;
+        private final OffsetDateTime from;
+        private final OffsetDateTime to;
+        private final boolean contained;
+        private final EventCursor after;
+        private final long duration;
+        private final Set<Instant> exceptions = new HashSet<>();
+        private final Iterator<OffsetDateTime> starts;
+        private OffsetDateTime start;
+
+        Expansion(Event series, OffsetDateTime from, OffsetDateTime to, boolean contained, EventCursor after) {
+            this.series = series;
+            this.from = from;
+            this.to = to;
+            this.contained = contained;
+            this.after = after;
+            this.duration = ChronoUnit.NANOS.between(series.getStart(), series.getEnd());
+            if (series.getExceptions() != null) {
+                series.getExceptions().forEach(exception -> exceptions.add(exception.toInstant()));
+            }
+            OffsetDateTime last = series.getRecurrenceEnd() != null
+                    ? series.getRecurrenceEnd().minus(duration, ChronoUnit.NANOS)
+                    : null;
+            // Overlapping occurrences may start up to one duration before the window;
+            // occurrences before the cursor are skipped by starting the expansion there
+            OffsetDateTime lower = contained ? from : from.minus(duration, ChronoUnit.NANOS);
+            if (after != null && after.start().isAfter(lower.toInstant())) {
+                lower = OffsetDateTime.ofInstant(after.start(), series.getStart().getOffset());
+            }
+            this.starts = Recurrence.parse(series.getRecurrence()).starts(series.getStart(), lower, last);
+        }
+
+        // Moves to the next occurrence in the window; false if there is none
+        boolean advance() {
+            while (starts.hasNext()) {
+                OffsetDateTime next = starts.next();
+                if (next.isAfter(to)) {
+                    break;
+                }
+                OffsetDateTime end = next.plus(duration, ChronoUnit.NANOS);
+                boolean hit = contained ? !end.isAfter(to) : !end.isBefore(from);
+                if (hit && !exceptions.contains(next.toInstant())
+                        && (after == null || compare(next.toInstant(), series.getId(), after) > 0)) {
+                    start = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Event occurrence() {
+            return EventSeriesIndex.occurrence(series, start, start.plus(duration, ChronoUnit.NANOS));
+        }
+
+        @Override
+        public int compareTo(Expansion other) {
+            int cmp = start.toInstant().compareTo(other.start.toInstant());
+            return cmp != 0 ? cmp : series.getId().compareTo(other.series.getId());
+        }
+    }
+
+    // Copy of the series with the time span of one occurrence; it keeps the ID of the series
+    private static Event occurrence(Event series, OffsetDateTime start, OffsetDateTime end) {
+        return series.toBuilder()
+                .start(start)
+                .end(end)
+                .recurrenceId(start)
+                .build();
+    }
+
+    private static int compare(Instant start, String id, EventCursor cursor) {
+        int cmp = start.compareTo(cursor.start());
+        return cmp != 0 ? cmp : id.compareTo(cursor.id());
+    }
+}
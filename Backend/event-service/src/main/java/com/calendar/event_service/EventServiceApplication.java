@@ -1,16 +1,45 @@
 package com.calendar.event_service;
 
+import com.calendar.common.search.SearchIndex;
+import com.calendar.common.storage.EntityRepository;
+import com.calendar.common.storage.RepositoryFactory;
+import com.calendar.common.web.NdjsonStream;
+import com.calendar.common.web.RequestingUser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.ContextValue;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import lombok.Data;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import graphql.ErrorClassification;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import lombok.Builder;
+import lombok.extern.jackson.Jacksonized;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 // Main application class
 @SpringBootApplication
@@ -20,16 +49,25 @@ public class EventServiceApplication {
     }
 }
 
-// Event model class
-@Data
+// Event model class; immutable, so stored events, occurrences and published changes can share it.
+// Mutations store a changed copy with the next version.
+@lombok.Value
+@Builder(toBuilder = true)
+@Jacksonized
 class Event {
-    private String id;            // Unique ID of the event
-    private String title;         // Title of the event
-    private OffsetDateTime start; // Start time
-    private OffsetDateTime end;   // End time
-    private String userId;        // ID of the user who created the event
-    private Priority priority;    // Priority of the event
-    private String categoryId;    // ID of the category (optional)
+    String id;            // Unique ID of the event
+    String title;         // Title of the event
+    OffsetDateTime start; // Start time
+    OffsetDateTime end;   // End time
+    String userId;        // ID of the user who created the event
+    Priority priority;    // Priority of the event
+    String categoryId;    // ID of the category (optional)
+    // Recurring events (series) are stored once; their occurrences are expanded on demand (see EventSeriesIndex)
+    String recurrence;               // Recurrence rule (see Recurrence), null for single events
+    List<OffsetDateTime> exceptions; // Starts of cancelled occurrences of the series, unmodifiable
+    OffsetDateTime recurrenceEnd;    // End of the last occurrence, derived from the rule; null if endless
+    OffsetDateTime recurrenceId;     // Only on expanded occurrences: their start (the ID is the series ID)
+    long version;                    // Incremented by every change, 0 for events stored before versioning
 }
 
 // Enum for priorities
@@ -37,10 +75,111 @@ enum Priority {
     HIGH, MEDIUM, LOW
 }
 
+// Input of one event for createEvent and createEvents
+record EventInput(String title, OffsetDateTime start, OffsetDateTime end, String userId,
+                  Priority priority, String categoryId, String recurrence, List<OffsetDateTime> exceptions) {
+
+    // From the coerced GraphQL input object; cheaper than the reflective argument binding for large batches
+    @SuppressWarnings("unchecked")
+    static EventInput from(Map<String, Object> input) {
+        return new EventInput((String) input.get("title"), (OffsetDateTime) input.get("start"),
+                (OffsetDateTime) input.get("end"), (String) input.get("userId"),
+                Priority.valueOf((String) input.get("priority")), (String) input.get("categoryId"),
+                (String) input.get("recurrence"), (List<OffsetDateTime>) input.get("exceptions"));
+    }
+
+    // The reason why the event cannot be created, or null if it is valid
+    String validate() {
+        if (start.isAfter(end)) {
+            return "Start time cannot be after the end time.";
+        }
+        if (recurrence != null && !recurrence.isBlank()) {
+            try {
+                Recurrence.parse(recurrence);
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+        }
+        return null;
+    }
+}
+
+// Result of one input of createEvents: the created event or the reason it is invalid
+record EventBatchResult(int index, Event event, String error) {
+}
+
+// Thrown when a mutation expects another version than the current one of the event
+class VersionConflictException extends RuntimeException {
+    private final long currentVersion;
+
+    VersionConflictException(String id, long currentVersion) {
+        super("Event " + id + " has been changed, its current version is " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    long getCurrentVersion() {
+        return currentVersion;
+    }
+}
+
 // GraphQL controller for events
+// Requests made for a signed-in user (X-User-Id, see RequestingUser) only reach that user's events
+// by ID or user and only subscribe to their changes; the queries by time range and freeBusy span
+// all users and are not restricted.
 @Controller
 class EventController {
-    private final Map<String, Event> events = new ConcurrentHashMap<>();
+    // Storage for events (in-memory or write-ahead logged, see RepositoryFactory)
+    private final EntityRepository<String, Event> events;
+    // Time index over the single events, kept in sync by every mutation
+    private final EventTimeIndex timeIndex = new EventTimeIndex();
+    // Time spans of the recurring events, expanded into occurrences by range queries
+    private final EventSeriesIndex seriesIndex = new EventSeriesIndex();
+    // Secondary index: userId -> IDs of that user's events
+    private final Map<String, NavigableSet<String>> eventIdsByUser = new ConcurrentHashMap<>();
+    // Time indexes per user for the scheduling queries (freeBusy, conflicts)
+    private final Map<String, EventTimeIndex> timeIndexByUser = new ConcurrentHashMap<>();
+    private final Map<String, EventSeriesIndex> seriesIndexByUser = new ConcurrentHashMap<>();
+    // Full-text indexes per user over the event titles (searchEvents)
+    private final Map<String, SearchIndex> searchIndexByUser = new ConcurrentHashMap<>();
+
+    private final CategoryClient categoryClient;
+    // Live changes for Subscription.eventChanged
+    private final EventChangePublisher changes;
+    // Serializes the events of an export
+    private final ObjectMapper objectMapper;
+    // Page size used when 'first' is omitted and the upper limit for it
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    // Largest number of events in one createEvents/deleteEvents call
+    private final int maxBatchSize;
+    // Limits of the scheduling queries: length of the time range and number of users
+    private final Duration maxSchedulingRange;
+    private final int maxSchedulingUsers;
+    // Shortest search term that also matches longer terms starting with it
+    private final int minPrefixLength;
+
+    // Opens the event storage and rebuilds the indexes from the restored events
+    EventController(RepositoryFactory repositories, CategoryClient categoryClient, EventChangePublisher changes,
+                    ObjectMapper objectMapper,
+                    @Value("${pagination.default-size:50}") int defaultPageSize,
+                    @Value("${pagination.max-size:500}") int maxPageSize,
+                    @Value("${batch.max-size:100000}") int maxBatchSize,
+                    @Value("${scheduling.max-range-days:366}") int maxSchedulingRangeDays,
+                    @Value("${scheduling.max-users:50}") int maxSchedulingUsers,
+                    @Value("${search.min-prefix-length:2}") int minPrefixLength) {
+        this.categoryClient = categoryClient;
+        this.changes = changes;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxSchedulingRange = Duration.ofDays(maxSchedulingRangeDays);
+        this.maxSchedulingUsers = maxSchedulingUsers;
+        this.minPrefixLength = minPrefixLength;
+        this.events = repositories.create("events", String.class, Event.class);
+        events.addChangeListener(this::reindex);
+        events.findAll().forEach(event -> reindex(event.getId(), null, event));
+    }
 
     // Mutation: Create a new event
     @MutationMapping
@@ -50,47 +189,340 @@ class EventController {
             @Argument OffsetDateTime end,
             @Argument String userId,
             @Argument Priority priority,
-            @Argument String categoryId) {
-        if (start.isAfter(end)) {
-            throw new IllegalArgumentException("Start time cannot be after the end time.");
+            @Argument String categoryId,
+            @Argument String recurrence,
+            @Argument List<OffsetDateTime> exceptions,
+            @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        EventInput input = new EventInput(title, start, end, userId, priority, categoryId, recurrence, exceptions);
+        String error = input.validate();
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        return store(input);
+    }
+
+    // Mutation: Create several events as one unit. If any input is invalid, no event is created
+    // and the results carry the errors; otherwise they carry the created events in input order.
+    // If storing fails, the events stored so far are removed again before the error is reported.
+    // The events are written as one batch, so durable storage waits for the disk only once.
+    @MutationMapping
+    public List<EventBatchResult> createEvents(@Argument("input") List<Map<String, Object>> rawInput,
+                                               @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        checkBatchSize(rawInput.size());
+        List<EventInput> input = rawInput.stream().map(EventInput::from).toList();
+        input.forEach(event -> RequestingUser.checkAccess(requestingUser, event.userId()));
+        List<EventBatchResult> results = new ArrayList<>(input.size());
+        boolean valid = true;
+        for (int i = 0; i < input.size(); i++) {
+            String error = input.get(i).validate();
+            valid &= error == null;
+            results.add(new EventBatchResult(i, null, error));
+        }
+        if (!valid) {
+            return results;
         }
+        return events.batch(() -> {
+            try {
+                for (int i = 0; i < input.size(); i++) {
+                    results.set(i, new EventBatchResult(i, store(input.get(i)), null));
+                }
+            } catch (RuntimeException e) {
+                // A failed write (e.g. the log cannot be written) must not leave part of the batch behind
+                for (EventBatchResult result : results) {
+                    if (result.event() != null) {
+                        try {
+                            deleteEvent(result.event().getId(), null, null);
+                        } catch (RuntimeException removal) {
+                            e.addSuppressed(removal);
+                        }
+                    }
+                }
+                throw e;
+            }
+            return results;
+        });
+    }
 
-        Event event = new Event();
-        event.setId(UUID.randomUUID().toString());
-        event.setTitle(title);
-        event.setStart(start);
-        event.setEnd(end);
-        event.setUserId(userId);
-        event.setPriority(priority);
-        event.setCategoryId(categoryId);
+    // Stores a validated event under a new ID in its first version and announces it to the subscribers
+    private Event store(EventInput input) {
+        Event.EventBuilder builder = Event.builder()
+                .id(UUID.randomUUID().toString())
+                .title(input.title())
+                .start(input.start())
+                .end(input.end())
+                .userId(input.userId())
+                .priority(input.priority())
+                .categoryId(input.categoryId())
+                .version(1);
+        Event event = recurrence(builder, input.recurrence(), input.start(), input.end())
+                .exceptions(copy(input.exceptions()))
+                .build();
         events.put(event.getId(), event);
+        changes.publish(EventChange.created(event));
         return event;
     }
 
+    private void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new IllegalArgumentException("A batch may contain at most " + maxBatchSize + " events");
+        }
+    }
+
     // Query: Retrieve an event by ID
     @QueryMapping
-    public Event event(@Argument String id) {
-        return Optional.ofNullable(events.get(id))
+    public Event event(@Argument String id, @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        Event event = Optional.ofNullable(events.get(id))
                 .orElseThrow(() -> new NoSuchElementException("Event with the specified ID was not found."));
+        RequestingUser.checkAccess(requestingUser, event.getUserId());
+        return event;
     }
 
     // Query: Retrieve all events for a specific user
     @QueryMapping
-    public List<Event> eventsByUser(@Argument String userId) {
-        return events.values().stream()
-                .filter(event -> event.getUserId().equals(userId))
+    public List<Event> eventsByUser(@Argument String userId, @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        return eventIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet()).stream()
+                .map(events::get)
+                .filter(Objects::nonNull)
                 .toList();
     }
 
-    // Query: Retrieve events within a specific time range
+    // REST: Stream all events, or those of one user, as newline-delimited JSON (one event per line,
+    // series once with their rule). The events are written while the store is iterated, so exports
+    // of any size need constant memory; a GraphQL list would be built completely before it is sent.
+    // All events only for requests that were not made for a signed-in user.
+    @GetMapping(value = "/api/events/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEvents(@RequestParam(required = false) String userId,
+                                                              @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        Iterable<Event> export = userId == null ? events.findAll() : () ->
+                eventIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet()).stream()
+                        .map(events::get)
+                        .filter(Objects::nonNull)
+                        .iterator();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(new NdjsonStream(objectMapper, export));
+    }
+
+    // Query: Full-text search over the titles of a user's events, best match first.
+    // All words have to occur; words of at least search.min-prefix-length characters also match
+    // longer words starting with them. Series are returned once, like in eventsByUser.
     @QueryMapping
-    public List<Event> eventsByDateRange(@Argument OffsetDateTime start, @Argument OffsetDateTime end) {
-        return events.values().stream()
-                .filter(event -> !event.getStart().isBefore(start) && !event.getEnd().isAfter(end))
+    public List<Event> searchEvents(@Argument String userId, @Argument String query, @Argument Integer first,
+                                    @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        if (query.isBlank()) {
+            throw new IllegalArgumentException("query must not be blank");
+        }
+        SearchIndex index = searchIndexByUser.get(userId);
+        if (index == null) {
+            return List.of();
+        }
+        return index.search(query, pageSize(first)).stream()
+                .map(events::get)
+                .filter(Objects::nonNull)
                 .toList();
     }
 
-    // Mutation: Update an event
+    // Query: One page of a user's events ordered by ID, continuing after the given cursor
+    @QueryMapping
+    public EventConnection eventsByUserConnection(
+            @Argument String userId,
+            @Argument Integer first,
+            @Argument String after,
+            @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        int limit = pageSize(first);
+        NavigableSet<String> ids = eventIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet());
+        if (after != null) {
+            ids = ids.tailSet(EventCursor.decode(after).id(), false);
+        }
+        List<Event> fetched = new ArrayList<>(Math.min(limit + 1, 64));
+        Iterator<String> iterator = ids.iterator();
+        // One event more than requested tells whether a next page exists
+        while (fetched.size() <= limit && iterator.hasNext()) {
+            Event event = events.get(iterator.next());
+            if (event != null) {
+                fetched.add(event);
+            }
+        }
+        return EventConnection.of(fetched, limit, after != null);
+    }
+
+    // Query: Retrieve events within a specific time range.
+    // By default only events lying completely inside the range are returned,
+    // with overlapping=true every event touching the range is returned.
+    // Recurring events contribute their occurrences within the range.
+    @QueryMapping
+    public List<Event> eventsByDateRange(
+            @Argument OffsetDateTime start,
+            @Argument OffsetDateTime end,
+            @Argument Boolean overlapping) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start time cannot be after the end time.");
+        }
+        boolean contained = !Boolean.TRUE.equals(overlapping);
+        return merge(timeIndex.find(start, end, contained, null, Integer.MAX_VALUE),
+                seriesIndex.find(start, end, contained, null, Integer.MAX_VALUE), Integer.MAX_VALUE);
+    }
+
+    // Query: One page of the events within a time range ordered by start time,
+    // continuing after the given cursor
+    @QueryMapping
+    public EventConnection eventsByDateRangeConnection(
+            @Argument OffsetDateTime start,
+            @Argument OffsetDateTime end,
+            @Argument Boolean overlapping,
+            @Argument Integer first,
+            @Argument String after) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start time cannot be after the end time.");
+        }
+        int limit = pageSize(first);
+        EventCursor cursor = after != null ? EventCursor.decode(after) : null;
+        boolean contained = !Boolean.TRUE.equals(overlapping);
+        List<Event> fetched = merge(timeIndex.find(start, end, contained, cursor, limit + 1),
+                seriesIndex.find(start, end, contained, cursor, limit + 1), limit + 1);
+        return EventConnection.of(fetched, limit, after != null);
+    }
+
+    // Query: Busy and free times of several users within a time range. With a granularity (in minutes)
+    // busy times are widened to whole slots counted from 'start', so free times are whole slots as well.
+    @QueryMapping
+    public FreeBusy freeBusy(
+            @Argument List<String> userIds,
+            @Argument OffsetDateTime start,
+            @Argument OffsetDateTime end,
+            @Argument Integer granularity) {
+        checkSchedulingRange(start, end);
+        if (userIds.size() > maxSchedulingUsers) {
+            throw new IllegalArgumentException("At most " + maxSchedulingUsers + " users can be queried at once");
+        }
+        if (granularity != null && granularity < 1) {
+            throw new IllegalArgumentException("granularity must be at least 1 minute");
+        }
+        Duration slot = granularity != null ? Duration.ofMinutes(granularity) : null;
+        List<UserBusy> users = userIds.stream()
+                .distinct()
+                .map(userId -> new UserBusy(userId, Availability.busy(userEvents(userId, start, end), start, end, slot)))
+                .toList();
+        List<TimeSpan> busy = Availability.union(users.stream().map(UserBusy::busy).toList());
+        return new FreeBusy(busy, Availability.free(busy, start, end), users);
+    }
+
+    // Query: Groups of a user's events within a time range that overlap each other
+    @QueryMapping
+    public List<Conflict> conflicts(
+            @Argument String userId,
+            @Argument OffsetDateTime start,
+            @Argument OffsetDateTime end,
+            @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        checkSchedulingRange(start, end);
+        return Availability.conflicts(userEvents(userId, start, end));
+    }
+
+    // Single events and occurrences of a user overlapping [start, end], ordered by start time
+    private List<Event> userEvents(String userId, OffsetDateTime start, OffsetDateTime end) {
+        EventTimeIndex single = timeIndexByUser.get(userId);
+        EventSeriesIndex series = seriesIndexByUser.get(userId);
+        return merge(single != null ? single.overlapping(start, end) : List.of(),
+                series != null ? series.find(start, end, false, null, Integer.MAX_VALUE) : List.of(),
+                Integer.MAX_VALUE);
+    }
+
+    private void checkSchedulingRange(OffsetDateTime start, OffsetDateTime end) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start time cannot be after the end time.");
+        }
+        if (Duration.between(start, end).compareTo(maxSchedulingRange) > 0) {
+            throw new IllegalArgumentException("The time range cannot exceed " + maxSchedulingRange.toDays() + " days");
+        }
+    }
+
+    // Merges single events and occurrences, both in (start, id) order, keeping at most 'limit'
+    private static List<Event> merge(List<Event> single, List<Event> occurrences, int limit) {
+        if (occurrences.isEmpty()) {
+            return single;
+        }
+        List<Event> merged = new ArrayList<>(Math.min(limit, single.size() + occurrences.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < single.size() || j < occurrences.size())) {
+            boolean takeSingle = j >= occurrences.size()
+                    || i < single.size() && EventSeriesIndex.ORDER.compare(single.get(i), occurrences.get(j)) <= 0;
+            merged.add(takeSingle ? single.get(i++) : occurrences.get(j++));
+        }
+        return merged;
+    }
+
+    // Validates a requested page size and applies the default and the upper limit
+    private int pageSize(Integer first) {
+        if (first == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (first < 1) {
+            throw new IllegalArgumentException("first must be at least 1");
+        }
+        return Math.min(first, maxPageSize);
+    }
+
+    // Field Event.category: resolved for all events of one request with a single bulk call
+    @BatchMapping
+    public Mono<Map<Event, Category>> category(List<Event> events) {
+        Map<Event, Integer> categoryIds = new HashMap<>();
+        for (Event event : events) {
+            Integer categoryId = parseCategoryId(event.getCategoryId());
+            if (categoryId != null) {
+                categoryIds.put(event, categoryId);
+            }
+        }
+        return categoryClient.findByIds(new HashSet<>(categoryIds.values()))
+                .map(categories -> {
+                    Map<Event, Category> result = new HashMap<>();
+                    categoryIds.forEach((event, categoryId) -> {
+                        Category category = categories.get(categoryId);
+                        if (category != null) {
+                            result.put(event, category);
+                        }
+                    });
+                    return result;
+                });
+    }
+
+    // Category IDs are numeric in the category-service; anything else cannot be resolved
+    private static Integer parseCategoryId(String categoryId) {
+        if (categoryId == null || categoryId.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(categoryId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Subscription: Changes of the events of a user and/or within a time range, as they happen.
+    // Updates are also sent to subscribers of the time range the event was moved out of.
+    // Without userId, the changes of all users within the time range are sent (only to internal subscribers).
+    @SubscriptionMapping
+    public Flux<EventChange> eventChanged(
+            @Argument String userId,
+            @Argument OffsetDateTime start,
+            @Argument OffsetDateTime end,
+            @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new IllegalArgumentException("Start time cannot be after the end time.");
+        }
+        return changes.changes(userId, start, end);
+    }
+
+    // Mutation: Update an event; for a series the changes apply to all occurrences.
+    // An empty recurrence turns a series into a single event.
+    // With expectedVersion the update only applies if nobody has changed the event since that version.
     @MutationMapping
     public Event updateEvent(
             @Argument String id,
@@ -98,28 +530,253 @@ class EventController {
             @Argument OffsetDateTime start,
             @Argument OffsetDateTime end,
             @Argument Priority priority,
-            @Argument String categoryId) {
-                Event event = Optional.ofNullable(events.get(id))
-                .orElseThrow(() -> new NoSuchElementException("Event not found"));
-    
-        // Validierung der Zeitangaben 
-        if (start != null && end != null && start.isAfter(end)) {
-            throw new IllegalArgumentException("Start time cannot be after end time");
-        }
-    
-        // Sicherstellen, dass nur vorhandene Felder aktualisiert werden 
-        if (title != null) event.setTitle(title);
-        if (start != null) event.setStart(start);
-        if (end != null) event.setEnd(end);
-        if (priority != null) event.setPriority(priority);
-        if (categoryId != null) event.setCategoryId(categoryId);
-    
-        return event;
+            @Argument String categoryId,
+            @Argument String recurrence,
+            @Argument List<OffsetDateTime> exceptions,
+            @Argument Long expectedVersion,
+            @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        if (recurrence != null && !recurrence.isBlank()) {
+            Recurrence.parse(recurrence); // Validated before anything is changed
+        }
+        // compute() serialises updates per event, so version check and replacement are atomic;
+        // the indexes follow in reindex once the update is stored. The change is taken under the
+        // per-event lock and published afterwards
+        EventChange[] change = new EventChange[1];
+        Event updated = events.computeIfPresent(id, (key, event) -> {
+            RequestingUser.checkAccess(requestingUser, event.getUserId());
+            checkVersion(event, expectedVersion);
+            OffsetDateTime newStart = start != null ? start : event.getStart();
+            OffsetDateTime newEnd = end != null ? end : event.getEnd();
+
+            // Validierung der Zeitangaben 
+            if (newStart.isAfter(newEnd)) {
+                throw new IllegalArgumentException("Start time cannot be after end time");
+            }
+
+            // Sicherstellen, dass nur vorhandene Felder aktualisiert werden 
+            Event.EventBuilder builder = event.toBuilder()
+                    .start(newStart)
+                    .end(newEnd)
+                    .version(event.getVersion() + 1);
+            if (title != null) builder.title(title);
+            if (priority != null) builder.priority(priority);
+            if (categoryId != null) builder.categoryId(categoryId);
+            if (exceptions != null) builder.exceptions(copy(exceptions));
+            // The span of a series depends on its start and duration, so it is derived again
+            Event result = recurrence(builder, recurrence != null ? recurrence : event.getRecurrence(),
+                    newStart, newEnd).build();
+            change[0] = EventChange.updated(result, event.getStart(), EventSeriesIndex.spanEnd(event));
+            return result;
+        });
+        if (updated == null) {
+            throw new NoSuchElementException("Event not found");
+        }
+        if (change[0] != null) {
+            changes.publish(change[0]);
+        }
+        return updated;
     }
 
-    // Mutation: Delete an event
+    // Mutation: Delete an event, with expectedVersion only if it still has that version
     @MutationMapping
-    public boolean deleteEvent(@Argument String id) {
-        return events.remove(id) != null;
+    public boolean deleteEvent(@Argument String id, @Argument Long expectedVersion,
+                               @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        Event[] removed = new Event[1];
+        events.computeIfPresent(id, (key, event) -> {
+            RequestingUser.checkAccess(requestingUser, event.getUserId());
+            checkVersion(event, expectedVersion);
+            removed[0] = event;
+            return null;
+        });
+        if (removed[0] == null) {
+            return false;
+        }
+        changes.publish(EventChange.deleted(removed[0]));
+        return true;
+    }
+
+    // Mutation: Cancel one occurrence of a series, identified by its start (recurrenceId),
+    // with expectedVersion only if the series still has that version; cancelling it again changes nothing
+    @MutationMapping
+    public Event cancelOccurrence(@Argument String id, @Argument OffsetDateTime recurrenceId,
+                                  @Argument Long expectedVersion,
+                                  @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        EventChange[] change = new EventChange[1];
+        Event updated = events.computeIfPresent(id, (key, event) -> {
+            RequestingUser.checkAccess(requestingUser, event.getUserId());
+            checkVersion(event, expectedVersion);
+            if (event.getRecurrence() == null) {
+                throw new IllegalArgumentException("Event is not recurring");
+            }
+            List<OffsetDateTime> cancelled = new ArrayList<>(
+                    event.getExceptions() != null ? event.getExceptions() : List.of());
+            if (cancelled.stream().anyMatch(recurrenceId::isEqual)) {
+                return event; // Already cancelled
+            }
+            OffsetDateTime last = event.getRecurrenceEnd() != null
+                    ? event.getRecurrenceEnd().minus(Duration.between(event.getStart(), event.getEnd()))
+                    : null;
+            if (!Recurrence.parse(event.getRecurrence()).occursAt(event.getStart(), recurrenceId, last)) {
+                throw new IllegalArgumentException("No occurrence of the series starts at " + recurrenceId);
+            }
+            cancelled.add(recurrenceId);
+            cancelled.sort(Comparator.comparing(OffsetDateTime::toInstant));
+            Event result = event.toBuilder()
+                    .exceptions(List.copyOf(cancelled))
+                    .version(event.getVersion() + 1)
+                    .build();
+            change[0] = EventChange.updated(result, result.getStart(), EventSeriesIndex.spanEnd(result));
+            return result;
+        });
+        if (updated == null) {
+            throw new NoSuchElementException("Event not found");
+        }
+        if (change[0] != null) {
+            changes.publish(change[0]);
+        }
+        return updated;
+    }
+
+    // Mutation: Delete several events, written as one batch; false for IDs that do not exist.
+    // Events of another user fail the whole batch before anything is deleted (the owner never changes).
+    @MutationMapping
+    public List<Boolean> deleteEvents(@Argument List<String> ids, @ContextValue(name = RequestingUserConfiguration.CONTEXT_KEY, required = false) String requestingUser) {
+        checkBatchSize(ids.size());
+        ids.stream().map(events::get).filter(Objects::nonNull)
+                .forEach(event -> RequestingUser.checkAccess(requestingUser, event.getUserId()));
+        return events.batch(() -> ids.stream().map(id -> deleteEvent(id, null, requestingUser)).toList());
+    }
+
+    // Rejects a mutation that expects another version; thrown inside compute(), it leaves the event unchanged
+    private static void checkVersion(Event event, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != event.getVersion()) {
+            throw new VersionConflictException(event.getId(), event.getVersion());
+        }
+    }
+
+    // Version conflicts are reported with the current version, so the client can reload and retry
+    @GraphQlExceptionHandler
+    public GraphQLError handleVersionConflict(VersionConflictException ex, DataFetchingEnvironment environment) {
+        return GraphqlErrorBuilder.newError(environment)
+                .errorType(ErrorClassification.errorClassification("CONFLICT"))
+                .message(ex.getMessage())
+                .extensions(Map.of("currentVersion", ex.getCurrentVersion()))
+                .build();
+    }
+
+    // Access to the events of another user (see RequestingUser)
+    @GraphQlExceptionHandler
+    public GraphQLError handleForbidden(ResponseStatusException ex, DataFetchingEnvironment environment) {
+        return GraphqlErrorBuilder.newError(environment)
+                .errorType(ex.getStatusCode() == HttpStatus.FORBIDDEN ? ErrorType.FORBIDDEN : ErrorType.INTERNAL_ERROR)
+                .message(ex.getReason())
+                .build();
+    }
+
+    // Sets the recurrence rule (blank: none) and derives the span of the series from start and end
+    private static Event.EventBuilder recurrence(Event.EventBuilder event, String recurrence,
+                                                 OffsetDateTime start, OffsetDateTime end) {
+        if (recurrence == null || recurrence.isBlank()) {
+            return event.recurrence(null).exceptions(null).recurrenceEnd(null);
+        }
+        return event.recurrence(recurrence.trim())
+                .recurrenceEnd(Recurrence.parse(recurrence).lastEnd(start, end));
+    }
+
+    // Unmodifiable copy of the cancelled occurrences of an input, so no caller can change a stored event
+    private static List<OffsetDateTime> copy(List<OffsetDateTime> exceptions) {
+        return exceptions != null ? List.copyOf(exceptions) : null;
+    }
+
+    // Keeps the secondary indexes in line with the storage. Called for every stored change while
+    // its key is locked, so the changes of one event are indexed in order and a failed write never is
+    private void reindex(String id, Event previous, Event current) {
+        if (previous != null) {
+            unindexTime(previous); // Before the new start and recurrence re-key the event
+        }
+        if (current != null) {
+            indexTime(current);
+        }
+        if (current == null) {
+            unindexUser(previous.getUserId(), id);
+            unindexText(previous);
+        } else if (previous == null) {
+            indexUser(current.getUserId(), id);
+            indexText(current);
+        } else if (!Objects.equals(previous.getTitle(), current.getTitle())) {
+            indexText(current);
+        }
+    }
+
+    // Single events go into the time indexes, series into the series indexes (global and of the user);
+    // compute() keeps the per-user entries atomic with removals
+    private void indexTime(Event event) {
+        if (event.getRecurrence() == null) {
+            timeIndex.add(event);
+            timeIndexByUser.compute(event.getUserId(), (key, index) -> {
+                EventTimeIndex result = index != null ? index : new EventTimeIndex();
+                result.add(event);
+                return result;
+            });
+        } else {
+            seriesIndex.add(event);
+            seriesIndexByUser.compute(event.getUserId(), (key, index) -> {
+                EventSeriesIndex result = index != null ? index : new EventSeriesIndex();
+                result.add(event);
+                return result;
+            });
+        }
+    }
+
+    // Removes an event from its time indexes, as stored before a change of its start or recurrence.
+    // Per-user indexes are dropped once they are empty.
+    private void unindexTime(Event event) {
+        if (event.getRecurrence() == null) {
+            timeIndex.remove(event.getId(), event.getStart());
+            timeIndexByUser.computeIfPresent(event.getUserId(), (key, index) -> {
+                index.remove(event.getId(), event.getStart());
+                return index.size() == 0 ? null : index;
+            });
+        } else {
+            seriesIndex.remove(event.getId(), event.getStart());
+            seriesIndexByUser.computeIfPresent(event.getUserId(), (key, index) -> {
+                index.remove(event.getId(), event.getStart());
+                return index.size() == 0 ? null : index;
+            });
+        }
+    }
+
+    // Adds an event ID to the user's index entry; compute() keeps this atomic with removals
+    private void indexUser(String userId, String id) {
+        eventIdsByUser.compute(userId, (key, ids) -> {
+            NavigableSet<String> result = ids != null ? ids : new ConcurrentSkipListSet<>();
+            result.add(id);
+            return result;
+        });
+    }
+
+    // Adds or replaces an event in the full-text index of its user; compute() keeps this atomic with removals
+    private void indexText(Event event) {
+        searchIndexByUser.compute(event.getUserId(), (key, index) -> {
+            SearchIndex result = index != null ? index : new SearchIndex(minPrefixLength);
+            result.add(event.getId(), event.getTitle());
+            return result;
+        });
+    }
+
+    // Removes an event from the full-text index of its user and drops the index once it is empty
+    private void unindexText(Event event) {
+        searchIndexByUser.computeIfPresent(event.getUserId(), (key, index) -> {
+            index.remove(event.getId());
+            return index.size() == 0 ? null : index;
+        });
+    }
+
+    // Removes an event ID from the user's index entry and drops the entry once it is empty
+    private void unindexUser(String userId, String id) {
+        eventIdsByUser.computeIfPresent(userId, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.calendar.event_service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Interval tree over event time spans.
+ * Implemented as a treap ordered by (start, id) where every node carries the
+ * maximum end instant of its subtree, so range queries only descend into
+ * subtrees that can still contain a hit: O(log N + k).
+ */
+class EventTimeIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root;
+    private int size;
+
+    // Adds an event with its time span
+    void add(Event event) {
+        add(event, event.getEnd());
+    }
+
+    // Adds an event spanning from its start to the given end, e.g. a series up to the end of its last occurrence
+    void add(Event event, OffsetDateTime end) {
+        Node node = new Node(event, end.toInstant());
+        lock.writeLock().lock();
+        try {
+            root = insert(root, node);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Removes the entry that was indexed with the given id and start time
+    boolean remove(String id, OffsetDateTime start) {
+        lock.writeLock().lock();
+        try {
+            int before = size;
+            root = delete(root, start.toInstant(), id);
+            return size < before;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Events lying completely inside [from, to] (both bounds inclusive),
+     * ordered by start time.
+     */
+    List<Event> contained(OffsetDateTime from, OffsetDateTime to) {
+        return find(from, to, true, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Events sharing at least one instant with [from, to] (both bounds inclusive),
+     * ordered by start time.
+     */
+    List<Event> overlapping(OffsetDateTime from, OffsetDateTime to) {
+        return find(from, to, false, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Events inside or overlapping [from, to] in (start, id) order, beginning
+     * after the given cursor position and returning at most 'limit' events.
+     *
+     * @param after Position of the last event already returned, or null.
+     */
+    List<Event> find(OffsetDateTime from, OffsetDateTime to, boolean contained, EventCursor after, int limit) {
+        Instant lower = from.toInstant();
+        Instant upper = to.toInstant();
+        List<Event> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            collect(root, lower, upper, contained, after, limit, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    // In-order walk that prunes subtrees ending before 'lower', starting after 'upper'
+    // or lying before the cursor; returns false once no further event can be collected
+    private static boolean collect(Node node, Instant lower, Instant upper, boolean contained,
+                                   EventCursor after, int limit, List<Event> out) {
+        while (node != null) {
+            if (node.maxEnd.isBefore(lower)) {
+                return true;
+            }
+            boolean afterCursor = after == null || compare(after.start(), after.id(), node) < 0;
+            if (afterCursor && !collect(node.left, lower, upper, contained, after, limit, out)) {
+                return false;
+            }
+            if (node.start.isAfter(upper)) {
+                return false;
+            }
+            boolean hit = contained
+                    ? !node.start.isBefore(lower) && !node.end.isAfter(upper)
+                    : !node.end.isBefore(lower);
+            if (afterCursor && hit) {
+                out.add(node.event);
+                if (out.size() >= limit) {
+                    return false;
+                }
+            }
+            node = node.right;
+        }
+        return true;
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, Instant start, String id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            size--;
+            return merge(node.left, node.right);
+        }
+        node.update();
+        return node;
+    }
+
+    // Joins two treaps where every key in 'left' is smaller than every key in 'right'
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static int compare(Instant start, String id, Node node) {
+        int cmp = start.compareTo(node.start);
+        return cmp != 0 ? cmp : id.compareTo(node.id);
+    }
+
+    private static final class Node {
+        final Event event;
+        final String id;
+        // Start and end are copied so later changes to the event cannot corrupt the ordering
+        final Instant start;
+        final Instant end;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Instant maxEnd;
+        Node left;
+        Node right;
+
+        Node(Event event, Instant end) {
+            this.event = event;
+            this.id = event.getId();
+            this.start = event.getStart().toInstant();
+            this.end = end;
+            this.maxEnd = end;
+        }
+
+        void update() {
+            Instant max = end;
+            if (left != null && left.maxEnd.isAfter(max)) {
+                max = left.maxEnd;
+            }
+            if (right != null && right.maxEnd.isAfter(max)) {
+                max = right.maxEnd;
+            }
+            maxEnd = max;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.calendar.event_service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.persisted.ApolloPersistedQuerySupport;
+import graphql.execution.preparsed.persisted.PersistedQueryCache;
+import graphql.execution.preparsed.persisted.PersistedQueryCacheMiss;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.ServletException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Automatic persisted queries (Apollo APQ) and a cache of parsed and validated documents.
+ *
+ * Clients send only the SHA-256 hash of a query in extensions.persistedQuery. If the hash
+ * is unknown, the response contains the error "PersistedQueryNotFound" and the client repeats
+ * the request with the query text, which registers it. Requests with the query text but
+ * without a hash are cached under the hash of their text, so every repeated operation skips
+ * parsing and validation. The cache is bounded and published as "graphql.documents".
+ */
+@Configuration
+public class PersistedQueryConfiguration {
+
+    @Bean
+    public GraphQlSourceBuilderCustomizer persistedQueries(MeterRegistry meterRegistry,
+                                                           @Value("${graphql.persisted-queries.max-size:1000}") long maxSize) {
+        Cache<Object, PreparsedDocumentEntry> documents = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, documents, "graphql.documents");
+        PersistedQuerySupport support = new DocumentProvider(new DocumentCache(documents));
+        return builder -> builder.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(support));
+    }
+
+    @Bean
+    public GraphQlHttpHandler graphQlHttpHandler(WebGraphQlHandler webGraphQlHandler, ObjectMapper objectMapper) {
+        return new PersistedQueryHttpHandler(webGraphQlHandler, objectMapper);
+    }
+
+    // Uses the hash of the query text as ID for requests that do not send one
+    private static final class DocumentProvider extends ApolloPersistedQuerySupport {
+
+        DocumentProvider(PersistedQueryCache cache) {
+            super(cache);
+        }
+
+        @Override
+        protected Optional<Object> getPersistedQueryId(ExecutionInput executionInput) {
+            Optional<Object> id = super.getPersistedQueryId(executionInput);
+            if (id.isPresent() || executionInput.getQuery() == null
+                    || PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(executionInput.getQuery())) {
+                return id;
+            }
+            return Optional.of(sha256(executionInput.getQuery()));
+        }
+    }
+
+    // Parses and validates a document only if its ID is not cached yet
+    private static final class DocumentCache implements PersistedQueryCache {
+        private final Cache<Object, PreparsedDocumentEntry> documents;
+
+        DocumentCache(Cache<Object, PreparsedDocumentEntry> documents) {
+            this.documents = documents;
+        }
+
+        @Override
+        public CompletableFuture<PreparsedDocumentEntry> getPersistedQueryDocumentAsync(Object persistedQueryId,
+                                                                                      ExecutionInput executionInput,
+                                                                                      PersistedQueryCacheMiss onCacheMiss) {
+            // Without query text the miss handler reports PersistedQueryNotFound; failed lookups are not cached
+            String query = executionInput.getQuery();
+            String text = PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(query) ? "" : query;
+            return CompletableFuture.completedFuture(documents.get(persistedQueryId, id -> onCacheMiss.apply(text)));
+        }
+    }
+
+    /**
+     * Spring GraphQL rejects requests without query text, so a request carrying only the hash
+     * gets graphql-java's placeholder for persisted queries as query.
+     */
+    private static final class PersistedQueryHttpHandler extends GraphQlHttpHandler {
+        private final ObjectMapper objectMapper;
+
+        PersistedQueryHttpHandler(WebGraphQlHandler graphQlHandler, ObjectMapper objectMapper) {
+            super(graphQlHandler);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public ServerResponse handleRequest(ServerRequest request) throws ServletException {
+            byte[] body;
+            try {
+                body = request.body(byte[].class);
+            } catch (IOException e) {
+                throw new ServletException("Failed to read the GraphQL request", e);
+            }
+            return super.handleRequest(ServerRequest.from(request).body(withQueryMarker(body)).build());
+        }
+
+        private byte[] withQueryMarker(byte[] body) {
+            try {
+                JsonNode json = objectMapper.readTree(body);
+                if (json instanceof ObjectNode request && !request.path("query").isTextual()
+                        && request.path("extensions").has("persistedQuery")) {
+                    request.put("query", PersistedQuerySupport.PERSISTED_QUERY_MARKER);
+                    return objectMapper.writeValueAsBytes(request);
+                }
+            } catch (IOException e) {
+                // Not JSON: left to the regular handling, which reports the error
+            }
+            return body;
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
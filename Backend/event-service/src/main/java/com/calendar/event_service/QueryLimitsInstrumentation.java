@@ -0,0 +1,248 @@
+package com.calendar.event_service;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.analysis.QueryTraverser;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLAppliedDirective;
+import graphql.schema.GraphQLTypeUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects expensive queries before they run and measures the resolvers.
+ *
+ * Depth and complexity are computed from the parsed operation. Every selected field
+ * costs 1 plus the cost of its selection, multiplied for list fields by their expected
+ * size: 'first' (or the default page size) for the edges of connections, the schema directive
+ * {@code @listSize(assumedSize: n)} for lists known to be short, and a fixed multiplier
+ * for other unpaginated lists such as eventsByUser and eventsByDateRange.
+ *
+ * Resolver times are recorded in the timer "graphql.resolver", tagged with the field
+ * coordinate (e.g. "Query.eventsByUser"). Trivial property fetchers are not measured.
+ * With the request extension {"timing": true} the response extensions contain the
+ * query cost and the time of every resolver call.
+ */
+@Component
+public class QueryLimitsInstrumentation extends SimplePerformantInstrumentation {
+
+    private static final String TIMING_EXTENSION = "timing";
+    private static final String LIST_SIZE_DIRECTIVE = "listSize";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxDepth;
+    private final int maxComplexity;
+    private final int listMultiplier;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    // Field coordinate -> resolver timer
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * @param listMultiplier Assumed size of lists without 'first' argument.
+     */
+    public QueryLimitsInstrumentation(MeterRegistry meterRegistry,
+                                      @Value("${graphql.limits.max-depth:10}") int maxDepth,
+                                      @Value("${graphql.limits.max-complexity:5000}") int maxComplexity,
+                                      @Value("${graphql.limits.list-multiplier:100}") int listMultiplier,
+                                      @Value("${pagination.default-size:50}") int defaultPageSize,
+                                      @Value("${pagination.max-size:500}") int maxPageSize) {
+        this.meterRegistry = meterRegistry;
+        this.maxDepth = maxDepth;
+        this.maxComplexity = maxComplexity;
+        this.listMultiplier = listMultiplier;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        Object timing = parameters.getExecutionInput().getExtensions().get(TIMING_EXTENSION);
+        return new QueryState(Boolean.TRUE.equals(timing));
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        QueryState query = (QueryState) state;
+        ExecutionContext context = parameters.getExecutionContext();
+        QueryTraverser traverser = QueryTraverser.newQueryTraverser()
+                .schema(context.getGraphQLSchema())
+                .document(context.getDocument())
+                .operationName(context.getOperationDefinition().getName())
+                .coercedVariables(context.getCoercedVariables())
+                .build();
+
+        // Cost of the selections below each field, null key for the operation itself
+        Map<QueryVisitorFieldEnvironment, Integer> selectionCost = new HashMap<>();
+        int[] depth = {0};
+        traverser.visitPostOrder(new QueryVisitorStub() {
+            @Override
+            public void visitField(QueryVisitorFieldEnvironment env) {
+                if (env.isTypeNameIntrospectionField()) {
+                    return;
+                }
+                int cost = 1 + multiplier(env) * selectionCost.getOrDefault(env, 0);
+                selectionCost.merge(env.getParentEnvironment(), cost, Integer::sum);
+                depth[0] = Math.max(depth[0], depth(env));
+            }
+        });
+        query.complexity = selectionCost.getOrDefault(null, 0);
+        query.depth = depth[0];
+        meterRegistry.summary("graphql.query.complexity").record(query.complexity);
+
+        if (query.depth > maxDepth) {
+            meterRegistry.counter("graphql.query.rejected", "reason", "depth").increment();
+            throw new AbortExecutionException("Query depth " + query.depth + " exceeds the maximum of " + maxDepth);
+        }
+        if (query.complexity > maxComplexity) {
+            meterRegistry.counter("graphql.query.rejected", "reason", "complexity").increment();
+            throw new AbortExecutionException(
+                    "Query complexity " + query.complexity + " exceeds the maximum of " + maxComplexity);
+        }
+        return super.beginExecuteOperation(parameters, state);
+    }
+
+    @Override
+    public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher, InstrumentationFieldFetchParameters parameters,
+                                                InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher()) {
+            return dataFetcher;
+        }
+        QueryState query = (QueryState) state;
+        ExecutionStepInfo step = parameters.getExecutionStepInfo();
+        String field = step.getObjectType().getName() + "." + step.getFieldDefinition().getName();
+        Timer timer = timers.computeIfAbsent(field, f -> Timer.builder("graphql.resolver")
+                .tag("field", f)
+                .description("Execution time of a GraphQL resolver")
+                .register(meterRegistry));
+
+        return environment -> {
+            long started = System.nanoTime();
+            Object result;
+            try {
+                result = dataFetcher.get(environment);
+            } catch (Exception | Error e) {
+                record(timer, query, field, step, started);
+                throw e;
+            }
+            if (result instanceof CompletionStage<?> stage) {
+                // Asynchronous and batched resolvers: measure until the value is there
+                return stage.whenComplete((value, error) -> record(timer, query, field, step, started));
+            }
+            record(timer, query, field, step, started);
+            return result;
+        };
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+                                                                        InstrumentationExecutionParameters parameters,
+                                                                        InstrumentationState state) {
+        QueryState query = (QueryState) state;
+        if (query == null || !query.timing) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        Map<String, Object> timing = new LinkedHashMap<>();
+        timing.put("depth", query.depth);
+        timing.put("complexity", query.complexity);
+        timing.put("totalMs", millis(System.nanoTime() - query.started));
+        List<Map<String, Object>> resolvers = new ArrayList<>();
+        for (ResolverTiming resolver : query.resolvers) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("path", resolver.path());
+            entry.put("field", resolver.field());
+            entry.put("durationMs", millis(resolver.durationNanos()));
+            resolvers.add(entry);
+        }
+        timing.put("resolvers", resolvers);
+        return CompletableFuture.completedFuture(
+                ExecutionResultImpl.newExecutionResult().from(executionResult).addExtension(TIMING_EXTENSION, timing).build());
+    }
+
+    private static void record(Timer timer, QueryState query, String field, ExecutionStepInfo step, long started) {
+        long duration = System.nanoTime() - started;
+        timer.record(duration, TimeUnit.NANOSECONDS);
+        if (query.timing) {
+            query.resolvers.add(new ResolverTiming(step.getPath().toString(), field, duration));
+        }
+    }
+
+    // Expected number of elements a field returns
+    private int multiplier(QueryVisitorFieldEnvironment env) {
+        boolean list = GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(env.getFieldDefinition().getType()));
+        // A connection returns one page: its edges are charged with 'first' of the connection field,
+        // the connection itself and its pageInfo only once
+        if (list && GraphQLTypeUtil.unwrapAll(env.getParentType()).getName().endsWith("Connection")) {
+            QueryVisitorFieldEnvironment connection = env.getParentEnvironment();
+            return pageSize(connection != null ? connection.getArguments().get("first") : null);
+        }
+        if (env.getFieldDefinition().getArgument("first") != null) {
+            return list ? pageSize(env.getArguments().get("first")) : 1;
+        }
+        GraphQLAppliedDirective listSize = env.getFieldDefinition().getAppliedDirective(LIST_SIZE_DIRECTIVE);
+        if (listSize != null) {
+            Integer assumedSize = listSize.getArgument("assumedSize").getValue();
+            return Math.max(1, assumedSize);
+        }
+        return list ? listMultiplier : 1;
+    }
+
+    // Page size a 'first' argument stands for
+    private int pageSize(Object first) {
+        return first instanceof Integer size ? Math.max(1, Math.min(size, maxPageSize)) : defaultPageSize;
+    }
+
+    private static int depth(QueryVisitorFieldEnvironment env) {
+        int depth = 0;
+        for (QueryVisitorFieldEnvironment current = env; current != null; current = current.getParentEnvironment()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 10_000 / 100.0;
+    }
+
+    private record ResolverTiming(String path, String field, long durationNanos) {
+    }
+
+    private static final class QueryState implements InstrumentationState {
+        final boolean timing;
+        final long started = System.nanoTime();
+        final Queue<ResolverTiming> resolvers = new ConcurrentLinkedQueue<>();
+        volatile int complexity;
+        volatile int depth;
+
+        QueryState(boolean timing) {
+            this.timing = timing;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.calendar.event_service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Recurrence rule of an event series, the subset of the iCalendar RRULE (RFC 5545)
+ * with FREQ=DAILY|WEEKLY|MONTHLY, INTERVAL, COUNT, UNTIL and, for weekly rules, BYDAY,
+ * e.g. "FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10".
+ *
+ * The event itself is the first occurrence (DTSTART), also if it does not match the
+ * rule; the others keep its duration.
+ * Occurrences are computed on demand: an expansion jumps straight to the first period
+ * that can reach the requested window, so its cost depends on the occurrences inside
+ * the window, not on how long the series has been running. Monthly rules skip months
+ * without the day of the first occurrence, as RFC 5545 does. Dates are calculated in
+ * the offset of the first start, without daylight saving transitions.
+ */
+final class Recurrence {
+
+    // Upper limit for COUNT
+    static final int MAX_COUNT = 100_000;
+    // Periods in a row without occurrence before an expansion gives up (monthly rules on the 29th to 31st)
+    private static final int MAX_EMPTY_PERIODS = 1000;
+    private static final DateTimeFormatter BASIC_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final List<String> WEEKDAYS = List.of("MO", "TU", "WE", "TH", "FR", "SA", "SU");
+
+    enum Frequency {
+        DAILY, WEEKLY, MONTHLY
+    }
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Integer count;
+    private final OffsetDateTime until;
+    // Weekly rules only; empty: the weekday of the first start
+    private final Set<DayOfWeek> byDay;
+
+    private Recurrence(Frequency frequency, int interval, Integer count, OffsetDateTime until, Set<DayOfWeek> byDay) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.byDay = byDay;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the rule is malformed or uses unsupported parts.
+     */
+    static Recurrence parse(String rule) {
+        Frequency frequency = null;
+        int interval = 1;
+        Integer count = null;
+        OffsetDateTime until = null;
+        Set<DayOfWeek> byDay = EnumSet.noneOf(DayOfWeek.class);
+
+        String normalized = rule.trim().toUpperCase(Locale.ROOT);
+        if (normalized.startsWith("RRULE:")) {
+            normalized = normalized.substring("RRULE:".length());
+        }
+        for (String part : normalized.split(";")) {
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed recurrence rule part: " + part);
+            }
+            String name = part.substring(0, separator);
+            String value = part.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "FREQ" -> frequency = Frequency.valueOf(value);
+                    case "INTERVAL" -> interval = Integer.parseInt(value);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    case "UNTIL" -> until = parseUntil(value);
+                    case "BYDAY" -> {
+                        for (String day : value.split(",")) {
+                            int index = WEEKDAYS.indexOf(day);
+                            if (index < 0) {
+                                throw new IllegalArgumentException("Unsupported BYDAY value: " + day);
+                            }
+                            byDay.add(DayOfWeek.of(index + 1));
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported recurrence rule part: " + name);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("FREQ is required (DAILY, WEEKLY or MONTHLY)");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("INTERVAL must be at least 1");
+        }
+        if (count != null && (count < 1 || count > MAX_COUNT)) {
+            throw new IllegalArgumentException("COUNT must be between 1 and " + MAX_COUNT);
+        }
+        if (count != null && until != null) {
+            throw new IllegalArgumentException("COUNT and UNTIL cannot be combined");
+        }
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported for FREQ=WEEKLY");
+        }
+        return new Recurrence(frequency, interval, count, until, byDay);
+    }
+
+    // UNTIL as in RFC 5545 (20261231T235959Z, 20261231 for the end of that day in UTC) or ISO-8601
+    private static OffsetDateTime parseUntil(String value) {
+        if (value.matches("\\d{8}")) {
+            return LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE).atTime(23, 59, 59).atOffset(ZoneOffset.UTC);
+        }
+        if (value.matches("\\d{8}T\\d{6}Z?")) {
+            return LocalDateTime.parse(value.substring(0, 15), BASIC_DATE_TIME).atOffset(ZoneOffset.UTC);
+        }
+        return OffsetDateTime.parse(value);
+    }
+
+    /**
+     * Upper bound for the end of the last occurrence: exact for COUNT, UNTIL plus the
+     * duration otherwise, null if the series never ends.
+     */
+    OffsetDateTime lastEnd(OffsetDateTime start, OffsetDateTime end) {
+        if (until != null) {
+            return until.plus(ChronoUnit.NANOS.between(start, end), ChronoUnit.NANOS);
+        }
+        if (count == null) {
+            return null;
+        }
+        return lastStart(start).plus(ChronoUnit.NANOS.between(start, end), ChronoUnit.NANOS);
+    }
+
+    // Start of occurrence number COUNT; computed directly unless months can be skipped
+    private OffsetDateTime lastStart(OffsetDateTime first) {
+        long periods = count - 1;
+        if (frequency == Frequency.WEEKLY && !byDay.isEmpty()) {
+            // The first week may start after some of the weekdays, every later week has all of them
+            List<OffsetDateTime> firstWeek = occurrences(first, 0);
+            if (count <= firstWeek.size()) {
+                return firstWeek.get(count - 1);
+            }
+            int remaining = count - firstWeek.size() - 1;
+            return occurrences(first, 1 + remaining / byDay.size()).get(remaining % byDay.size());
+        }
+        if (frequency != Frequency.MONTHLY || first.getDayOfMonth() <= 28) {
+            return occurrences(first, periods).get(0);
+        }
+        Iterator<OffsetDateTime> starts = starts(first, first, null);
+        OffsetDateTime last = first;
+        for (int i = 0; i < count && starts.hasNext(); i++) {
+            last = starts.next();
+        }
+        return last;
+    }
+
+    /**
+     * Starts of the occurrences of a series with the given first start, in ascending
+     * order, beginning with the first one not before 'from'. COUNT and UNTIL end the
+     * iteration; otherwise it is endless and the caller stops it.
+     *
+     * @param last Start of the last occurrence if known (see {@link #lastEnd}), or null.
+     *             Without it, a series with COUNT is walked from its first occurrence.
+     */
+    Iterator<OffsetDateTime> starts(OffsetDateTime first, OffsetDateTime from, OffsetDateTime last) {
+        boolean counted = count != null && last == null;
+        OffsetDateTime bound = last != null ? last : until;
+        return new Iterator<>() {
+            // Counted occurrences are numbered, so their iteration has to begin at the first one
+            private long period = counted ? 0 : firstPeriod(first, from);
+            private int produced;
+            private final ArrayDeque<OffsetDateTime> pending = new ArrayDeque<>();
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                while (pending.isEmpty() && !finished) {
+                    fill();
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public OffsetDateTime next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pending.poll();
+            }
+
+            // Computes the occurrences of the next periods until one is found or the series has ended
+            private void fill() {
+                for (int empty = 0; empty < MAX_EMPTY_PERIODS; empty++) {
+                    for (OffsetDateTime start : occurrences(first, period++)) {
+                        if (bound != null && start.isAfter(bound) || counted && produced >= count) {
+                            finished = true;
+                            return;
+                        }
+                        produced++;
+                        if (!start.isBefore(from)) {
+                            pending.add(start);
+                        }
+                    }
+                    if (!pending.isEmpty()) {
+                        return;
+                    }
+                }
+                finished = true;
+            }
+        };
+    }
+
+    /**
+     * Whether an occurrence of the series starts at the given time.
+     *
+     * @param last See {@link #starts}.
+     */
+    boolean occursAt(OffsetDateTime first, OffsetDateTime start, OffsetDateTime last) {
+        Iterator<OffsetDateTime> starts = starts(first, start, last);
+        return starts.hasNext() && starts.next().isEqual(start);
+    }
+
+    // A period shortly before the one containing 'from'; too early is only slower, too late would skip occurrences
+    private long firstPeriod(OffsetDateTime first, OffsetDateTime from) {
+        if (!from.isAfter(first)) {
+            return 0;
+        }
+        long units = switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS.between(first, from);
+            case WEEKLY -> ChronoUnit.WEEKS.between(weekStart(first), from);
+            case MONTHLY -> ChronoUnit.MONTHS.between(first, from);
+        };
+        return Math.max(0, units / interval - 1);
+    }
+
+    // Occurrence starts of one period, ascending; never before the first start
+    private List<OffsetDateTime> occurrences(OffsetDateTime first, long period) {
+        long units = period * interval;
+        return switch (frequency) {
+            case DAILY -> List.of(first.plusDays(units));
+            case WEEKLY -> {
+                if (byDay.isEmpty()) {
+                    yield List.of(first.plusWeeks(units));
+                }
+                OffsetDateTime week = weekStart(first).plusWeeks(units);
+                // The first start is an occurrence even on a weekday outside BYDAY, as in RFC 5545
+                yield EnumSet.allOf(DayOfWeek.class).stream()
+                        .filter(day -> byDay.contains(day) || period == 0 && day == first.getDayOfWeek())
+                        .map(day -> week.plusDays(day.ordinal()))
+                        .filter(start -> !start.isBefore(first))
+                        .toList();
+            }
+            case MONTHLY -> {
+                OffsetDateTime start = first.plusMonths(units);
+                // plusMonths() moves the 31st to the last day of shorter months; those months have no occurrence
+                yield start.getDayOfMonth() == first.getDayOfMonth() ? List.of(start) : List.of();
+            }
+        };
+    }
+
+    // Monday of the week of the first start, at the time of the first start (WKST=MO)
+    private static OffsetDateTime weekStart(OffsetDateTime first) {
+        return first.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+}
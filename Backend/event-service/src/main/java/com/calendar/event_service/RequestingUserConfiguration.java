@@ -0,0 +1,31 @@
+package com.calendar.event_service;
+
+import com.calendar.common.web.RequestingUser;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+
+import java.util.Map;
+
+/**
+ * Passes the user a request is made for (header X-User-Id, set by the API gateway) to the
+ * GraphQL context, where the controller reads it with @ContextValue. Also applies to the
+ * handshake of subscriptions over WebSocket.
+ */
+@Configuration
+public class RequestingUserConfiguration {
+
+    static final String CONTEXT_KEY = "requestingUser";
+
+    @Bean
+    public WebGraphQlInterceptor requestingUserInterceptor() {
+        return (request, chain) -> {
+            String requestingUser = request.getHeaders().getFirst(RequestingUser.HEADER);
+            if (requestingUser != null) {
+                request.configureExecutionInput((input, builder) ->
+                        builder.graphQLContext(Map.of(CONTEXT_KEY, requestingUser)).build());
+            }
+            return chain.next(request);
+        };
+    }
+}
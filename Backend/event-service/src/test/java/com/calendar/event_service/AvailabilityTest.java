@@ -0,0 +1,155 @@
+package com.calendar.event_service;
+
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AvailabilityTest {
+
+    private static final OffsetDateTime DAY = OffsetDateTime.of(2026, 3, 2, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private static OffsetDateTime at(int hour, int minute) {
+        return DAY.withHour(hour).withMinute(minute);
+    }
+
+    private static Event event(String id, OffsetDateTime start, OffsetDateTime end) {
+        return Event.builder().id(id).title(id).userId("u1").start(start).end(end).build();
+    }
+
+    private static TimeSpan span(OffsetDateTime start, OffsetDateTime end) {
+        return new TimeSpan(start, end);
+    }
+
+    // Controller on in-memory storage: at most 2 users and 7 days per scheduling query
+    private static EventController controller() {
+        RepositoryFactory repositories = new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true);
+        // Never called: the scheduling queries do not resolve categories
+        CategoryClient categoryClient = new CategoryClient(WebClient.builder(), "http://localhost:8084", 2000);
+        EventChangePublisher changes = new EventChangePublisher(new SimpleMeterRegistry(), 16);
+        return new EventController(repositories, categoryClient, changes, new ObjectMapper(), 50, 500, 100, 7, 2, 2);
+    }
+
+    private static Event create(EventController controller, String userId, OffsetDateTime start, OffsetDateTime end,
+                                String recurrence) {
+        return controller.createEvent("Event", start, end, userId, Priority.MEDIUM, null, recurrence, null, null);
+    }
+
+    @Test
+    void eventsTouchingEndToStartDoNotConflict() {
+        List<Event> events = List.of(
+                event("a", at(9, 0), at(10, 0)),
+                event("b", at(10, 0), at(11, 0)),
+                event("c", at(10, 30), at(12, 0)),
+                event("d", at(11, 30), at(11, 45)),
+                event("e", at(12, 0), at(13, 0)));
+
+        List<Conflict> conflicts = Availability.conflicts(events);
+
+        assertThat(conflicts).hasSize(1);
+        assertThat(conflicts.get(0).events()).extracting(Event::getId).containsExactly("b", "c", "d");
+        assertThat(conflicts.get(0).start()).isEqualTo(at(10, 0));
+        assertThat(conflicts.get(0).end()).isEqualTo(at(12, 0));
+    }
+
+    @Test
+    void busySpansAreExactWithoutGranularityAndMergedWhenTheyTouch() {
+        List<Event> events = List.of(
+                event("a", at(9, 10), at(9, 20)),
+                event("b", at(9, 20), at(9, 40)),
+                event("c", at(10, 0), at(10, 0)));
+
+        assertThat(Availability.busy(events, at(9, 0), at(12, 0), null))
+                .containsExactly(span(at(9, 10), at(9, 40)));
+    }
+
+    @Test
+    void granularityWidensBusySpansToSlotsCountedFromTheWindowStart() {
+        Duration slot = Duration.ofMinutes(30);
+        List<Event> events = List.of(
+                event("a", at(9, 40), at(9, 50)),   // Rounded down and up
+                event("b", at(11, 5), at(11, 35))); // Already on the slot grid of 9:05
+
+        assertThat(Availability.busy(events, at(9, 5), at(12, 0), slot))
+                .containsExactly(span(at(9, 35), at(10, 5)), span(at(11, 5), at(11, 35)));
+    }
+
+    @Test
+    void busySpansAreClippedToTheWindow() {
+        List<Event> events = List.of(
+                event("before", at(7, 0), at(9, 0)),  // Ends where the window starts
+                event("early", at(8, 0), at(9, 20)),
+                event("late", at(11, 50), at(13, 0)));
+
+        assertThat(Availability.busy(events, at(9, 0), at(12, 0), Duration.ofMinutes(15)))
+                .containsExactly(span(at(9, 0), at(9, 30)), span(at(11, 45), at(12, 0)));
+    }
+
+    @Test
+    void busySpansOfSeveralUsersAreMerged() {
+        List<TimeSpan> first = List.of(span(at(9, 0), at(10, 0)), span(at(13, 0), at(14, 0)));
+        List<TimeSpan> second = List.of(span(at(9, 30), at(11, 0)), span(at(11, 0), at(11, 30)));
+        List<TimeSpan> third = List.of(span(at(15, 0), at(16, 0)));
+
+        assertThat(Availability.union(List.of(first, second, third))).containsExactly(
+                span(at(9, 0), at(11, 30)), span(at(13, 0), at(14, 0)), span(at(15, 0), at(16, 0)));
+    }
+
+    @Test
+    void freeTimesIncludeTheGapsAtTheWindowEdges() {
+        List<TimeSpan> busy = List.of(span(at(10, 0), at(11, 0)), span(at(13, 0), at(14, 0)));
+
+        assertThat(Availability.free(busy, at(9, 0), at(17, 0))).containsExactly(
+                span(at(9, 0), at(10, 0)), span(at(11, 0), at(13, 0)), span(at(14, 0), at(17, 0)));
+        assertThat(Availability.free(List.of(span(at(9, 0), at(17, 0))), at(9, 0), at(17, 0))).isEmpty();
+        assertThat(Availability.free(List.of(), at(9, 0), at(17, 0))).containsExactly(span(at(9, 0), at(17, 0)));
+    }
+
+    @Test
+    void occurrencesOfSeriesCountLikeSingleEvents() {
+        EventController controller = controller();
+        // Daily 9:00-10:00 for three days, and a single event overlapping the second occurrence
+        Event series = create(controller, "u1", at(9, 0), at(10, 0), "FREQ=DAILY;COUNT=3");
+        Event single = create(controller, "u1", at(9, 30).plusDays(1), at(11, 0).plusDays(1), null);
+        create(controller, "u2", at(12, 0).plusDays(1), at(13, 0).plusDays(1), null);
+
+        List<Conflict> conflicts = controller.conflicts("u1", DAY, DAY.plusDays(7), null);
+        assertThat(conflicts).hasSize(1);
+        assertThat(conflicts.get(0).events()).extracting(Event::getId).containsExactly(series.getId(), single.getId());
+        assertThat(conflicts.get(0).events().get(0).getRecurrenceId()).isEqualTo(at(9, 0).plusDays(1));
+
+        FreeBusy freeBusy = controller.freeBusy(List.of("u1", "u2"), DAY.plusDays(1), DAY.plusDays(2), null);
+        assertThat(freeBusy.busy()).containsExactly(
+                span(at(9, 0).plusDays(1), at(11, 0).plusDays(1)), span(at(12, 0).plusDays(1), at(13, 0).plusDays(1)));
+        assertThat(freeBusy.free()).containsExactly(
+                span(DAY.plusDays(1), at(9, 0).plusDays(1)),
+                span(at(11, 0).plusDays(1), at(12, 0).plusDays(1)),
+                span(at(13, 0).plusDays(1), DAY.plusDays(2)));
+        assertThat(freeBusy.users()).extracting(UserBusy::userId).containsExactly("u1", "u2");
+    }
+
+    @Test
+    void freeBusyRejectsTooManyUsersAndTooLongRanges() {
+        EventController controller = controller();
+
+        assertThatThrownBy(() -> controller.freeBusy(List.of("u1", "u2", "u3"), DAY, DAY.plusDays(1), null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("At most 2 users");
+        assertThatThrownBy(() -> controller.freeBusy(List.of("u1"), DAY, DAY.plusDays(8), null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("7 days");
+        assertThatThrownBy(() -> controller.freeBusy(List.of("u1"), DAY, DAY.plusDays(1), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(controller.freeBusy(List.of("u1", "u2"), DAY, DAY.plusDays(7), 30).free())
+                .containsExactly(span(DAY, DAY.plusDays(7)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.calendar.event_service;
+
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventBatchTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2026, 3, 2, 9, 0, 0, 0, ZoneOffset.UTC);
+
+    // Controller on in-memory storage with batches of at most 3 events
+    private final EventController controller = new EventController(
+            new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true),
+            // Never called: no category is resolved
+            new CategoryClient(WebClient.builder(), "http://localhost:8084", 2000),
+            new EventChangePublisher(new SimpleMeterRegistry(), 16),
+            new ObjectMapper(), 50, 500, 3, 366, 50, 2);
+
+    // Coerced GraphQL input of one event, lasting one hour from 'start' (or ending before it if 'valid' is false)
+    private static Map<String, Object> input(String title, String userId, OffsetDateTime start, boolean valid) {
+        Map<String, Object> input = new HashMap<>();
+        input.put("title", title);
+        input.put("userId", userId);
+        input.put("start", start);
+        input.put("end", valid ? start.plusHours(1) : start.minusHours(1));
+        input.put("priority", "MEDIUM");
+        return input;
+    }
+
+    @Test
+    void createEventsWithAnInvalidInputCreatesNothing() {
+        List<EventBatchResult> results = controller.createEvents(List.of(
+                input("A", "u1", START, true),
+                input("B", "u1", START.plusDays(1), false),
+                input("C", "u1", START.plusDays(2), true)), null);
+
+        assertThat(results).extracting(EventBatchResult::event).containsOnlyNulls();
+        assertThat(results).extracting(EventBatchResult::error)
+                .containsExactly(null, "Start time cannot be after the end time.", null);
+        assertThat(controller.eventsByUser("u1", null)).isEmpty();
+    }
+
+    @Test
+    void createEventsStoresAllValidInputs() {
+        List<EventBatchResult> results = controller.createEvents(List.of(
+                input("A", "u1", START, true),
+                input("B", "u1", START.plusDays(1), true)), null);
+
+        assertThat(results).extracting(result -> result.event().getTitle()).containsExactly("A", "B");
+        assertThat(controller.eventsByUser("u1", null)).hasSize(2);
+    }
+
+    @Test
+    void batchesLargerThanTheMaximumAreRejected() {
+        List<Map<String, Object>> four = List.of(input("A", "u1", START, true), input("B", "u1", START, true),
+                input("C", "u1", START, true), input("D", "u1", START, true));
+
+        assertThatThrownBy(() -> controller.createEvents(four, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at most 3");
+        assertThatThrownBy(() -> controller.deleteEvents(List.of("a", "b", "c", "d"), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(controller.eventsByUser("u1", null)).isEmpty();
+    }
+
+    @Test
+    void deleteEventsReportsUnknownIdsAndFailsWholeForOtherUsers() {
+        String own = controller.createEvents(List.of(input("A", "u1", START, true)), null).get(0).event().getId();
+        String other = controller.createEvents(List.of(input("B", "u2", START, true)), null).get(0).event().getId();
+
+        assertThatThrownBy(() -> controller.deleteEvents(List.of(own, other), "u1"))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThat(controller.eventsByUser("u1", null)).hasSize(1);
+
+        assertThat(controller.deleteEvents(List.of(own, "unknown"), "u1")).containsExactly(true, false);
+        assertThat(controller.eventsByUser("u1", null)).isEmpty();
+        assertThat(controller.eventsByUser("u2", null)).hasSize(1);
+    }
+}
@@ -0,0 +1,110 @@
+package com.calendar.event_service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventChangePublisherTest {
+
+    private static final OffsetDateTime DAY = OffsetDateTime.of(2026, 3, 2, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private static OffsetDateTime at(int hour) {
+        return DAY.withHour(hour);
+    }
+
+    private static Event event(String userId, OffsetDateTime start, OffsetDateTime end) {
+        return Event.builder().id(userId + "-" + start).title("Event").userId(userId).start(start).end(end).build();
+    }
+
+    @Test
+    void changesTouchTheWindowTheEventOverlaps() {
+        EventChange change = EventChange.created(event("u1", at(10), at(11)));
+
+        assertThat(change.touches(at(9), at(12))).isTrue();
+        assertThat(change.touches(at(10), at(10))).isTrue();   // Bounds are inclusive
+        assertThat(change.touches(at(11), at(12))).isTrue();
+        assertThat(change.touches(at(12), at(13))).isFalse();
+        assertThat(change.touches(at(7), at(9))).isFalse();
+        assertThat(change.touches(null, at(9))).isFalse();
+        assertThat(change.touches(at(10), null)).isTrue();
+        assertThat(change.touches(null, null)).isTrue();
+    }
+
+    @Test
+    void updatesAlsoTouchTheWindowTheEventWasMovedOutOf() {
+        Event moved = event("u1", at(14), at(15));
+
+        EventChange update = EventChange.updated(moved, at(9), at(10));
+
+        assertThat(update.touches(at(8), at(11))).isTrue();
+        assertThat(update.touches(at(13), at(16))).isTrue();
+        assertThat(update.touches(at(11), at(13))).isFalse();
+        assertThat(EventChange.deleted(moved).touches(at(8), at(11))).isFalse();
+    }
+
+    @Test
+    void seriesTouchTheWindowsOfAllTheirOccurrences() {
+        Event daily = event("u1", at(9), at(10)).toBuilder()
+                .recurrence("FREQ=DAILY;COUNT=5")
+                .recurrenceEnd(at(10).plusDays(4))
+                .build();
+        Event endless = daily.toBuilder().recurrence("FREQ=DAILY").recurrenceEnd(null).build();
+
+        assertThat(EventChange.created(daily).touches(at(12).plusDays(3), at(13).plusDays(3))).isTrue();
+        assertThat(EventChange.created(daily).touches(DAY.plusDays(6), DAY.plusDays(7))).isFalse();
+        assertThat(EventChange.created(endless).touches(DAY.plusYears(5), DAY.plusYears(5).plusDays(1))).isTrue();
+    }
+
+    @Test
+    void subscribersOnlyReceiveChangesOfTheirUserAndWindow() {
+        EventChangePublisher publisher = new EventChangePublisher(new SimpleMeterRegistry(), 16);
+        EventChange own = EventChange.created(event("u1", at(10), at(11)));
+        EventChange outside = EventChange.created(event("u1", at(20), at(21)));
+        EventChange other = EventChange.created(event("u2", at(10), at(11)));
+
+        StepVerifier.create(publisher.changes("u1", at(8), at(12)).take(1))
+                .then(() -> {
+                    publisher.publish(other);
+                    publisher.publish(outside);
+                    publisher.publish(own);
+                })
+                .expectNext(own)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void slowSubscriberOverflowsWithoutHoldingUpTheOthers() {
+        EventChangePublisher publisher = new EventChangePublisher(new SimpleMeterRegistry(), 2);
+        List<EventChange> received = new CopyOnWriteArrayList<>();
+        Disposable fast = publisher.changes(null, null, null).subscribe(received::add);
+        try {
+            // Requests nothing, so the third change does not fit into its buffer of 2
+            StepVerifier.create(publisher.changes(null, null, null), 0)
+                    .then(() -> {
+                        for (int hour = 9; hour < 12; hour++) {
+                            publisher.publish(EventChange.created(event("u1", at(hour), at(hour + 1))));
+                        }
+                    })
+                    .thenRequest(Long.MAX_VALUE)
+                    .thenConsumeWhile(change -> true)
+                    .expectErrorMatches(Exceptions::isOverflow)
+                    .verify(Duration.ofSeconds(5));
+
+            publisher.publish(EventChange.created(event("u2", at(12), at(13))));
+            assertThat(received).hasSize(4);
+        } finally {
+            fast.dispose();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.calendar.event_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventTimeIndexTest {
+
+    private static final OffsetDateTime BASE = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final Comparator<Event> ORDER = Comparator
+            .comparing((Event event) -> event.getStart().toInstant())
+            .thenComparing(Event::getId);
+
+    private final EventTimeIndex index = new EventTimeIndex();
+
+    private static Event event(String id, OffsetDateTime start, OffsetDateTime end) {
+        return Event.builder().id(id).title(id).start(start).end(end).userId("u").build();
+    }
+
+    @Test
+    void findsOverlappingAndContainedEventsInStartOrder() {
+        index.add(event("long", BASE, BASE.plusDays(10)));
+        index.add(event("inside", BASE.plusDays(2), BASE.plusDays(3)));
+        index.add(event("touching", BASE.plusDays(5), BASE.plusDays(6)));
+        index.add(event("before", BASE.minusDays(3), BASE.minusDays(1)));
+        // Same instant in another offset
+        index.add(event("offset", BASE.plusDays(2).withOffsetSameInstant(ZoneOffset.ofHours(2)), BASE.plusDays(4)));
+
+        OffsetDateTime from = BASE.plusDays(1);
+        OffsetDateTime to = BASE.plusDays(5);
+        assertThat(index.overlapping(from, to)).extracting(Event::getId)
+                .containsExactly("long", "inside", "offset", "touching");
+        assertThat(index.contained(from, to)).extracting(Event::getId)
+                .containsExactly("inside", "offset");
+    }
+
+    @Test
+    void removesOnlyTheEntryWithMatchingStart() {
+        Event event = event("a", BASE, BASE.plusHours(1));
+        index.add(event);
+
+        assertThat(index.remove("a", BASE.plusHours(1))).isFalse();
+        assertThat(index.remove("b", BASE)).isFalse();
+        assertThat(index.remove("a", BASE)).isTrue();
+        assertThat(index.size()).isZero();
+        assertThat(index.overlapping(BASE.minusDays(1), BASE.plusDays(1))).isEmpty();
+    }
+
+    @Test
+    void matchesLinearScanForRandomEvents() {
+        Random random = new Random(42);
+        List<Event> stored = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            OffsetDateTime start = BASE.plusMinutes(random.nextInt(60 * 24 * 365));
+            // Mostly short events, some spanning weeks, so maxEnd pruning is exercised
+            long minutes = random.nextInt(10) == 0 ? random.nextInt(60 * 24 * 30) : random.nextInt(240);
+            Event event = event("e" + i, start, start.plusMinutes(minutes));
+            index.add(event);
+            stored.add(event);
+        }
+        for (int i = 0; i < 500; i++) {
+            Event removed = stored.remove(random.nextInt(stored.size()));
+            assertThat(index.remove(removed.getId(), removed.getStart())).isTrue();
+        }
+        assertThat(index.size()).isEqualTo(stored.size());
+
+        for (int i = 0; i < 100; i++) {
+            OffsetDateTime from = BASE.plusMinutes(random.nextInt(60 * 24 * 365));
+            OffsetDateTime to = from.plusMinutes(random.nextInt(60 * 24 * 14));
+
+            List<Event> overlapping = stored.stream()
+                    .filter(event -> !event.getEnd().isBefore(from) && !event.getStart().isAfter(to))
+                    .sorted(ORDER).toList();
+            List<Event> contained = stored.stream()
+                    .filter(event -> !event.getStart().isBefore(from) && !event.getEnd().isAfter(to))
+                    .sorted(ORDER).toList();
+            assertThat(index.overlapping(from, to)).isEqualTo(overlapping);
+            assertThat(index.contained(from, to)).isEqualTo(contained);
+        }
+    }
+
+    @Test
+    void cursorPagesCoverTheResultOnce() {
+        for (int i = 0; i < 100; i++) {
+            // Pairs of events with the same start, ordered by ID
+            index.add(event(String.format("e%03d", i), BASE.plusHours(i / 2), BASE.plusHours(i / 2 + 1)));
+        }
+        OffsetDateTime from = BASE.plusHours(10);
+        OffsetDateTime to = BASE.plusHours(40);
+
+        List<Event> pages = new ArrayList<>();
+        EventCursor cursor = null;
+        List<Event> page;
+        do {
+            page = index.find(from, to, false, cursor, 7);
+            pages.addAll(page);
+            cursor = page.isEmpty() ? null : EventCursor.of(page.get(page.size() - 1));
+        } while (page.size() == 7);
+
+        assertThat(pages).isEqualTo(index.overlapping(from, to));
+    }
+}
@@ -0,0 +1,76 @@
+package com.calendar.event_service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.hamcrest.Matchers.empty;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Automatic persisted queries over HTTP, including the request body rewrite of PersistedQueryHttpHandler
+@SpringBootTest(properties = "storage.type=memory")
+@AutoConfigureMockMvc
+class PersistedQueryTest {
+
+    private static final String QUERY = "{ eventsByUser(userId: \"persisted\") { id } }";
+
+    @Autowired
+    private MockMvc mvc;
+
+    // Posts a GraphQL request with the given hash and, if not null, the query text
+    private ResultActions graphQl(String hash, String query) throws Exception {
+        String extensions = "\"extensions\":{\"persistedQuery\":{\"version\":1,\"sha256Hash\":\"" + hash + "\"}}";
+        String body = query == null ? "{" + extensions + "}"
+                : "{\"query\":\"" + query.replace("\"", "\\\"") + "\"," + extensions + "}";
+        ResultActions response = mvc.perform(post("/graphql").contentType(MediaType.APPLICATION_JSON).content(body));
+        // Executions that do not complete right away are answered asynchronously
+        MvcResult result = response.andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            response = mvc.perform(asyncDispatch(result));
+        }
+        return response.andExpect(status().isOk());
+    }
+
+    private static String sha256(String text) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void unknownHashIsRegisteredWithItsQueryText() throws Exception {
+        String hash = sha256(QUERY);
+
+        graphQl(hash, null)
+                .andExpect(jsonPath("$.errors[0].message").value("PersistedQueryNotFound"))
+                .andExpect(jsonPath("$.data").doesNotExist());
+        graphQl(hash, QUERY)
+                .andExpect(jsonPath("$.errors").doesNotExist())
+                .andExpect(jsonPath("$.data.eventsByUser", empty()));
+        graphQl(hash, null)
+                .andExpect(jsonPath("$.errors").doesNotExist())
+                .andExpect(jsonPath("$.data.eventsByUser", empty()));
+    }
+
+    @Test
+    void hashNotMatchingTheQueryTextIsRejected() throws Exception {
+        String hash = sha256("{ other }");
+
+        graphQl(hash, QUERY)
+                .andExpect(jsonPath("$.errors[0].message").value("PersistedQueryIdInvalid"))
+                .andExpect(jsonPath("$.data").doesNotExist());
+        graphQl(hash, null)
+                .andExpect(jsonPath("$.errors[0].message").value("PersistedQueryNotFound"));
+    }
+}
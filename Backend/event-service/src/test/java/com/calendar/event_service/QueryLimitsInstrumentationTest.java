@@ -0,0 +1,91 @@
+package com.calendar.event_service;
+
+import graphql.ExecutionResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.graphql.ExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"storage.type=memory", "graphql.limits.max-depth=4", "graphql.limits.max-complexity=1000"})
+class QueryLimitsInstrumentationTest {
+
+    @Autowired
+    private ExecutionGraphQlService graphQlService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Executes a query with the timing extension, which reports the computed cost
+    private ExecutionResult execute(String query) {
+        return graphQlService.execute(new DefaultExecutionGraphQlRequest(query, null, Map.of(),
+                Map.of("timing", true), UUID.randomUUID().toString(), Locale.ROOT)).block().getExecutionResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int complexity(ExecutionResult result) {
+        assertThat(result.getErrors()).isEmpty();
+        return (Integer) ((Map<String, Object>) result.getExtensions().get("timing")).get("complexity");
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.counter("graphql.query.rejected", "reason", reason).count();
+    }
+
+    @Test
+    void firstOfAConnectionOnlyMultipliesItsEdges() {
+        // edges: 1 + 10 * (node: 1 + id + title), pageInfo: 1 + hasNextPage, plus the connection itself
+        ExecutionResult result = execute("""
+                { eventsByUserConnection(userId: "u1", first: 10) {
+                    edges { node { id title } }
+                    pageInfo { hasNextPage } } }""");
+
+        assertThat(complexity(result)).isEqualTo(1 + (1 + 10 * 3) + 2);
+    }
+
+    @Test
+    void listSizeAndUnpaginatedListsUseTheirAssumedSize() {
+        // conflicts: unpaginated, 100 times (start + events: 1 + 3 * id)
+        ExecutionResult conflicts = execute("""
+                { conflicts(userId: "u1", start: "2026-01-01T00:00:00Z", end: "2026-01-02T00:00:00Z") {
+                    start events { id } } }""");
+        // searchEvents: a list with 'first', 5 times (id)
+        ExecutionResult search = execute("{ searchEvents(userId: \"u1\", query: \"x\", first: 5) { id } }");
+
+        assertThat(complexity(conflicts)).isEqualTo(1 + 100 * (1 + (1 + 3)));
+        assertThat(complexity(search)).isEqualTo(1 + 5);
+    }
+
+    @Test
+    void queriesDeeperThanTheLimitAreRejected() {
+        double before = rejected("depth");
+
+        ExecutionResult result = execute("""
+                { eventsByUserConnection(userId: "u1") { edges { node { category { name } } } } }""");
+
+        assertThat(result.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getMessage()).contains("depth 5 exceeds the maximum of 4"));
+        assertThat(result.isDataPresent()).isFalse();
+        assertThat(rejected("depth")).isEqualTo(before + 1);
+    }
+
+    @Test
+    void queriesMoreComplexThanTheLimitAreRejected() {
+        double before = rejected("complexity");
+
+        // 1 + (1 + 500 * (1 + 4))
+        ExecutionResult result = execute("""
+                { eventsByUserConnection(userId: "u1", first: 500) { edges { node { id title start end } } } }""");
+
+        assertThat(result.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getMessage()).contains("complexity 2502 exceeds the maximum of 1000"));
+        assertThat(rejected("complexity")).isEqualTo(before + 1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.calendar.event_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecurrenceTest {
+
+    private static OffsetDateTime at(int year, int month, int day) {
+        return OffsetDateTime.of(year, month, day, 9, 0, 0, 0, ZoneOffset.ofHours(1));
+    }
+
+    private static List<OffsetDateTime> starts(String rule, OffsetDateTime first, OffsetDateTime from, int limit) {
+        Iterator<OffsetDateTime> starts = Recurrence.parse(rule).starts(first, from, null);
+        List<OffsetDateTime> result = new ArrayList<>();
+        while (result.size() < limit && starts.hasNext()) {
+            result.add(starts.next());
+        }
+        return result;
+    }
+
+    @Test
+    void weeklyByDayKeepsAFirstStartOutsideTheRule() {
+        // 2026-01-06 is a Tuesday
+        OffsetDateTime first = at(2026, 1, 6);
+        Recurrence rule = Recurrence.parse("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=4");
+
+        assertThat(starts("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=4", first, first, 10))
+                .containsExactly(at(2026, 1, 6), at(2026, 1, 7), at(2026, 1, 12), at(2026, 1, 14));
+        assertThat(rule.lastEnd(first, first.plusHours(1))).isEqualTo(at(2026, 1, 14).plusHours(1));
+    }
+
+    @Test
+    void weeklyByDayWithInterval() {
+        // 2026-01-05 is a Monday
+        assertThat(starts("RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,FR", at(2026, 1, 5), at(2026, 1, 5), 5))
+                .containsExactly(at(2026, 1, 5), at(2026, 1, 9), at(2026, 1, 19), at(2026, 1, 23), at(2026, 2, 2));
+    }
+
+    @Test
+    void untilIncludesAnOccurrenceStartingAtIt() {
+        OffsetDateTime first = at(2026, 3, 1);
+        String rule = "FREQ=DAILY;UNTIL=" + at(2026, 3, 4);
+
+        assertThat(starts(rule, first, first, 10))
+                .containsExactly(at(2026, 3, 1), at(2026, 3, 2), at(2026, 3, 3), at(2026, 3, 4));
+        assertThat(starts("FREQ=DAILY;UNTIL=20260302", first, first, 10))
+                .containsExactly(at(2026, 3, 1), at(2026, 3, 2));
+    }
+
+    @Test
+    void monthlySkipsMonthsWithoutTheDay() {
+        OffsetDateTime first = at(2026, 1, 31);
+        Recurrence rule = Recurrence.parse("FREQ=MONTHLY;COUNT=5");
+
+        assertThat(starts("FREQ=MONTHLY;COUNT=5", first, first, 10))
+                .containsExactly(at(2026, 1, 31), at(2026, 3, 31), at(2026, 5, 31), at(2026, 7, 31), at(2026, 8, 31));
+        assertThat(rule.lastEnd(first, first.plusHours(2))).isEqualTo(at(2026, 8, 31).plusHours(2));
+        // The 29th of February only in leap years
+        assertThat(starts("FREQ=MONTHLY;INTERVAL=12", at(2024, 2, 29), at(2024, 3, 1), 1))
+                .containsExactly(at(2028, 2, 29));
+    }
+
+    @Test
+    void expansionFromALaterWindowMatchesTheFullSeries() {
+        OffsetDateTime first = at(2026, 1, 6);
+        for (String rule : List.of("FREQ=DAILY;INTERVAL=3", "FREQ=WEEKLY;BYDAY=MO,WE,SU",
+                "FREQ=WEEKLY;INTERVAL=2", "FREQ=MONTHLY")) {
+            List<OffsetDateTime> all = starts(rule, first, first, 200);
+            OffsetDateTime from = at(2026, 9, 15);
+            List<OffsetDateTime> expected = all.stream().filter(start -> !start.isBefore(from)).limit(5).toList();
+
+            assertThat(starts(rule, first, from, 5)).as(rule).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void occursAtOnlyForOccurrenceStarts() {
+        OffsetDateTime first = at(2026, 1, 6);
+        Recurrence rule = Recurrence.parse("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=4");
+        OffsetDateTime last = at(2026, 1, 14);
+
+        assertThat(rule.occursAt(first, first, last)).isTrue();
+        assertThat(rule.occursAt(first, at(2026, 1, 12).withOffsetSameInstant(ZoneOffset.UTC), last)).isTrue();
+        assertThat(rule.occursAt(first, at(2026, 1, 13), last)).isFalse();
+        assertThat(rule.occursAt(first, at(2026, 1, 12).plusMinutes(1), last)).isFalse();
+        assertThat(rule.occursAt(first, at(2026, 1, 19), last)).isFalse();
+    }
+
+    @Test
+    void rejectsUnsupportedRules() {
+        assertThatThrownBy(() -> Recurrence.parse("INTERVAL=2")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Recurrence.parse("FREQ=YEARLY")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Recurrence.parse("FREQ=DAILY;COUNT=3;UNTIL=20260101"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Recurrence.parse("FREQ=MONTHLY;BYDAY=MO"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Recurrence.parse("FREQ=DAILY;COUNT=0")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
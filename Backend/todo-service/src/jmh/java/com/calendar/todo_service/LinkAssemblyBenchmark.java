@@ -0,0 +1,88 @@
+package com.calendar.todo_service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Compares building the links of a todo list with linkTo(methodOn(...)) per link,
+ * as the controller did before, against the TodoModelAssembler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkAssemblyBenchmark {
+
+    // Number of todos on the rendered page
+    @Param({"1", "50", "500"})
+    int pageSize;
+
+    private final TodoModelAssembler assembler = new TodoModelAssembler();
+    private List<Todo> page;
+
+    @Setup
+    public void setUp() {
+        // Links are resolved against the current request, as inside the controller
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/todos");
+        request.setServerName("localhost");
+        request.setServerPort(8083);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            page.add(Todo.builder()
+                .id(UUID.randomUUID().toString())
+                .userId("user-1")
+                .title("Todo " + i)
+                .description("")
+                .version(1)
+                .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public CollectionModel<EntityModel<Todo>> methodOnPerLink() {
+        List<EntityModel<Todo>> models = new ArrayList<>(page.size());
+        for (Todo todo : page) {
+            models.add(EntityModel.of(todo,
+                linkTo(methodOn(TodoController.class).getTodo(todo.getId(), null)).withSelfRel(),
+                linkTo(methodOn(TodoController.class).toggleTodo(todo.getId(), null, null)).withRel("toggle")));
+        }
+        return CollectionModel.of(models);
+    }
+
+    @Benchmark
+    public CollectionModel<EntityModel<Todo>> cachedBaseUri() {
+        return assembler.toCollectionModel(page);
+    }
+}
@@ -0,0 +1,91 @@
+package com.calendar.todo_service;
+
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/todos?userId= on in-memory storage, including the HATEOAS links.
+ * The todos are spread evenly over 'users' users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TodoQueryBenchmark {
+
+    private static final int USERS = 1000;
+
+    // Number of stored todos
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private TodoController controller;
+
+    @Setup
+    public void setUp() {
+        RepositoryFactory repositories = new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true);
+        controller = new TodoController(repositories, new TodoModelAssembler(), new ObjectMapper(), 50, 500, 100000, 2);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            controller.createTodo(Todo.builder()
+                .userId("user-" + random.nextInt(USERS))
+                .title("Todo " + i)
+                .build(), null);
+        }
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public CollectionModel<EntityModel<Todo>> getAllTodos(RequestContext context) {
+        return controller.getAllTodos("user-" + ThreadLocalRandom.current().nextInt(USERS), null, null, null);
+    }
+
+    /**
+     * Current request of a benchmark thread, the links are resolved against it.
+     */
+    @State(Scope.Thread)
+    public static class RequestContext {
+
+        @Setup
+        public void setUp() {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        }
+
+        @TearDown
+        public void tearDown() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/todos");
+        request.setServerName("localhost");
+        request.setServerPort(8083);
+        return request;
+    }
+}
@@ -0,0 +1,89 @@
+package com.calendar.todo_service;
+
+import com.calendar.common.search.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the full-text index behind GET /api/todos/search for one user with 'size'
+ * todos. Titles and descriptions are drawn from a vocabulary of 5,000 words, so a word
+ * occurs in about 0.1 % of the todos and a two-letter prefix in several percent of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TodoSearchBenchmark {
+
+    private static final int VOCABULARY = 5000;
+
+    // Number of todos of the user
+    @Param({"1000", "100000"})
+    int size;
+
+    private SearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new SearchIndex(2);
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            index.add("todo-" + i, words(random, 4), words(random, 12));
+        }
+    }
+
+    // A single word, found in about 0.1 % of the todos
+    @Benchmark
+    public List<String> word() {
+        return index.search(word(4242), 50);
+    }
+
+    // Two words that both have to occur
+    @Benchmark
+    public List<String> twoWords() {
+        return index.search(word(4242) + " " + word(3777), 50);
+    }
+
+    // A two-letter prefix as typed at the start of a search, matching many todos
+    @Benchmark
+    public List<String> prefix() {
+        return index.search("ka", 50);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(word(random.nextInt(VOCABULARY))).append(' ');
+        }
+        return text.toString();
+    }
+
+    // Pronounceable, distinct word for every number, e.g. 42 -> "mo", 4242 -> "mosada"
+    private static String word(int number) {
+        String consonants = "bdfgklmnprst";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append(consonants.charAt(number % consonants.length()));
+            number /= consonants.length();
+            word.append(vowels.charAt(number % vowels.length()));
+            number /= vowels.length();
+        } while (number > 0);
+        return word.toString();
+    }
+}
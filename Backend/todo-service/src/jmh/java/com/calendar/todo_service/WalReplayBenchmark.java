@@ -0,0 +1,136 @@
+package com.calendar.todo_service;
+
+import com.calendar.common.storage.EntityRepository;
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup cost of the write-ahead logged storage: the time to restore a store of
+ * 'size' todos, either by replaying the log segments of a crashed process ("log")
+ * or by loading the snapshot written on a regular shutdown ("snapshot").
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class WalReplayBenchmark {
+
+    private static final String STORE = "todos";
+
+    // Number of stored todos
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    // State found on disk at startup
+    @Param({"log", "snapshot"})
+    String source;
+
+    private Path root;
+    private Path template;
+    private RepositoryFactory factory;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        root = Files.createTempDirectory("wal-replay-benchmark");
+        Path logTemplate = root.resolve("log").resolve(STORE);
+        Files.createDirectories(logTemplate);
+
+        RepositoryFactory writer = factory(root.resolve("writer"), false);
+        EntityRepository<String, Todo> todos = writer.create(STORE, String.class, Todo.class);
+        for (int i = 0; i < size; i++) {
+            Todo todo = Todo.builder()
+                .id(UUID.randomUUID().toString())
+                .userId("user-" + (i % 1000))
+                .title("Todo " + i)
+                .description("")
+                .version(1)
+                .build();
+            todos.put(todo.getId(), todo);
+        }
+        // Copying the mapped segments while the store is open captures the state a crash leaves behind
+        try (Stream<Path> files = Files.list(root.resolve("writer").resolve(STORE))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith("wal-")) {
+                    Files.copy(file, logTemplate.resolve(file.getFileName()));
+                }
+            }
+        }
+        // A regular shutdown compacts the store into a snapshot
+        writer.destroy();
+
+        template = "log".equals(source) ? root.resolve("log") : root.resolve("writer");
+    }
+
+    @Setup(Level.Invocation)
+    public void copyTemplate() throws IOException {
+        Path work = root.resolve("work");
+        delete(work);
+        Path store = Files.createDirectories(work.resolve(STORE));
+        try (Stream<Path> files = Files.list(template.resolve(STORE))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().equals("LOCK")) {
+                    Files.copy(file, store.resolve(file.getFileName()));
+                }
+            }
+        }
+        factory = factory(work, true);
+    }
+
+    @Benchmark
+    public int restore() {
+        return factory.create(STORE, String.class, Todo.class).size();
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        factory.destroy();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        delete(root);
+    }
+
+    private static RepositoryFactory factory(Path directory, boolean syncWrites) {
+        return new RepositoryFactory(new ObjectMapper(), "wal", directory.toString(), 64, 2, 3600, syncWrites);
+    }
+
+    private static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
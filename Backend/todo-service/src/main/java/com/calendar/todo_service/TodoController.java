@@ -1,72 +1,198 @@
 package com.calendar.todo_service;
 
-import lombok.Data;
+import com.calendar.common.search.SearchIndex;
+import com.calendar.common.storage.EntityRepository;
+import com.calendar.common.storage.RepositoryFactory;
+import com.calendar.common.web.ETags;
+import com.calendar.common.web.KeysetPage;
+import com.calendar.common.web.NdjsonStream;
+import com.calendar.common.web.RequestingUser;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.extern.jackson.Jacksonized;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Collections;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
-
 /**
  * REST controller for Todo management.
  * Supports CRUD operations and HATEOAS links.
+ *
+ * Single todos carry their version as ETag; toggle and delete accept If-Match and
+ * answer 412 Precondition Failed if the todo has changed since (see ETags).
+ *
+ * Requests the gateway made for a signed-in user (X-User-Id, see RequestingUser) only
+ * reach that user's todos; others are answered with 403 Forbidden.
  */
 @RestController
 @RequestMapping("/api/todos")
 public class TodoController {
 
-    // In-memory storage for todos
-    private final Map<String, Todo> todos = new ConcurrentHashMap<>();
+    // Storage for todos (in-memory or write-ahead logged, see RepositoryFactory)
+    private final EntityRepository<String, Todo> todos;
+
+    // Secondary index: userId -> IDs of that user's todos
+    private final Map<String, NavigableSet<String>> todoIdsByUser = new ConcurrentHashMap<>();
+    // Full-text index per user over title and description
+    private final Map<String, SearchIndex> searchIndexByUser = new ConcurrentHashMap<>();
+
+    // Page size limits of the list endpoint
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    // Largest number of items in one batch request
+    private final int maxBatchSize;
+    // Shortest search term that also matches longer terms starting with it
+    private final int minPrefixLength;
+
+    // Builds the HATEOAS representations
+    private final TodoModelAssembler assembler;
+    // Serializes the todos of an export
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Opens the todo storage and rebuilds the secondary indexes from the restored todos.
+     */
+    public TodoController(RepositoryFactory repositories, TodoModelAssembler assembler, ObjectMapper objectMapper,
+                          @Value("${pagination.default-size:50}") int defaultPageSize,
+                          @Value("${pagination.max-size:500}") int maxPageSize,
+                          @Value("${batch.max-size:100000}") int maxBatchSize,
+                          @Value("${search.min-prefix-length:2}") int minPrefixLength) {
+        this.assembler = assembler;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
+        this.minPrefixLength = minPrefixLength;
+        this.todos = repositories.create("todos", String.class, Todo.class);
+        todos.addChangeListener(this::reindex);
+        todos.findAll().forEach(todo -> reindex(todo.getId(), null, todo));
+    }
 
     /**
      * GET /api/todos/{id}
      * Returns a single todo based on the ID.
      *
      * @param id The ID of the requested todo.
-     * @return The todo with HATEOAS links.
+     * @return The todo with HATEOAS links and its version as ETag.
      */
     @GetMapping("/{id}")
-    public EntityModel<Todo> getTodo(@PathVariable String id) {
+    public ResponseEntity<EntityModel<Todo>> getTodo(@PathVariable String id, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
         Todo todo = todos.get(id);
         if (todo == null) {
             throw new TodoNotFoundException(id);
         }
+        RequestingUser.checkAccess(requestingUser, todo.getUserId());
 
         // Return the todo with links to other relevant resources
-        return EntityModel.of(todo,
-            linkTo(methodOn(TodoController.class).getTodo(id)).withSelfRel(),
-            linkTo(methodOn(TodoController.class).getAllTodos(todo.getUserId())).withRel("user-todos"),
-            linkTo(methodOn(TodoController.class).toggleTodo(id)).withRel("toggle")
-        );
+        return ResponseEntity.ok()
+            .eTag(ETags.of(todo.getVersion()))
+            .body(assembler.toModel(todo));
     }
 
     /**
-     * GET /api/todos?userId={userId}
-     * Returns all todos of a user.
+     * GET /api/todos?userId={userId}&cursor={cursor}&size={size}
+     * Returns one page of the todos of a user.
+     * The "next" and "prev" links carry the cursors of the neighbouring pages.
      *
      * @param userId The ID of the user whose todos should be retrieved.
+     * @param cursor Opaque cursor from a "next"/"prev" link, absent for the first page.
+     * @param size   Page size, limited by pagination.max-size.
      * @return A collection of todos with HATEOAS links.
      */
     @GetMapping
-    public CollectionModel<EntityModel<Todo>> getAllTodos(@RequestParam String userId) {
-        List<EntityModel<Todo>> todoEntities = todos.values().stream()
-            .filter(todo -> todo.getUserId().equals(userId)) // Filter by user ID
-            .map(todo -> EntityModel.of(todo,
-                linkTo(methodOn(TodoController.class).getTodo(todo.getId())).withSelfRel(),
-                linkTo(methodOn(TodoController.class).toggleTodo(todo.getId())).withRel("toggle")))
+    public CollectionModel<EntityModel<Todo>> getAllTodos(
+            @RequestParam String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        int pageSize = KeysetPage.pageSize(size, defaultPageSize, maxPageSize);
+        KeysetPage<String> page = KeysetPage.of(
+            todoIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet()), cursor, pageSize, Function.identity());
+
+        List<Todo> pageTodos = page.getKeys().stream()
+            .map(todos::get) // Only the todos of the page are looked up
+            .filter(Objects::nonNull)
             .collect(Collectors.toList());
 
-        // Return the user's todos
-        return CollectionModel.of(todoEntities,
-            linkTo(methodOn(TodoController.class).getAllTodos(userId)).withSelfRel());
+        // Return the page with links to itself and its neighbours
+        return assembler.toPageModel(pageTodos, page, userId, cursor, size);
+    }
+
+    /**
+     * GET /api/todos/export?userId={userId}
+     * Streams all todos, or those of one user, as newline-delimited JSON without links.
+     * The todos are written while the store is iterated, so exports of any size need
+     * constant memory and the first todos arrive immediately.
+     *
+     * @param userId The ID of the user whose todos are exported, absent for all todos
+     *               (only for requests that were not made for a signed-in user).
+     * @return One todo per line (application/x-ndjson).
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportTodos(@RequestParam(required = false) String userId,
+                                                             @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        Iterable<Todo> export = userId == null ? todos.findAll() : () ->
+            todoIdsByUser.getOrDefault(userId, Collections.emptyNavigableSet()).stream()
+                .map(todos::get)
+                .filter(Objects::nonNull)
+                .iterator();
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(new NdjsonStream(objectMapper, export));
+    }
+
+    /**
+     * GET /api/todos/search?userId={userId}&q={query}&size={size}
+     * Full-text search over title and description of the todos of a user.
+     * Every word of the query has to occur; words of at least search.min-prefix-length
+     * characters also match longer words starting with them. Case and diacritics are ignored.
+     *
+     * @param userId The ID of the user whose todos are searched.
+     * @param q      The search words.
+     * @param size   Largest number of results, limited by pagination.max-size.
+     * @return The matching todos, best match first (matches in the title rank higher).
+     */
+    @GetMapping("/search")
+    public CollectionModel<EntityModel<Todo>> searchTodos(
+            @RequestParam String userId,
+            @RequestParam String q,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, userId);
+        if (q.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be blank");
+        }
+        int limit = KeysetPage.pageSize(size, defaultPageSize, maxPageSize);
+        SearchIndex index = searchIndexByUser.get(userId);
+        List<Todo> hits = index == null ? List.of() : index.search(q, limit).stream()
+            .map(todos::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+
+        return assembler.toSearchModel(hits, userId, q, size);
     }
 
     /**
@@ -77,76 +203,286 @@ public class TodoController {
      * @return The created todo with HATEOAS links.
      */
     @PostMapping
-    public ResponseEntity<?> createTodo(@RequestBody Todo todo) {
-        todo.setId(UUID.randomUUID().toString());
-        todo.setCompleted(false); // Default status: not completed
-
+    public ResponseEntity<?> createTodo(@RequestBody Todo todo, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
         // Validate input data
-        if (todo.getTitle() == null || todo.getTitle().trim().isEmpty()) {
-            return ResponseEntity.badRequest().body("Title is required");
-        }
-        if (todo.getUserId() == null || todo.getUserId().trim().isEmpty()) {
-            return ResponseEntity.badRequest().body("UserId is required");
+        String error = validate(todo);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
         }
-        if (todo.getDescription() == null) {
-            todo.setDescription(""); // Default empty description
-        }
-
-        todos.put(todo.getId(), todo);
+        RequestingUser.checkAccess(requestingUser, todo.getUserId());
+        Todo created = store(todo);
 
         // Return the created todo
-        EntityModel<Todo> resource = EntityModel.of(todo,
-            linkTo(methodOn(TodoController.class).getTodo(todo.getId())).withSelfRel(),
-            linkTo(methodOn(TodoController.class).getAllTodos(todo.getUserId())).withRel("user-todos"),
-            linkTo(methodOn(TodoController.class).toggleTodo(todo.getId())).withRel("toggle")
-        );
+        EntityModel<Todo> resource = assembler.toModel(created);
 
         return ResponseEntity
-            .created(linkTo(methodOn(TodoController.class).getTodo(todo.getId())).toUri())
+            .created(resource.getRequiredLink(IanaLinkRelations.SELF).toUri())
+            .eTag(ETags.of(created.getVersion()))
             .body(resource);
     }
 
+    /**
+     * POST /api/todos/batch
+     * Creates several todos as one unit: if any of them is invalid or cannot be stored, none is created.
+     * The todos are written as one batch, so durable storage waits for the disk only once.
+     *
+     * @param batch The todos to be created.
+     * @return One result per todo in request order: 201 with the new IDs,
+     *         or 400 with the errors of the invalid todos.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchResult>> createTodos(@RequestBody List<Todo> batch, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        checkBatchSize(batch.size());
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        boolean valid = true;
+        for (int i = 0; i < batch.size(); i++) {
+            String error = batch.get(i) != null ? validate(batch.get(i)) : "Todo is required";
+            if (error == null) {
+                RequestingUser.checkAccess(requestingUser, batch.get(i).getUserId());
+            }
+            valid &= error == null;
+            results.add(new BatchResult(i, null, error == null ? BatchResult.Status.NOT_APPLIED : BatchResult.Status.INVALID, error));
+        }
+        if (!valid) {
+            return ResponseEntity.badRequest().body(results);
+        }
+
+        todos.batch(() -> {
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    Todo created = store(batch.get(i));
+                    results.set(i, new BatchResult(i, created.getId(), BatchResult.Status.CREATED, null));
+                }
+            } catch (RuntimeException e) {
+                // A failed write (e.g. the log cannot be written) must not leave part of the batch behind
+                for (BatchResult result : results) {
+                    if (result.id() != null) {
+                        try {
+                            todos.remove(result.id());
+                        } catch (RuntimeException removal) {
+                            e.addSuppressed(removal);
+                        }
+                    }
+                }
+                throw e;
+            }
+            return null;
+        });
+        return ResponseEntity.status(HttpStatus.CREATED).body(results);
+    }
+
+    /**
+     * PATCH /api/todos/batch/toggle
+     * Changes the status of several todos; unknown IDs and todos of other users are reported
+     * instead of failing the batch.
+     *
+     * @param ids The IDs of the todos.
+     * @return One result per ID in request order: TOGGLED, NOT_FOUND or FORBIDDEN.
+     */
+    @PatchMapping("/batch/toggle")
+    public List<BatchResult> toggleTodos(@RequestBody List<String> ids, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        checkBatchSize(ids.size());
+        return todos.batch(() -> {
+            List<BatchResult> results = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                // The owner of a todo never changes, so it can be checked before the toggle
+                Todo existing = id != null ? todos.get(id) : null;
+                if (existing != null && !RequestingUser.mayAccess(requestingUser, existing.getUserId())) {
+                    results.add(new BatchResult(i, id, BatchResult.Status.FORBIDDEN, null));
+                    continue;
+                }
+                Todo todo = existing != null ? toggle(id, null, requestingUser) : null;
+                results.add(new BatchResult(i, id, todo != null ? BatchResult.Status.TOGGLED : BatchResult.Status.NOT_FOUND, null));
+            }
+            return results;
+        });
+    }
+
     /**
      * PATCH /api/todos/{id}/toggle
      * Changes the status (completed/not completed) of a todo.
      *
-     * @param id The ID of the todo.
-     * @return The updated todo with HATEOAS links.
+     * @param id      The ID of the todo.
+     * @param ifMatch ETag of the version the change is based on, absent to change any version.
+     * @return The updated todo with HATEOAS links and its new version as ETag.
      */
     @PatchMapping("/{id}/toggle")
-    public EntityModel<Todo> toggleTodo(@PathVariable String id) {
-        Todo todo = todos.get(id);
+    public ResponseEntity<EntityModel<Todo>> toggleTodo(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        Todo todo = toggle(id, ifMatch, requestingUser);
         if (todo == null) {
             throw new TodoNotFoundException(id);
         }
 
-        // Toggle status
-        todo.setCompleted(!todo.isCompleted());
-        todos.put(id, todo);
-
-        return EntityModel.of(todo,
-            linkTo(methodOn(TodoController.class).getTodo(id)).withSelfRel(),
-            linkTo(methodOn(TodoController.class).getAllTodos(todo.getUserId())).withRel("user-todos"),
-            linkTo(methodOn(TodoController.class).toggleTodo(id)).withRel("toggle")
-        );
+        return ResponseEntity.ok()
+            .eTag(ETags.of(todo.getVersion()))
+            .body(assembler.toModel(todo));
     }
 
     /**
      * DELETE /api/todos/{id}
      * Deletes a todo based on the ID.
      *
-     * @param id The ID of the todo to be deleted.
+     * @param id      The ID of the todo to be deleted.
+     * @param ifMatch ETag of the version the deletion is based on, absent to delete any version.
      * @return An empty response on success.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteTodo(@PathVariable String id) {
-        if (!todos.containsKey(id)) {
+    public ResponseEntity<?> deleteTodo(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        Todo[] removed = new Todo[1];
+        todos.computeIfPresent(id, (key, existing) -> {
+            RequestingUser.checkAccess(requestingUser, existing.getUserId());
+            checkVersion(existing, ifMatch);
+            removed[0] = existing;
+            return null;
+        });
+        if (removed[0] == null) {
             throw new TodoNotFoundException(id);
         }
-        todos.remove(id);
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * @return The reason why a todo cannot be created, or null if it is valid.
+     */
+    private static String validate(Todo todo) {
+        if (todo.getTitle() == null || todo.getTitle().trim().isEmpty()) {
+            return "Title is required";
+        }
+        if (todo.getUserId() == null || todo.getUserId().trim().isEmpty()) {
+            return "UserId is required";
+        }
+        return null;
+    }
+
+    /**
+     * Stores a validated todo as a new, not completed todo in its first version.
+     *
+     * @return The stored todo.
+     */
+    private Todo store(Todo todo) {
+        Todo created = todo.toBuilder()
+            .id(UUID.randomUUID().toString())
+            .completed(false) // Default status: not completed
+            .description(todo.getDescription() != null ? todo.getDescription() : "") // Default empty description
+            .version(1)
+            .build();
+        todos.put(created.getId(), created);
+        return created;
+    }
+
+    /**
+     * Toggles the status of a todo by replacing it with a copy in the next version.
+     * computeIfPresent runs the check and the replacement atomically for this ID and
+     * cannot resurrect a todo deleted in the meantime.
+     *
+     * @param ifMatch        If-Match header the current version has to match, null for none.
+     * @param requestingUser User the request was made for, null for none.
+     * @return The updated todo or null if it does not exist.
+     * @throws VersionConflictException If the todo does not have the expected version.
+     */
+    private Todo toggle(String id, String ifMatch, String requestingUser) {
+        return todos.computeIfPresent(id, (key, existing) -> {
+            RequestingUser.checkAccess(requestingUser, existing.getUserId());
+            checkVersion(existing, ifMatch);
+            return existing.toBuilder()
+                .completed(!existing.isCompleted())
+                .version(existing.getVersion() + 1)
+                .build();
+        });
+    }
+
+    /**
+     * Rejects a change of a todo whose version does not match the If-Match header.
+     * Thrown inside computeIfPresent, it leaves the stored todo unchanged.
+     */
+    private static void checkVersion(Todo todo, String ifMatch) {
+        if (!ETags.matches(ifMatch, todo.getVersion())) {
+            throw new VersionConflictException(todo.getId(), todo.getVersion());
+        }
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "A batch may contain at most " + maxBatchSize + " items");
+        }
+    }
+
+    /**
+     * Keeps the secondary indexes in line with the storage. Called for every stored change
+     * while its key is locked, so the changes of one todo are indexed in order, and a
+     * change that failed to be stored is never indexed.
+     */
+    private void reindex(String id, Todo previous, Todo current) {
+        if (previous != null && (current == null || !previous.getUserId().equals(current.getUserId()))) {
+            unindexUser(previous.getUserId(), id);
+        }
+        if (current != null) {
+            indexUser(current.getUserId(), id);
+        }
+        if (previous != null && current == null) {
+            unindexText(previous);
+        } else if (current != null && (previous == null || !sameText(previous, current))) {
+            indexText(current);
+        }
+    }
+
+    private static boolean sameText(Todo a, Todo b) {
+        return a.getUserId().equals(b.getUserId())
+            && Objects.equals(a.getTitle(), b.getTitle())
+            && Objects.equals(a.getDescription(), b.getDescription());
+    }
+
+    /**
+     * Adds a todo ID to the user's index entry.
+     * compute() keeps this atomic with concurrent removals for the same user.
+     */
+    private void indexUser(String userId, String id) {
+        todoIdsByUser.compute(userId, (key, ids) -> {
+            NavigableSet<String> result = ids != null ? ids : new ConcurrentSkipListSet<>();
+            result.add(id);
+            return result;
+        });
+    }
+
+    /**
+     * Removes a todo ID from the user's index entry and drops the entry once it is empty.
+     */
+    private void unindexUser(String userId, String id) {
+        todoIdsByUser.computeIfPresent(userId, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Adds a todo to the full-text index of its user; compute() keeps this atomic with removals.
+     */
+    private void indexText(Todo todo) {
+        searchIndexByUser.compute(todo.getUserId(), (key, index) -> {
+            SearchIndex result = index != null ? index : new SearchIndex(minPrefixLength);
+            result.add(todo.getId(), todo.getTitle(), todo.getDescription());
+            return result;
+        });
+    }
+
+    /**
+     * Removes a todo from the full-text index of its user and drops the index once it is empty.
+     */
+    private void unindexText(Todo todo) {
+        searchIndexByUser.computeIfPresent(todo.getUserId(), (key, index) -> {
+            index.remove(todo.getId());
+            return index.size() == 0 ? null : index;
+        });
+    }
+
     /**
      * Error handling for non-existent todos.
      *
@@ -158,18 +494,51 @@ public class TodoController {
     public ResponseEntity<String> handleTodoNotFound(TodoNotFoundException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
+
+    /**
+     * Error handling for changes based on an outdated version.
+     *
+     * @param ex The triggered exception.
+     * @return An error response with status 412 and the current version as ETag.
+     */
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<String> handleVersionConflict(VersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+            .eTag(ETags.of(ex.getCurrentVersion()))
+            .body(ex.getMessage());
+    }
 }
 
 /**
  * Model class for todos.
+ * Immutable, so a stored todo is a consistent snapshot: changes store a copy with the next version.
  */
-@Data
+@lombok.Value
+@Builder(toBuilder = true)
+@Jacksonized
 class Todo {
-    private String id;           // Unique ID of the todo
-    private String userId;       // ID of the associated user
-    private String title;        // Title of the todo
-    private String description;  // Description of the todo
-    private boolean completed;   // Status of the todo (completed/not completed)
+    String id;           // Unique ID of the todo
+    String userId;       // ID of the associated user
+    String title;        // Title of the todo
+    String description;  // Description of the todo
+    boolean completed;   // Status of the todo (completed/not completed)
+    long version;        // Incremented by every change, 0 for todos stored before versioning
+}
+
+/**
+ * Result of one item of a batch request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record BatchResult(int index, String id, Status status, String error) {
+
+    enum Status {
+        CREATED,     // Created with the given ID
+        TOGGLED,     // Status of the todo changed
+        NOT_FOUND,   // No todo with the given ID
+        FORBIDDEN,   // The todo belongs to another user
+        INVALID,     // Rejected, see error; the whole batch was not applied
+        NOT_APPLIED  // Valid, but not applied because other items of the batch are invalid
+    }
 }
 
 /**
@@ -181,3 +550,19 @@ class TodoNotFoundException extends RuntimeException {
         super("Could not find todo " + id);
     }
 }
+
+/**
+ * Exception for changes of a todo that has been changed since the version they are based on.
+ */
+class VersionConflictException extends RuntimeException {
+    private final long currentVersion;
+
+    public VersionConflictException(String id, long currentVersion) {
+        super("Todo " + id + " has been changed, its current version is " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
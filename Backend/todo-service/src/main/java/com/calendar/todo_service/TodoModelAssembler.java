@@ -0,0 +1,126 @@
+package com.calendar.todo_service;
+
+import com.calendar.common.web.KeysetPage;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.RepresentationModelAssembler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+/**
+ * Builds the HATEOAS representations of todos.
+ * linkTo(methodOn(...)) records a proxy invocation and expands the URI template of
+ * the mapping for every single link. Here the base URI of the controller is resolved
+ * once per response and the links of each todo only append the encoded ID to it.
+ */
+@Component
+class TodoModelAssembler implements RepresentationModelAssembler<Todo, EntityModel<Todo>> {
+
+    /**
+     * A single todo with links to itself, the todos of its user and the toggle action.
+     */
+    @Override
+    public EntityModel<Todo> toModel(Todo todo) {
+        String base = baseUri();
+        return EntityModel.of(todo,
+            selfLink(base, todo.getId()),
+            userTodosLink(base, todo.getUserId(), null, null).withRel("user-todos"),
+            toggleLink(base, todo.getId()));
+    }
+
+    /**
+     * Todos of a list response, each with its self and toggle link.
+     */
+    @Override
+    public CollectionModel<EntityModel<Todo>> toCollectionModel(Iterable<? extends Todo> todos) {
+        return CollectionModel.of(toItems(baseUri(), todos));
+    }
+
+    /**
+     * One page of the todos of a user with links to the page itself and its neighbours.
+     *
+     * @param cursor Cursor the page was requested with, or null for the first page.
+     * @param size   Page size the page was requested with, or null for the default.
+     */
+    CollectionModel<EntityModel<Todo>> toPageModel(Iterable<? extends Todo> todos, KeysetPage<?> page,
+                                                   String userId, String cursor, Integer size) {
+        String base = baseUri();
+        CollectionModel<EntityModel<Todo>> result = CollectionModel.of(toItems(base, todos),
+            userTodosLink(base, userId, cursor, size).withSelfRel());
+        if (page.getNextCursor() != null) {
+            result.add(userTodosLink(base, userId, page.getNextCursor(), size).withRel(IanaLinkRelations.NEXT));
+        }
+        if (page.getPreviousCursor() != null) {
+            result.add(userTodosLink(base, userId, page.getPreviousCursor(), size).withRel(IanaLinkRelations.PREV));
+        }
+        return result;
+    }
+
+    /**
+     * Search results of a user's todos with a link to the search itself.
+     *
+     * @param size Result limit the search was requested with, or null for the default.
+     */
+    CollectionModel<EntityModel<Todo>> toSearchModel(Iterable<? extends Todo> todos, String userId,
+                                                     String query, Integer size) {
+        String base = baseUri();
+        StringBuilder href = new StringBuilder(base)
+            .append("/search?userId=").append(UriUtils.encodeQueryParam(userId, StandardCharsets.UTF_8))
+            .append("&q=").append(UriUtils.encodeQueryParam(query, StandardCharsets.UTF_8));
+        href.append(size != null ? "&size=" + size : "{&size}");
+        return CollectionModel.of(toItems(base, todos), Link.of(href.toString()));
+    }
+
+    private static List<EntityModel<Todo>> toItems(String base, Iterable<? extends Todo> todos) {
+        List<EntityModel<Todo>> items = new ArrayList<>();
+        for (Todo todo : todos) {
+            items.add(EntityModel.of(todo, selfLink(base, todo.getId()), toggleLink(base, todo.getId())));
+        }
+        return items;
+    }
+
+    // Absolute URI of the controller for the current request, e.g. http://host:8083/api/todos
+    private static String baseUri() {
+        return linkTo(TodoController.class).toUri().toString();
+    }
+
+    private static Link selfLink(String base, String id) {
+        return Link.of(base + "/" + UriUtils.encodePathSegment(id, StandardCharsets.UTF_8));
+    }
+
+    private static Link toggleLink(String base, String id) {
+        return Link.of(base + "/" + UriUtils.encodePathSegment(id, StandardCharsets.UTF_8) + "/toggle", "toggle");
+    }
+
+    /**
+     * Link to the todo list of a user. Parameters that are not given stay template
+     * variables, as WebMvcLinkBuilder renders optional request parameters.
+     */
+    private static Link userTodosLink(String base, String userId, String cursor, Integer size) {
+        StringBuilder href = new StringBuilder(base)
+            .append("?userId=").append(UriUtils.encodeQueryParam(userId, StandardCharsets.UTF_8));
+        List<String> missing = new ArrayList<>(2);
+        if (cursor != null) {
+            href.append("&cursor=").append(UriUtils.encodeQueryParam(cursor, StandardCharsets.UTF_8));
+        } else {
+            missing.add("cursor");
+        }
+        if (size != null) {
+            href.append("&size=").append(size);
+        } else {
+            missing.add("size");
+        }
+        if (!missing.isEmpty()) {
+            href.append("{&").append(String.join(",", missing)).append('}');
+        }
+        return Link.of(href.toString());
+    }
+}
@@ -0,0 +1,93 @@
+package com.calendar.todo_service;
+
+import com.calendar.common.web.RequestingUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "storage.type=memory")
+@AutoConfigureMockMvc
+class TodoControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    // Creates a todo and returns its location
+    private String create() throws Exception {
+        return mvc.perform(post("/api/todos")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Write tests\",\"userId\":\"u1\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+    }
+
+    @Test
+    void toggleWithCurrentVersionSucceeds() throws Exception {
+        String location = create();
+
+        mvc.perform(patch(location + "/toggle").header(HttpHeaders.IF_MATCH, "\"1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+    }
+
+    @Test
+    void changesBasedOnAnOldVersionAreRejected() throws Exception {
+        String location = create();
+        mvc.perform(patch(location + "/toggle")).andExpect(status().isOk());
+
+        mvc.perform(patch(location + "/toggle").header(HttpHeaders.IF_MATCH, "\"1\""))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+        mvc.perform(delete(location).header(HttpHeaders.IF_MATCH, "\"1\""))
+                .andExpect(status().isPreconditionFailed());
+
+        // Neither request has changed the todo
+        String body = mvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(body).contains("\"completed\":true");
+    }
+
+    @Test
+    void deleteWithCurrentVersionSucceeds() throws Exception {
+        String location = create();
+
+        mvc.perform(delete(location).header(HttpHeaders.IF_MATCH, "\"1\"")).andExpect(status().isNoContent());
+        mvc.perform(get(location)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void todosOfOtherUsersAreForbidden() throws Exception {
+        String location = create();
+
+        mvc.perform(get(location).header(RequestingUser.HEADER, "u2")).andExpect(status().isForbidden());
+        mvc.perform(patch(location + "/toggle").header(RequestingUser.HEADER, "u2")).andExpect(status().isForbidden());
+        mvc.perform(delete(location).header(RequestingUser.HEADER, "u2")).andExpect(status().isForbidden());
+        mvc.perform(get("/api/todos").param("userId", "u1").header(RequestingUser.HEADER, "u2"))
+                .andExpect(status().isForbidden());
+        mvc.perform(post("/api/todos")
+                        .header(RequestingUser.HEADER, "u2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Not mine\",\"userId\":\"u1\"}"))
+                .andExpect(status().isForbidden());
+
+        // The owner still has access, and the todo is unchanged
+        mvc.perform(get(location).header(RequestingUser.HEADER, "u1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    }
+}
@@ -3,7 +3,8 @@ package com.calendar.todo_service;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// In-memory storage, so the test neither reads nor writes the data directory of the service
+@SpringBootTest(properties = "storage.type=memory")
 class TodoServiceApplicationTests {
 
 	@Test
@@ -0,0 +1,98 @@
+package com.calendar.user_service;
+
+import com.calendar.common.storage.RepositoryFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POST /api/users/login on in-memory storage with 'size' registered users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LoginBenchmark {
+
+    // Number of registered users
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private UserController controller;
+
+    @Setup
+    public void setUp() {
+        RepositoryFactory repositories = new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true);
+        controller = new UserController(repositories, new UserModelAssembler(),
+            new TokenIssuer(new ObjectMapper(), "benchmark-token-secret-of-32-bytes", 60), new ObjectMapper(), 50, 500);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        for (int i = 0; i < size; i++) {
+            controller.register(user("User " + i, "user" + i + "@example.com", "secret" + i));
+        }
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> login(RequestContext context) {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return controller.login(user(null, "User" + i + "@Example.com", "secret" + i));
+    }
+
+    @Benchmark
+    public ResponseEntity<?> loginWrongPassword(RequestContext context) {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return controller.login(user(null, "user" + i + "@example.com", "wrong"));
+    }
+
+    /**
+     * Current request of a benchmark thread, the links are resolved against it.
+     */
+    @State(Scope.Thread)
+    public static class RequestContext {
+
+        @Setup
+        public void setUp() {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        }
+
+        @TearDown
+        public void tearDown() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static User user(String name, String email, String password) {
+        return User.builder()
+            .name(name)
+            .email(email)
+            .password(password)
+            .build();
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users/login");
+        request.setServerName("localhost");
+        request.setServerPort(8082);
+        return request;
+    }
+}
@@ -0,0 +1,103 @@
+package com.calendar.user_service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Issues the access tokens returned by login and registration.
+ *
+ * Tokens are JWTs (RFC 7519) signed with HMAC-SHA256 ("HS256") and carry the user ID
+ * (sub), a token ID (jti), the issue time (iat) and the expiry (exp). The API gateway
+ * verifies them with the same secret (auth.token.secret), so a request does not need
+ * a call to this service to be authenticated. Logout and revocation happen there as well.
+ */
+@Component
+class TokenIssuer {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    // Base64url of {"alg":"HS256","typ":"JWT"}, the same for every token
+    private static final String HEADER = base64(
+        "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+    // HS256 keys shorter than the hash output weaken the signature (RFC 7518, section 3.2)
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    /**
+     * @param secret     Shared with the gateway; required, at least 32 bytes.
+     * @param ttlMinutes Lifetime of a token.
+     */
+    TokenIssuer(ObjectMapper objectMapper,
+                @Value("${auth.token.secret:}") String secret,
+                @Value("${auth.token.ttl-minutes:60}") long ttlMinutes) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("auth.token.secret is not set: set AUTH_TOKEN_SECRET, "
+                + "or use the dev profile for local development");
+        }
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("auth.token.secret must be at least " + MIN_SECRET_BYTES + " bytes long");
+        }
+        this.objectMapper = objectMapper;
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    /**
+     * Signs a new token for the given user, valid from now on for the configured lifetime.
+     */
+    AccessToken issue(String userId) {
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(ttl);
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", userId);
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("iat", issuedAt.getEpochSecond());
+        claims.put("exp", expiresAt.getEpochSecond());
+
+        String payload;
+        try {
+            payload = base64(objectMapper.writeValueAsBytes(claims));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize token claims", e);
+        }
+        String signingInput = HEADER + "." + payload;
+        return new AccessToken(signingInput + "." + base64(sign(signingInput)), expiresAt);
+    }
+
+    private byte[] sign(String signingInput) {
+        try {
+            // Mac instances are not thread-safe and cheap to create compared to a request
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign token", e);
+        }
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
+
+/**
+ * Signed token with its expiry.
+ */
+record AccessToken(String token, Instant expiresAt) {
+}
@@ -1,31 +1,93 @@
 package com.calendar.user_service;
 
-import lombok.Data;
+import com.calendar.common.storage.EntityRepository;
+import com.calendar.common.storage.RepositoryFactory;
+import com.calendar.common.web.ETags;
+import com.calendar.common.web.KeysetPage;
+import com.calendar.common.web.NdjsonStream;
+import com.calendar.common.web.RequestingUser;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.extern.jackson.Jacksonized;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.Instant;
 import java.util.Map;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
-
 // This class is a Spring REST controller that implements user management
+// Single users carry their version as ETag; update and delete accept If-Match (412 on a changed user, see ETags)
+// Requests made for a signed-in user (X-User-Id, see RequestingUser) only read, change and delete that user (403 otherwise)
 @RestController
+// Login and registration return SignedInUser as ResponseEntity<?>, hidden from AOT processing
+@RegisterReflectionForBinding(SignedInUser.class)
     @RequestMapping("/api/users")
     class UserController {
     
-    // A thread-safe map for storing user data
-    private final Map<String, User> users = new ConcurrentHashMap<>();
+    // Thread-safe storage for user data (in-memory or write-ahead logged, see RepositoryFactory)
+    private final EntityRepository<String, User> users;
+
+    // Index of normalized e-mail addresses to user IDs, also used to claim e-mails atomically
+    private final Map<String, String> userIdsByEmail = new ConcurrentHashMap<>();
+
+    // Sorted user IDs, used for keyset pagination of the user list
+    private final NavigableSet<String> userIds = new ConcurrentSkipListSet<>();
+
+    // Page size limits of the list endpoint
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    // Builds the HATEOAS representations
+    private final UserModelAssembler assembler;
+
+    // Signs the access tokens of login and registration
+    private final TokenIssuer tokens;
+
+    // Serializes the users of an export
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Opens the user storage and rebuilds the indexes from the restored users.
+     */
+    UserController(RepositoryFactory repositories, UserModelAssembler assembler, TokenIssuer tokens,
+                   ObjectMapper objectMapper,
+                   @Value("${pagination.default-size:50}") int defaultPageSize,
+                   @Value("${pagination.max-size:500}") int maxPageSize) {
+        this.assembler = assembler;
+        this.tokens = tokens;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.users = repositories.create("users", String.class, User.class);
+        users.addChangeListener(this::reindex);
+        users.findAll().forEach(user -> userIds.add(user.getId()));
+        users.findAll().stream()
+            .filter(user -> user.getEmail() != null)
+            .forEach(user -> userIdsByEmail.put(normalizeEmail(user.getEmail()), user.getId()));
+    }
 
     /**
      * Login method
-     * Checks whether the login credentials are correct and returns a token.
+     * Checks whether the login credentials are correct and returns the user with a signed access token.
+     * The token is sent as "Authorization: Bearer <token>" and verified by the API gateway.
      */
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody User loginUser) {
@@ -34,10 +96,8 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
                 .body(Collections.singletonMap("message", "E-Mail und Passwort müssen angegeben werden"));
         }
 
-        User user = users.values().stream()
-            .filter(u -> u.getEmail().equals(loginUser.getEmail()))
-            .findFirst()
-            .orElse(null);
+        String userId = userIdsByEmail.get(normalizeEmail(loginUser.getEmail()));
+        User user = userId != null ? users.get(userId) : null;
 
             // Einheitliche Fehlermeldung für falsche E-Mail oder falsches Passwort
         if (user == null || !user.getPassword().equals(loginUser.getPassword())) {
@@ -45,10 +105,16 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
                 .body(Collections.singletonMap("message", "E-Mail oder Passwort ist falsch"));
         }
 
-        String token = UUID.randomUUID().toString();
-        return ResponseEntity.ok(EntityModel.of(user,
-            linkTo(methodOn(UserController.class).getUser(user.getId())).withSelfRel())
-            .add(linkTo(methodOn(UserController.class).getAllUsers()).withRel("all-users")));
+        return ResponseEntity.ok(assembler.toSignedInModel(user, tokens.issue(user.getId())));
+    }
+
+    /**
+     * Logout method
+     * Tokens are stateless; the API gateway revokes the token of this request before forwarding it.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout() {
+        return ResponseEntity.noContent().build();
     }
 
 
@@ -59,110 +125,238 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("All fields (Email, Name, Password) must be filled");
         }
     
-        boolean emailExists = users.values().stream()
-            .anyMatch(u -> u.getEmail().equals(user.getEmail()));
-    
-        if (emailExists) {
+        // Generate user ID and claim the e-mail atomically, so concurrent registrations cannot both succeed
+        user = user.toBuilder().id(UUID.randomUUID().toString()).version(1).build();
+        if (userIdsByEmail.putIfAbsent(normalizeEmail(user.getEmail()), user.getId()) != null) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
             .body(Collections.singletonMap("message", "E-Mail-Account existiert bereits"));
         }
 
-    
-        // Generate and store user ID
-        user.setId(UUID.randomUUID().toString());
-        users.put(user.getId(), user);
-
-        if (user.getEmail() == null || user.getName() == null || user.getPassword() == null) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(Collections.singletonMap("message", "All fields (Email, Name, Password) must be filled"));
+        try {
+            users.put(user.getId(), user);
+        } catch (RuntimeException e) { // Not stored, so the e-mail is free again
+            userIdsByEmail.remove(normalizeEmail(user.getEmail()), user.getId());
+            throw e;
         }
 
-        if (emailExists) {
-            return ResponseEntity.badRequest()
-                .body(Collections.singletonMap("message", "Email already registered"));
-        }
-    
-        return ResponseEntity.ok(EntityModel.of(user,
-            linkTo(methodOn(UserController.class).getUser(user.getId())).withSelfRel()));
+        // Registered users are signed in right away
+        return ResponseEntity.ok(assembler.toSignedInModel(user, tokens.issue(user.getId())));
     }
 
     /**
      * Retrieve user
-     * Returns a user based on the ID.
+     * Returns a user based on the ID, with its version as ETag.
      */
     @GetMapping("/{id}")
-    public EntityModel<User> getUser(@PathVariable String id) {
+    public ResponseEntity<EntityModel<User>> getUser(@PathVariable String id, @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, id);
         User user = users.get(id);
         if (user == null) {
             throw new UserNotFoundException(id);
         }
 
-        return EntityModel.of(user,
-            linkTo(methodOn(UserController.class).getUser(id)).withSelfRel(),
-            linkTo(methodOn(UserController.class).getAllUsers()).withRel("all-users")
-        );
+        return ResponseEntity.ok()
+            .eTag(ETags.of(user.getVersion()))
+            .body(assembler.toModel(user));
     }
 
     /**
      * Retrieve all users
-     * Returns a list of all stored users.
+     * Returns one page of the stored users without passwords; "next"/"prev" links carry the cursors of the neighbouring pages.
+     * Only for requests from inside the deployment, not for a signed-in user.
      */
     @GetMapping
-    public CollectionModel<EntityModel<User>> getAllUsers() {
-        List<EntityModel<User>> userEntities = users.values().stream()
-            .map(user -> EntityModel.of(user,
-                linkTo(methodOn(UserController.class).getUser(user.getId())).withSelfRel()))
+    public CollectionModel<EntityModel<ExportedUser>> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, null);
+        int pageSize = KeysetPage.pageSize(size, defaultPageSize, maxPageSize);
+        KeysetPage<String> page = KeysetPage.of(userIds, cursor, pageSize, Function.identity());
+
+        List<ExportedUser> pageUsers = page.getKeys().stream()
+            .map(users::get)
+            .filter(Objects::nonNull)
+            .map(ExportedUser::of)
             .collect(Collectors.toList());
 
-        return CollectionModel.of(userEntities,
-            linkTo(methodOn(UserController.class).getAllUsers()).withSelfRel());
+        return assembler.toPageModel(pageUsers, page, cursor, size);
+    }
+
+    /**
+     * Export users
+     * Streams all users ordered by ID as newline-delimited JSON, one user per line without links and passwords.
+     * The users are written while the index is iterated, so memory use does not grow with their number.
+     * Only for requests from inside the deployment, not for a signed-in user.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, null);
+        Iterable<ExportedUser> export = () -> userIds.stream()
+            .map(users::get)
+            .filter(Objects::nonNull)
+            .map(ExportedUser::of)
+            .iterator();
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(new NdjsonStream(objectMapper, export));
     }
 
     /**
      * Update user
      * Updates an existing user with new data.
+     * With If-Match, only if the user still has the version of that ETag.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateUser(@PathVariable String id, @RequestBody User newUser) {
+    public ResponseEntity<?> updateUser(@PathVariable String id, @RequestBody User newUser,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                        @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, id);
         User user = users.get(id);
         if (user == null) {
             throw new UserNotFoundException(id);
         }
 
-        newUser.setId(id);
-        users.put(id, newUser);
+        // The new e-mail is claimed under the lock of this user, after the version check: a change that
+        // fails the check never claims it, and concurrent changes of this user cannot release the claim
+        // of each other. The previous e-mail is released by reindex once the change is stored
+        String newEmail = newUser.getEmail() != null ? normalizeEmail(newUser.getEmail()) : null;
+        boolean[] claimed = new boolean[1];
+        User updated;
+        try {
+            updated = users.computeIfPresent(id, (key, existing) -> {
+                checkVersion(existing, ifMatch);
+                if (newEmail != null) {
+                    String owner = userIdsByEmail.putIfAbsent(newEmail, id);
+                    if (owner != null && !owner.equals(id)) {
+                        throw new EmailTakenException();
+                    }
+                    claimed[0] = owner == null;
+                }
+                return newUser.toBuilder().id(id).version(existing.getVersion() + 1).build();
+            });
+        } catch (EmailTakenException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Collections.singletonMap("message", "E-Mail-Account existiert bereits"));
+        } catch (RuntimeException e) {
+            // Not stored (e.g. the log cannot be written); the claim is kept if the stored user has the e-mail anyway
+            User current = users.get(id);
+            if (claimed[0] && (current == null || current.getEmail() == null
+                    || !normalizeEmail(current.getEmail()).equals(newEmail))) {
+                userIdsByEmail.remove(newEmail, id);
+            }
+            throw e;
+        }
+        if (updated == null) { // Deleted concurrently
+            throw new UserNotFoundException(id);
+        }
 
-        EntityModel<User> resource = EntityModel.of(newUser,
-            linkTo(methodOn(UserController.class).getUser(id)).withSelfRel(),
-            linkTo(methodOn(UserController.class).getAllUsers()).withRel("all-users"));
+        EntityModel<User> resource = assembler.toModel(updated);
 
-        return ResponseEntity.ok(resource);
+        return ResponseEntity.ok()
+            .eTag(ETags.of(updated.getVersion()))
+            .body(resource);
     }
 
     /**
      * Delete user
      * Removes a user based on the ID.
+     * With If-Match, only if the user still has the version of that ETag.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteUser(@PathVariable String id) {
-        if (!users.containsKey(id)) {
+    public ResponseEntity<?> deleteUser(@PathVariable String id,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                        @RequestHeader(value = RequestingUser.HEADER, required = false) String requestingUser) {
+        RequestingUser.checkAccess(requestingUser, id);
+        boolean[] removed = new boolean[1];
+        users.computeIfPresent(id, (key, existing) -> {
+            checkVersion(existing, ifMatch);
+            removed[0] = true;
+            return null;
+        });
+        if (!removed[0]) {
             throw new UserNotFoundException(id);
         }
-        users.remove(id);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Keeps the indexes in line with the storage; called for every stored change while its
+     * key is locked. New e-mails are claimed before the change (see register and updateUser),
+     * e-mails the user no longer has are released here.
+     */
+    private void reindex(String id, User previous, User current) {
+        if (current != null) {
+            userIds.add(id);
+        } else {
+            userIds.remove(id);
+        }
+        String oldEmail = previous != null && previous.getEmail() != null ? normalizeEmail(previous.getEmail()) : null;
+        String newEmail = current != null && current.getEmail() != null ? normalizeEmail(current.getEmail()) : null;
+        if (oldEmail != null && !oldEmail.equals(newEmail)) {
+            userIdsByEmail.remove(oldEmail, id);
+        }
+    }
+
+    /**
+     * Normalizes an e-mail address for the index.
+     * Lookups are therefore case-insensitive and ignore surrounding whitespace.
+     */
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Rejects a change of a user whose version does not match the If-Match header.
+     * Thrown inside computeIfPresent, it leaves the stored user unchanged.
+     */
+    private static void checkVersion(User user, String ifMatch) {
+        if (!ETags.matches(ifMatch, user.getVersion())) {
+            throw new VersionConflictException(user.getId(), user.getVersion());
+        }
+    }
+
+    /**
+     * Changes based on an outdated version are answered with 412 and the current version as ETag.
+     */
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<String> handleVersionConflict(VersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+            .eTag(ETags.of(ex.getCurrentVersion()))
+            .body(ex.getMessage());
+    }
 }
 
 /**
  * User data class
  * Represents user data with ID, email, name, and password.
+ * Immutable, so a stored user is a consistent snapshot: changes store a copy with the next version.
  */
-@Data
+@lombok.Value
+@Builder(toBuilder = true)
+@Jacksonized
 class User {
-    private String id;
-    private String email;
-    private String name;
-    private String password;
+    String id;
+    String email;
+    String name;
+    String password;
+    long version; // Incremented by every change, 0 for users stored before versioning
+}
+
+/**
+ * User data returned by login and registration, with the access token next to the user fields.
+ */
+record SignedInUser(@JsonUnwrapped User user, String token, Instant expiresAt) {
+}
+
+/**
+ * User data written by the export and the user list: everything but the password.
+ */
+record ExportedUser(String id, String email, String name, long version) {
+
+    static ExportedUser of(User user) {
+        return new ExportedUser(user.getId(), user.getEmail(), user.getName(), user.getVersion());
+    }
 }
 
 /**
@@ -175,3 +369,29 @@ class UserNotFoundException extends RuntimeException {
         super("Could not find user " + id);
     }
 }
+
+/**
+ * Thrown inside updateUser when the new e-mail belongs to another user; answered with 409 Conflict.
+ */
+class EmailTakenException extends RuntimeException {
+    EmailTakenException() {
+        super("E-mail is taken by another user", null, false, false);
+    }
+}
+
+/**
+ * Version conflict exception
+ * Thrown when a user has been changed since the version a change is based on.
+ */
+class VersionConflictException extends RuntimeException {
+    private final long currentVersion;
+
+    public VersionConflictException(String id, long currentVersion) {
+        super("User " + id + " has been changed, its current version is " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
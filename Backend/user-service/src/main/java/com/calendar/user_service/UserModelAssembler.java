@@ -0,0 +1,122 @@
+package com.calendar.user_service;
+
+import com.calendar.common.web.KeysetPage;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.RepresentationModelAssembler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+/**
+ * Builds the HATEOAS representations of users.
+ * linkTo(methodOn(...)) records a proxy invocation and expands the URI template of
+ * the mapping for every single link. Here the base URI of the controller is resolved
+ * once per response and the links of each user only append the encoded ID to it.
+ */
+@Component
+class UserModelAssembler implements RepresentationModelAssembler<User, EntityModel<User>> {
+
+    /**
+     * A single user with links to itself and to the user list.
+     */
+    @Override
+    public EntityModel<User> toModel(User user) {
+        String base = baseUri();
+        return EntityModel.of(user,
+            selfLink(base, user.getId()),
+            usersLink(base, null, null).withRel("all-users"));
+    }
+
+    /**
+     * A signed-in user with its access token and the links of a single user.
+     */
+    EntityModel<SignedInUser> toSignedInModel(User user, AccessToken token) {
+        String base = baseUri();
+        return EntityModel.of(new SignedInUser(user, token.token(), token.expiresAt()),
+            selfLink(base, user.getId()),
+            usersLink(base, null, null).withRel("all-users"));
+    }
+
+    /**
+     * Users of a list response, each with its self-link.
+     */
+    @Override
+    public CollectionModel<EntityModel<User>> toCollectionModel(Iterable<? extends User> users) {
+        return CollectionModel.of(toItems(baseUri(), users));
+    }
+
+    /**
+     * One page of the users (without passwords) with links to the page itself and its neighbours.
+     *
+     * @param cursor Cursor the page was requested with, or null for the first page.
+     * @param size   Page size the page was requested with, or null for the default.
+     */
+    CollectionModel<EntityModel<ExportedUser>> toPageModel(List<ExportedUser> users, KeysetPage<?> page,
+                                                           String cursor, Integer size) {
+        String base = baseUri();
+        List<EntityModel<ExportedUser>> items = new ArrayList<>(users.size());
+        for (ExportedUser user : users) {
+            items.add(EntityModel.of(user, selfLink(base, user.id())));
+        }
+        CollectionModel<EntityModel<ExportedUser>> result = CollectionModel.of(items,
+            usersLink(base, cursor, size).withSelfRel());
+        if (page.getNextCursor() != null) {
+            result.add(usersLink(base, page.getNextCursor(), size).withRel(IanaLinkRelations.NEXT));
+        }
+        if (page.getPreviousCursor() != null) {
+            result.add(usersLink(base, page.getPreviousCursor(), size).withRel(IanaLinkRelations.PREV));
+        }
+        return result;
+    }
+
+    private static List<EntityModel<User>> toItems(String base, Iterable<? extends User> users) {
+        List<EntityModel<User>> items = new ArrayList<>();
+        for (User user : users) {
+            items.add(EntityModel.of(user, selfLink(base, user.getId())));
+        }
+        return items;
+    }
+
+    // Absolute URI of the controller for the current request, e.g. http://host:8082/api/users
+    private static String baseUri() {
+        return linkTo(UserController.class).toUri().toString();
+    }
+
+    private static Link selfLink(String base, String id) {
+        return Link.of(base + "/" + UriUtils.encodePathSegment(id, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Link to the user list. Parameters that are not given stay template variables,
+     * as WebMvcLinkBuilder renders optional request parameters.
+     */
+    private static Link usersLink(String base, String cursor, Integer size) {
+        StringBuilder href = new StringBuilder(base);
+        List<String> missing = new ArrayList<>(2);
+        char separator = '?';
+        if (cursor != null) {
+            href.append(separator).append("cursor=").append(UriUtils.encodeQueryParam(cursor, StandardCharsets.UTF_8));
+            separator = '&';
+        } else {
+            missing.add("cursor");
+        }
+        if (size != null) {
+            href.append(separator).append("size=").append(size);
+            separator = '&';
+        } else {
+            missing.add("size");
+        }
+        if (!missing.isEmpty()) {
+            href.append('{').append(separator).append(String.join(",", missing)).append('}');
+        }
+        return Link.of(href.toString());
+    }
+}
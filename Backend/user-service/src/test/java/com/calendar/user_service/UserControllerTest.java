@@ -0,0 +1,226 @@
+package com.calendar.user_service;
+
+import com.calendar.common.storage.EntityRepository;
+import com.calendar.common.storage.RepositoryFactory;
+import com.calendar.common.web.RequestingUser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// In-memory storage, so the test neither reads nor writes the data directory of the service
+@SpringBootTest(properties = {"storage.type=memory", "auth.token.secret=test-only-calendar-token-secret-0123456789"})
+@AutoConfigureMockMvc
+class UserControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    private ResultActions register(String email, String password) throws Exception {
+        return mvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"name\":\"Test\",\"password\":\"" + password + "\"}"));
+    }
+
+    // Registers a user and returns its ID
+    private String registered(String email, String password) throws Exception {
+        String body = register(email, password).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.id");
+    }
+
+    private ResultActions login(String email, String password) throws Exception {
+        return mvc.perform(post("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}"));
+    }
+
+    private ResultActions changeEmail(String id, String email, String ifMatch) throws Exception {
+        return mvc.perform(put("/api/users/" + id)
+                .header(HttpHeaders.IF_MATCH, ifMatch)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"name\":\"Test\",\"password\":\"pw\"}"));
+    }
+
+    @Test
+    void emailsAreUniqueIgnoringCase() throws Exception {
+        registered("Anna@Example.com", "pw");
+
+        register(" anna@example.COM ", "other").andExpect(status().isConflict());
+        login("ANNA@example.com", "pw").andExpect(status().isOk());
+        login("anna@example.com", "wrong").andExpect(status().isUnauthorized());
+        login("nobody@example.com", "pw").andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void changedEmailIsReleased() throws Exception {
+        String id = registered("old@example.com", "pw");
+
+        changeEmail(id, "new@example.com", "*").andExpect(status().isOk());
+
+        login("new@example.com", "pw").andExpect(status().isOk());
+        login("old@example.com", "pw").andExpect(status().isUnauthorized());
+        register("new@example.com", "pw").andExpect(status().isConflict());
+        register("old@example.com", "pw").andExpect(status().isOk());
+    }
+
+    @Test
+    void emailOfAFailedChangeIsNotClaimed() throws Exception {
+        String id = registered("kept@example.com", "pw");
+        String other = registered("taken@example.com", "pw");
+
+        changeEmail(id, "taken@example.com", "*").andExpect(status().isConflict());
+        changeEmail(id, "wanted@example.com", "\"9\"").andExpect(status().isPreconditionFailed());
+
+        login("kept@example.com", "pw").andExpect(status().isOk());
+        register("wanted@example.com", "pw").andExpect(status().isOk());
+        mvc.perform(get("/api/users/" + other)).andExpect(status().isOk());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedChangeDoesNotReleaseTheEmailOfAConcurrentOne() throws Exception {
+        // The first change of the user waits at the storage until a second one with the same e-mail
+        // and the same If-Match has been stored, so the first then fails its version check
+        CountDownLatch firstWaiting = new CountDownLatch(1);
+        CountDownLatch secondStored = new CountDownLatch(1);
+        AtomicBoolean paused = new AtomicBoolean();
+        RepositoryFactory repositories = new RepositoryFactory(new ObjectMapper(), "memory", "data", 64, 2, 300, true) {
+            @Override
+            public <K, V> EntityRepository<K, V> create(String name, Class<K> keyType, Class<V> valueType) {
+                EntityRepository<K, V> repository = super.create(name, keyType, valueType);
+                return (EntityRepository<K, V>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {EntityRepository.class}, (proxy, method, args) -> {
+                            if (method.getName().equals("computeIfPresent") && paused.compareAndSet(false, true)) {
+                                firstWaiting.countDown();
+                                secondStored.await();
+                            }
+                            try {
+                                return method.invoke(repository, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+        UserController controller = new UserController(repositories, new UserModelAssembler(),
+                new TokenIssuer(new ObjectMapper(), "test-only-calendar-token-secret-0123456789", 60),
+                new ObjectMapper(), 50, 500);
+        User changed = User.builder().email("raced@example.com").name("Test").password("pw").build();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String id = withRequest(() -> ((EntityModel<SignedInUser>) controller.register(
+                    User.builder().email("race@example.com").name("Test").password("pw").build()).getBody())
+                    .getContent().user().getId());
+            Future<ResponseEntity<?>> first = executor.submit(() ->
+                    withRequest(() -> controller.updateUser(id, changed, "\"1\"", null)));
+            firstWaiting.await();
+            ResponseEntity<?> second = withRequest(() -> controller.updateUser(id, changed, "\"1\"", null));
+            secondStored.countDown();
+
+            assertThat(second.getStatusCode().value()).isEqualTo(200);
+            assertThatThrownBy(first::get).hasCauseInstanceOf(VersionConflictException.class);
+            assertThat(controller.login(User.builder().email("raced@example.com").password("pw").build())
+                    .getStatusCode().value()).isEqualTo(200);
+            assertThat(controller.register(User.builder().email("raced@example.com").name("Other").password("pw").build())
+                    .getStatusCode().value()).isEqualTo(409);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Runs a controller method outside MockMvc, with a request the links are resolved against
+    private static <T> T withRequest(Callable<T> call) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/users");
+        request.setServerName("localhost");
+        request.setServerPort(8082);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            return call.call();
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    void deletedUserReleasesEmail() throws Exception {
+        String id = registered("gone@example.com", "pw");
+
+        mvc.perform(delete("/api/users/" + id)).andExpect(status().isNoContent());
+
+        login("gone@example.com", "pw").andExpect(status().isUnauthorized());
+        register("gone@example.com", "pw").andExpect(status().isOk());
+    }
+
+    @Test
+    void exportLeavesOutPasswords() throws Exception {
+        register("export@example.com", "secret-password").andExpect(status().isOk());
+
+        MvcResult async = mvc.perform(get("/api/users/export")).andExpect(request().asyncStarted()).andReturn();
+        String export = mvc.perform(asyncDispatch(async)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(export).contains("export@example.com").doesNotContain("password");
+    }
+
+    @Test
+    void otherUsersAreForbidden() throws Exception {
+        String id = registered("owner@example.com", "pw");
+        String other = registered("other@example.com", "pw");
+
+        mvc.perform(get("/api/users/" + id).header(RequestingUser.HEADER, other)).andExpect(status().isForbidden());
+        mvc.perform(put("/api/users/" + id)
+                        .header(RequestingUser.HEADER, other)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"taken@example.com\",\"name\":\"Test\",\"password\":\"pw\"}"))
+                .andExpect(status().isForbidden());
+        mvc.perform(delete("/api/users/" + id).header(RequestingUser.HEADER, other)).andExpect(status().isForbidden());
+        mvc.perform(get("/api/users/export").header(RequestingUser.HEADER, other)).andExpect(status().isForbidden());
+
+        mvc.perform(get("/api/users/" + id).header(RequestingUser.HEADER, id)).andExpect(status().isOk());
+        login("owner@example.com", "pw").andExpect(status().isOk());
+    }
+
+    @Test
+    void userListLeavesOutPasswordsAndIsInternal() throws Exception {
+        String id = registered("listed@example.com", "secret-password");
+
+        String list = mvc.perform(get("/api/users")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(list).contains("listed@example.com").doesNotContain("password");
+
+        mvc.perform(get("/api/users").header(RequestingUser.HEADER, id)).andExpect(status().isForbidden());
+    }
+}
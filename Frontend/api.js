@@ -1,5 +1,6 @@
 // api.js
 const API_BASE_URL = 'http://localhost:8080/api';
+const GRAPHQL_WS_URL = 'ws://localhost:8080/graphql-ws';
 
 // Central error handling
 const handleError = (error) => {
@@ -45,13 +46,23 @@ const defaultHeaders = {
     'X-Requested-With': 'XMLHttpRequest'
 };
 
+// Access token of the signed-in user, issued on login/registration and checked by the gateway
+let accessToken = null;
+
+// Adds the access token to the given request headers
+const authHeaders = (headers = {}) =>
+    accessToken ? { ...headers, 'Authorization': `Bearer ${accessToken}` } : headers;
+
+// SHA-256 hashes of the GraphQL query texts, computed once per query
+const queryHashes = new Map();
+
 // Event service for GraphQL operations
 class EventService {
    // Retrieve events within a specific date range
     static async getEvents(start, end) {
         const query = `
             query EventsByDateRange($start: DateTime!, $end: DateTime!) {
-                eventsByDateRange(start: $start, end: $end) {
+                eventsByDateRange(start: $start, end: $end, overlapping: true) {
                     id
                     title
                     start
@@ -59,6 +70,8 @@ class EventService {
                     userId
                     priority
                     categoryId
+                    recurrence
+                    recurrenceId
                 }
             }
         `;
@@ -66,7 +79,8 @@ class EventService {
     }
 
             // Create new event
-            static async createEvent({ title, start, end, userId, priority, categoryId }) {
+            // recurrence: rule of a series, e.g. "FREQ=WEEKLY" (optional)
+            static async createEvent({ title, start, end, userId, priority, categoryId, recurrence }) {
                 const mutation = `
                     mutation CreateEvent(
                         $title: String!, 
@@ -74,7 +88,8 @@ class EventService {
                         $end: DateTime!, 
                         $userId: String!, 
                         $priority: Priority!, 
-                        $categoryId: String
+                        $categoryId: String,
+                        $recurrence: String
                     ) {
                         createEvent(
                             title: $title,
@@ -82,7 +97,8 @@ class EventService {
                             end: $end,
                             userId: $userId,
                             priority: $priority,
-                            categoryId: $categoryId
+                            categoryId: $categoryId,
+                            recurrence: $recurrence
                         ) {
                             id
                             title
@@ -91,17 +107,18 @@ class EventService {
                             userId
                             priority
                             categoryId
+                            recurrence
                         }
                     }
                 `;
-                return this.sendGraphQLQuery(mutation, { title, start, end, userId, priority, categoryId });
+                return this.sendGraphQLQuery(mutation, { title, start, end, userId, priority, categoryId, recurrence });
             }
 
-   // Update event
+   // Update event; for a series all occurrences, an empty recurrence makes it a single event
     static async updateEvent(eventId, updates) {
         const mutation = `
-            mutation UpdateEvent($id: ID!, $title: String, $start: DateTime, $end: DateTime, $priority: Priority, $categoryId: String) {
-                updateEvent(id: $id, title: $title, start: $start, end: $end, priority: $priority, categoryId: $categoryId) {
+            mutation UpdateEvent($id: ID!, $title: String, $start: DateTime, $end: DateTime, $priority: Priority, $categoryId: String, $recurrence: String) {
+                updateEvent(id: $id, title: $title, start: $start, end: $end, priority: $priority, categoryId: $categoryId, recurrence: $recurrence) {
                     id
                     title
                     start
@@ -109,6 +126,7 @@ class EventService {
                     userId
                     priority
                     categoryId
+                    recurrence
                 }
             }
         `;
@@ -125,6 +143,18 @@ class EventService {
         return this.sendGraphQLQuery(mutation, { id: eventId });
     }
 
+    // Cancel one occurrence of a series, identified by its start
+    static async cancelOccurrence(eventId, recurrenceId) {
+        const mutation = `
+            mutation CancelOccurrence($id: ID!, $recurrenceId: DateTime!) {
+                cancelOccurrence(id: $id, recurrenceId: $recurrenceId) {
+                    id
+                }
+            }
+        `;
+        return this.sendGraphQLQuery(mutation, { id: eventId, recurrenceId });
+    }
+
 // Retrieve individual event by ID
     static async getEventById(eventId) {
         const query = `
@@ -137,24 +167,96 @@ class EventService {
                     userId
                     priority
                     categoryId
+                    recurrence
                 }
             }
         `;
         return this.sendGraphQLQuery(query, { id: eventId });
     }
 
-    // Send GraphQL queries and mutations
+    // Subscribe to live event changes over a WebSocket (graphql-transport-ws protocol).
+    // onChange receives { type, event } per change, onError is called once if the subscription ends unexpectedly.
+    // Returns a function that ends the subscription.
+    static subscribeEventChanges({ userId, start, end }, onChange, onError) {
+        const subscription = `
+            subscription EventChanged($userId: String, $start: DateTime, $end: DateTime) {
+                eventChanged(userId: $userId, start: $start, end: $end) {
+                    type
+                    event {
+                        id
+                        title
+                        start
+                        end
+                        userId
+                        priority
+                        categoryId
+                        recurrence
+                    }
+                }
+            }
+        `;
+        const socket = new WebSocket(
+            // Browsers cannot set headers on the handshake, so the token goes into the URL
+            accessToken ? `${GRAPHQL_WS_URL}?access_token=${encodeURIComponent(accessToken)}` : GRAPHQL_WS_URL,
+            'graphql-transport-ws');
+        let ended = false;
+        const finish = (error) => {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            if (socket.readyState === WebSocket.OPEN) {
+                socket.send(JSON.stringify({ id: '1', type: 'complete' }));
+            }
+            socket.close();
+            if (error) {
+                onError?.(error);
+            }
+        };
+
+        socket.onopen = () => socket.send(JSON.stringify({ type: 'connection_init' }));
+        socket.onmessage = ({ data }) => {
+            const message = JSON.parse(data);
+            switch (message.type) {
+                case 'connection_ack':
+                    socket.send(JSON.stringify({
+                        id: '1',
+                        type: 'subscribe',
+                        payload: { query: subscription, variables: { userId, start, end } },
+                    }));
+                    break;
+                case 'ping':
+                    socket.send(JSON.stringify({ type: 'pong' }));
+                    break;
+                case 'next':
+                    if (message.payload.errors) {
+                        finish(new Error(message.payload.errors.map(e => e.message).join(', ')));
+                    } else {
+                        onChange(message.payload.data.eventChanged);
+                    }
+                    break;
+                case 'error':
+                    finish(new Error(message.payload.map(e => e.message).join(', ')));
+                    break;
+                case 'complete':
+                    finish(new Error('Subscription completed by the server'));
+                    break;
+            }
+        };
+        socket.onclose = () => finish(new Error('Subscription connection closed'));
+        return () => finish();
+    }
+
+    // Send GraphQL queries and mutations as Automatic Persisted Queries:
+    // only the SHA-256 hash is sent, the query text only if the server does not know it yet
     static async sendGraphQLQuery(query, variables) {
         try {
-            const response = await fetch(`http://localhost:8080/graphql`, {                
-                method: "POST",
-                headers: { "Content-Type": "application/json" },
-                body: JSON.stringify({ query, variables }),
-            });
-            if (!response.ok) {
-                throw new Error(`HTTP error! status: ${response.status}`);
+            const hash = await this.queryHash(query);
+            const extensions = hash ? { persistedQuery: { version: 1, sha256Hash: hash } } : undefined;
+            let result = await this.postGraphQL(hash ? { variables, extensions } : { query, variables });
+            if (hash && result.errors?.some(e => e.message === 'PersistedQueryNotFound')) {
+                result = await this.postGraphQL({ query, variables, extensions });
             }
-            const result = await response.json();
 
             if (result.errors) {
                 throw new Error(result.errors.map(e => e.message).join(', '));
@@ -165,6 +267,30 @@ class EventService {
             throw error;
         }
     }
+
+    static async postGraphQL(body) {
+        const response = await fetch(`http://localhost:8080/graphql`, {
+            method: "POST",
+            headers: authHeaders({ "Content-Type": "application/json" }),
+            body: JSON.stringify(body),
+        });
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+        return response.json();
+    }
+
+    // Hex SHA-256 of a query text, null where the browser offers no Web Crypto (non-HTTPS origins)
+    static async queryHash(query) {
+        if (!globalThis.crypto?.subtle) {
+            return null;
+        }
+        if (!queryHashes.has(query)) {
+            const digest = await crypto.subtle.digest('SHA-256', new TextEncoder().encode(query));
+            queryHashes.set(query, Array.from(new Uint8Array(digest), b => b.toString(16).padStart(2, '0')).join(''));
+        }
+        return queryHashes.get(query);
+    }
 }
 
 // REST Todo Service
@@ -173,26 +299,31 @@ class TodoService {
 // Get all todos of a user
     static async getTodos(userId) {
         try {
-            const response = await fetch(`${API_BASE_URL}/todos?userId=${userId}`);
-            if (!response.ok) {
-                throw new Error(`HTTP error! status: ${response.status}`);
-            }
-            const data = await response.json();
-            // Check if the response is an array or has the expected structur
-            if (Array.isArray(data)) {
-                return data.map(todo => ({
-                    ...todo,
-                    links: todo._links || {},
-                }));
-            } else if (data._embedded && data._embedded.todoList) {
-                return data._embedded.todoList.map(todo => ({
-                    ...todo,
-                    links: todo._links || {},
-                }));
-            } else {
-                // Fallback if no todos were found
-                return [];
-            }
+            const todos = [];
+            let cursor = null;
+            // The list is paginated: follow the "next" link until the last page
+            do {
+                const cursorParam = cursor ? `&cursor=${encodeURIComponent(cursor)}` : '';
+                const response = await fetch(`${API_BASE_URL}/todos?userId=${userId}${cursorParam}`, {
+                    headers: authHeaders()
+                });
+                if (!response.ok) {
+                    throw new Error(`HTTP error! status: ${response.status}`);
+                }
+                const data = await response.json();
+                // Check if the response is an array or has the expected structur
+                if (Array.isArray(data)) {
+                    todos.push(...data);
+                } else if (data._embedded && data._embedded.todoList) {
+                    todos.push(...data._embedded.todoList);
+                }
+                const next = data._links && data._links.next;
+                cursor = next ? new URL(next.href, window.location.href).searchParams.get('cursor') : null;
+            } while (cursor);
+            return todos.map(todo => ({
+                ...todo,
+                links: todo._links || {},
+            }));
         } catch (error) {
             console.error('Fehler beim Laden der Todos:', error);
             return [];// Return empty array instead of throwing error
@@ -204,10 +335,10 @@ class TodoService {
         try {
             const response = await fetch(`${API_BASE_URL}/todos`, {
                 method: 'POST',
-                headers: {
+                headers: authHeaders({
                     ...defaultHeaders,
                     'Content-Type': 'application/json'
-                },
+                }),
                 body: JSON.stringify({ title, description, userId, completed: false })
             });
 
@@ -231,7 +362,7 @@ class TodoService {
         try {
             const response = await fetch(`${API_BASE_URL}/todos/${todoId}/toggle`, {
                 method: 'PATCH',
-                headers: defaultHeaders
+                headers: authHeaders(defaultHeaders)
             });
 
             if (!response.ok) {
@@ -253,7 +384,7 @@ class TodoService {
         try {
             const response = await fetch(`${API_BASE_URL}/todos/${todoId}`, {
                 method: 'DELETE',
-                headers: defaultHeaders
+                headers: authHeaders(defaultHeaders)
             });
 
             if (!response.ok) {
@@ -273,7 +404,9 @@ class TodoService {
     // Get Todo by ID
     static async getTodoById(todoId) {
         try {
-            const response = await fetch(`${API_BASE_URL}/todos/${todoId}`);
+            const response = await fetch(`${API_BASE_URL}/todos/${todoId}`, {
+                headers: authHeaders()
+            });
             
             if (!response.ok) {
                 if (response.status === 404) {
@@ -320,13 +453,35 @@ class UserService {
                 }
             }
 
-            // Rückgabe der Benutzerdaten
+            // Rückgabe der Benutzerdaten, das Token wird für alle weiteren Anfragen gemerkt
+            accessToken = data.token;
             return data;
         } catch (error) {
             throw new Error(error.message || 'Login fehlgeschlagen');
         }
     }
 
+    // Logout: the gateway revokes the token, so it cannot be used any more even if it leaked
+    static async logout() {
+        try {
+            if (accessToken) {
+                await fetch(`${API_BASE_URL}/users/logout`, {
+                    method: 'POST',
+                    headers: authHeaders()
+                });
+            }
+        } catch (error) {
+            console.error('Fehler beim Ausloggen:', error);
+        } finally {
+            accessToken = null;
+        }
+    }
+
+    // Restore the token of a session stored by the browser
+    static setToken(token) {
+        accessToken = token || null;
+    }
+
    // registration method
     static async register(user) {
         try {
@@ -348,6 +503,7 @@ class UserService {
                 }
             }
         
+            accessToken = data.token;
             return data;
         } catch (error) {
             throw new Error(error.message || 'Registrierung fehlgeschlagen');
@@ -357,7 +513,9 @@ class UserService {
  // Get user information
     static async getUser(userId) {
         try {
-            const response = await fetch(`${API_BASE_URL}/users/${userId}`);
+            const response = await fetch(`${API_BASE_URL}/users/${userId}`, {
+                headers: authHeaders()
+            });
 
             if (!response.ok) {
                 throw new Error('Benutzer nicht gefunden');
@@ -373,7 +531,9 @@ class UserService {
   // Get all users
     static async getAllUsers() {
         try {
-            const response = await fetch(`${API_BASE_URL}/users`);
+            const response = await fetch(`${API_BASE_URL}/users`, {
+                headers: authHeaders()
+            });
 
             if (!response.ok) {
                 throw new Error('Fehler beim Abrufen der Benutzerliste');
@@ -390,9 +550,9 @@ class UserService {
         try {
             const response = await fetch(`${API_BASE_URL}/users/${userId}`, {
                 method: 'PUT',
-                headers: {
+                headers: authHeaders({
                     'Content-Type': 'application/json',
-                },
+                }),
                 body: JSON.stringify(userData),
             });
 
@@ -412,6 +572,7 @@ class UserService {
         try {
             const response = await fetch(`${API_BASE_URL}/users/${userId}`, {
                 method: 'DELETE',
+                headers: authHeaders()
             });
 
             if (!response.ok) {
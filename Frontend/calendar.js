@@ -7,6 +7,7 @@ let currentUser = null;
 let currentDate = new Date();
 let currentView = 'month';
 let events = [];
+let eventSubscription = null;
 let eventModal = null;
 
 const authContainer = document.getElementById('auth-container');
@@ -38,6 +39,7 @@ document.getElementById('login-form')?.addEventListener('submit', async (e) => {
       const email = document.getElementById('login-email').value;
       const password = document.getElementById('login-password').value;
       currentUser = await api.users.login(email, password);
+      localStorage.setItem('auth', JSON.stringify(currentUser));
       document.getElementById('login-form').reset();
       showMainApp();
       showToast('Erfolgreich eingeloggt', 'success');
@@ -57,6 +59,7 @@ document.getElementById('register-form')?.addEventListener('submit', async (e) =
           password: document.getElementById('register-password').value
       };
       currentUser = await api.users.register(userData);
+      localStorage.setItem('auth', JSON.stringify(currentUser));
       document.getElementById('register-form').reset();
       showMainApp();
       showToast('Registrierung erfolgreich', 'success');
@@ -67,7 +70,9 @@ document.getElementById('register-form')?.addEventListener('submit', async (e) =
 });
 
 // Logout-Button
-document.getElementById('logout-btn')?.addEventListener('click', () => {
+document.getElementById('logout-btn')?.addEventListener('click', async () => {
+    await api.users.logout();
+    localStorage.removeItem('auth');
     currentUser = null;
     hideMainApp();
     showToast('Erfolgreich ausgeloggt', 'info');
@@ -230,7 +235,7 @@ function renderEventsForDate(date) {
         .map(event => `
             <div class="event p-1 mb-1 rounded text-truncate event-${event.priority.toLowerCase()}" 
                  style="font-size: 0.8em; cursor: pointer;"
-                 onclick="handleEventClick('${event.id}')">
+                 onclick="handleEventClick('${event.id}', '${event.recurrenceId ?? ''}')">
                 ${event.title}
             </div>
         `).join('');
@@ -338,7 +343,7 @@ function renderEventsForHour(date) {
       .map(event => `
           <div class="event p-1 mb-1 rounded text-truncate event-${event.priority.toLowerCase()}" 
                style="font-size: 0.8em; cursor: pointer;"
-               onclick="handleEventClick('${event.id}')">
+               onclick="handleEventClick('${event.id}', '${event.recurrenceId ?? ''}')">
               ${event.title}
           </div>
       `).join('');
@@ -358,13 +363,15 @@ async function loadEvents() {
       // Converting in UTC
       const utcStart = Date.UTC(monthStart.getFullYear(), monthStart.getMonth(), monthStart.getDate());
       const utcEnd = Date.UTC(monthEnd.getFullYear(), monthEnd.getMonth(), monthEnd.getDate() + 1);
+      const start = new Date(utcStart).toISOString();
+      const end = new Date(utcEnd).toISOString();
 
-      const response = await api.events.getEvents(
-          new Date(utcStart).toISOString(),
-          new Date(utcEnd).toISOString()
-      );
+      // Subscribed before loading, so no change between the query and the subscription is missed
+      const subscription = subscribeToEventChanges(start, end);
+      const response = await api.events.getEvents(start, end);
       
       events = response.eventsByDateRange || [];
+      subscription.loaded();
       renderCalendar();
   } catch (error) {
       console.error('Fehler beim Laden der Events:', error);
@@ -372,6 +379,55 @@ async function loadEvents() {
   }
 }
 
+// Live updates of the displayed range instead of reloading it; changes arriving
+// while the range is still loading are applied once it has been loaded
+function subscribeToEventChanges(start, end) {
+  unsubscribeFromEventChanges();
+  const subscription = { pending: [], retryDelay: eventSubscription?.retryDelay ?? 1000 };
+  const apply = ({ type, event }) => {
+      // Occurrences of a series are expanded by the server, so a changed series reloads the range
+      if (event.recurrence || events.some(e => e.id === event.id && e.recurrenceId)) {
+          clearTimeout(subscription.reload);
+          subscription.reload = setTimeout(loadEvents, 0);
+          return;
+      }
+      events = events.filter(e => e.id !== event.id);
+      if (type !== 'DELETED' && new Date(event.end) >= new Date(start) && new Date(event.start) <= new Date(end)) {
+          events.push(event);
+      }
+  };
+  subscription.loaded = () => {
+      subscription.pending.forEach(apply);
+      subscription.pending = null;
+  };
+  subscription.unsubscribe = api.events.subscribeEventChanges({ start, end }, (change) => {
+      subscription.retryDelay = 1000;
+      if (subscription.pending) {
+          subscription.pending.push(change);
+      } else {
+          apply(change);
+          renderCalendar();
+      }
+  }, (error) => {
+      // Connection lost or too slow to keep up: reload and subscribe again, backing off while it keeps failing
+      console.warn('Event-Abonnement beendet:', error.message);
+      if (eventSubscription === subscription) {
+          subscription.retry = setTimeout(loadEvents, subscription.retryDelay);
+          subscription.retryDelay = Math.min(subscription.retryDelay * 2, 60000);
+      }
+  });
+  eventSubscription = subscription;
+  return subscription;
+}
+
+function unsubscribeFromEventChanges() {
+  if (eventSubscription) {
+      clearTimeout(eventSubscription.retry);
+      clearTimeout(eventSubscription.reload);
+      eventSubscription.unsubscribe();
+  }
+}
+
 // Event Handlers for the Calendar
 window.handleDateClick = (date) => {
   // Convert Local Date to UTC
@@ -395,13 +451,17 @@ window.handleDateClick = (date) => {
   document.getElementById('event-start').value = formatDateTime(utcDate);
   document.getElementById('event-end').value = formatDateTime(utcEnd);
   documentS.getElementById('event-priority').value = 'MEDIUM';
+  document.getElementById('event-recurrence').value = '';
+  document.getElementById('event-recurrence-id').value = '';
   document.getElementById('delete-event').classList.add('d-none');
+  document.getElementById('cancel-occurrence').classList.add('d-none');
   
   // Show the Modal
   eventModal.show();
 };
 
-window.handleEventClick = async (eventId) => {
+// recurrenceId: start of the clicked occurrence if the event is part of a series
+window.handleEventClick = async (eventId, recurrenceId) => {
   try {
       const response = await api.events.getEventById(eventId);
       const event = response.event;
@@ -414,6 +474,14 @@ window.handleEventClick = async (eventId) => {
       document.getElementById('event-title').value = event.title;
       document.getElementById('event-start').value = formatDateTimeLocal(startDate);
       document.getElementById('event-end').value = formatDateTimeLocal(endDate);
+      // Rules entered elsewhere that the form does not offer are kept as they are
+      const recurrence = document.getElementById('event-recurrence');
+      if (event.recurrence && ![...recurrence.options].some(option => option.value === event.recurrence)) {
+          recurrence.add(new Option(event.recurrence, event.recurrence));
+      }
+      recurrence.value = event.recurrence ?? '';
+      document.getElementById('event-recurrence-id').value = recurrenceId ?? '';
+      document.getElementById('cancel-occurrence').classList.toggle('d-none', !recurrenceId);
       
       // Solution for Task 2: Make Delete Button Visible
       document.getElementById('delete-event').classList.remove('d-none');
@@ -475,6 +543,8 @@ document.getElementById('event-form')?.addEventListener('submit', async (e) => {
       end.getUTCMinutes()
     )).toISOString(),
     priority: document.getElementById('event-priority').value,
+    // Empty: single event; on update this also ends an existing series
+    recurrence: document.getElementById('event-recurrence').value,
     userId: currentUser.id
   };
 
@@ -506,6 +576,20 @@ document.getElementById('delete-event').addEventListener('click', async () => {
   }
 });
 
+// Cancels only the selected occurrence of a series
+document.getElementById('cancel-occurrence').addEventListener('click', async () => {
+  const eventId = document.getElementById('event-id').value;
+  const recurrenceId = document.getElementById('event-recurrence-id').value;
+  try {
+    await api.events.cancelOccurrence(eventId, recurrenceId);
+    await loadEvents();
+    eventModal.hide();
+    showToast('Termin abgesagt', 'success');
+  } catch (error) {
+    showToast('Absagen fehlgeschlagen: ' + error.message, 'error');
+  }
+});
+
 // ============================
 // App Management Functions
 // ============================
@@ -519,6 +603,8 @@ function showMainApp() {
 }
 
 function hideMainApp() {
+  unsubscribeFromEventChanges();
+  eventSubscription = null;
   mainContainer.classList.add('d-none');
   authContainer.classList.remove('d-none');
   loginBox.classList.remove('d-none');
@@ -570,6 +656,14 @@ document.addEventListener('DOMContentLoaded', () => {
   if (storedAuth) {
       try {
           currentUser = JSON.parse(storedAuth);
+          if (!currentUser.token || new Date(currentUser.expiresAt) <= new Date()) {
+              // Session expired, sign in again
+              localStorage.removeItem('auth');
+              currentUser = null;
+              hideMainApp();
+              return;
+          }
+          api.users.setToken(currentUser.token);
           showMainApp();
       } catch (error) {
           console.error('Error parsing stored auth:', error);